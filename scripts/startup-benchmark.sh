@@ -0,0 +1,128 @@
+#!/usr/bin/env bash
+# Compares the startup time and memory of the ways the application can be built and run:
+#   jar     the executable (repackaged) jar: java -jar target/rest-*.jar
+#   cds     the cds Maven profile: plain jar + lib/ with the class data sharing archive recorded by its training run
+#   aot     the jar built with the native profile (Spring AOT bean definitions), on the JVM: -Dspring.aot.enabled=true
+#   native  the GraalVM native executable (./mvnw -Pnative native:compile, needs GraalVM as JAVA_HOME)
+#
+# For every mode the script builds the artifact (unless SKIP_BUILD=1), starts it RUNS times and measures
+#   - startup: wall-clock time from launching the process until the first HTTP response from /actuator/health
+#   - rss:     resident memory of the process at that point (VmRSS), and after WARMUP_REQUESTS product list requests
+# and prints the median of each.
+#
+# Usage: scripts/startup-benchmark.sh [mode...] [-- application arguments]
+#   scripts/startup-benchmark.sh jar cds aot
+#   RUNS=10 scripts/startup-benchmark.sh jar cds -- --spring.datasource.url=jdbc:mysql://localhost:3306/springbootrest
+# The application connects to the database of application.properties (or the SPRING_DATASOURCE_* environment).
+# NO_DB=1 runs every mode without a database instead, with the cds-training profile (no migrations or schema
+# validation); the aot and native builds then process that profile too, since their beans are fixed at build time.
+# The health endpoint answers 503 while the database is down, which still counts as started, and the product
+# requests fail, so compare memory after requests only with a database.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+
+RUNS=${RUNS:-5}
+PORT=${PORT:-18080}
+WARMUP_REQUESTS=${WARMUP_REQUESTS:-200}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-120}
+OUT=target/startup
+
+modes=()
+while [[ $# -gt 0 && "$1" != "--" ]]; do
+    modes+=("$1")
+    shift
+done
+[[ $# -gt 0 ]] && shift
+app_args=("--server.port=$PORT" "$@")
+aot_args=()
+if [[ "${NO_DB:-0}" == 1 ]]; then
+    app_args+=("--spring.profiles.active=cds-training")
+    aot_args+=("-Dspring-boot.aot.jvmArguments=-Dspring.profiles.active=cds-training")
+fi
+[[ ${#modes[@]} -eq 0 ]] && modes=(jar cds aot)
+
+mkdir -p "$OUT"
+
+# Builds the artifact of a mode; every mode keeps its own copy because the builds overwrite target/*.jar
+build() {
+    case "$1" in
+        jar)
+            ./mvnw -q -B -DskipTests package
+            cp target/rest-*-SNAPSHOT.jar "$OUT/app.jar" ;;
+        cds)
+            ./mvnw -q -B -DskipTests -Pcds package ;;
+        aot)
+            ./mvnw -q -B -DskipTests -Pnative "${aot_args[@]}" package
+            cp target/rest-*-SNAPSHOT.jar "$OUT/app-aot.jar" ;;
+        native)
+            ./mvnw -q -B -DskipTests -Pnative "${aot_args[@]}" native:compile
+            cp target/rest "$OUT/app-native" ;;
+        *)
+            echo "Unknown mode: $1 (expected jar, cds, aot or native)" >&2
+            exit 1 ;;
+    esac
+}
+
+# Starts the application of a mode in the background and prints its PID
+# (exec, so the PID is the application's own rather than the one of the background subshell)
+start() {
+    case "$1" in
+        jar)    exec java -jar "$OUT/app.jar" "${app_args[@]}" ;;
+        cds)    cd target/cds && exec java -XX:SharedArchiveFile=app.jsa -jar rest-*-cds.jar "${app_args[@]}" ;;
+        aot)    exec java -Dspring.aot.enabled=true -jar "$OUT/app-aot.jar" "${app_args[@]}" ;;
+        native) exec "$OUT/app-native" "${app_args[@]}" ;;
+    esac > "$PWD/$OUT/$1.log" 2>&1 &
+    echo $!
+}
+
+rss_kb() {
+    awk '/^VmRSS:/ {print $2}' "/proc/$1/status"
+}
+
+# Median of the numbers on standard input
+median() {
+    sort -n | awk '{v[NR] = $1} END {if (NR % 2) print v[(NR + 1) / 2]; else print int((v[NR / 2] + v[NR / 2 + 1]) / 2)}'
+}
+
+now_ms() {
+    echo $(( $(date +%s%N) / 1000000 ))
+}
+
+for mode in "${modes[@]}"; do
+    [[ "${SKIP_BUILD:-0}" == 1 ]] || build "$mode"
+    : > "$OUT/$mode.csv"
+    for run in $(seq "$RUNS"); do
+        launched=$(now_ms)
+        pid=$(start "$mode")
+        until curl -s -o /dev/null "http://localhost:$PORT/actuator/health"; do
+            if ! kill -0 "$pid" 2> /dev/null || (( $(now_ms) - launched > TIMEOUT_SECONDS * 1000 )); then
+                echo "$mode did not start, see $OUT/$mode.log" >&2
+                kill "$pid" 2> /dev/null || true
+                exit 1
+            fi
+            sleep 0.02
+        done
+        started_ms=$(( $(now_ms) - launched ))
+        started_rss=$(rss_kb "$pid")
+        for _ in $(seq "$WARMUP_REQUESTS"); do
+            curl -s -o /dev/null "http://localhost:$PORT/api/products?size=20" || true
+        done
+        warm_rss=$(rss_kb "$pid")
+        kill "$pid"
+        while kill -0 "$pid" 2> /dev/null; do
+            sleep 0.05
+        done
+        echo "$started_ms $started_rss $warm_rss" >> "$OUT/$mode.csv"
+        echo "$mode run $run: started in ${started_ms} ms, rss $(( started_rss / 1024 )) MB, after requests $(( warm_rss / 1024 )) MB"
+    done
+done
+
+echo
+printf '%-8s %14s %14s %22s\n' mode "startup (ms)" "rss (MB)" "rss after requests (MB)"
+for mode in "${modes[@]}"; do
+    printf '%-8s %14s %14s %22s\n' "$mode" \
+        "$(cut -d' ' -f1 "$OUT/$mode.csv" | median)" \
+        "$(( $(cut -d' ' -f2 "$OUT/$mode.csv" | median) / 1024 ))" \
+        "$(( $(cut -d' ' -f3 "$OUT/$mode.csv" | median) / 1024 ))"
+done
@@ -0,0 +1,36 @@
+package dev.rono.rest.config;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// Brotli ("br") through brotli4j, which wraps the native Brotli library
+// Smaller than gzip for JSON at a similar speed with a low quality setting; the native library is only shipped
+// for glibc platforms, so on others (e.g. Alpine) the encoder is unavailable and responses fall back to gzip
+public class BrotliContentEncoder implements ContentEncoder {
+
+    private final Encoder.Parameters parameters;
+
+    // quality: 0 (fastest) to 11 (smallest); 11 is meant for static files compressed once, not for API responses
+    public BrotliContentEncoder(int quality) {
+        this.parameters = new Encoder.Parameters().setQuality(quality);
+    }
+
+    @Override
+    public String getName() {
+        return "br";
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return Brotli4jLoader.isAvailable();
+    }
+
+    @Override
+    public OutputStream encode(OutputStream body) throws IOException {
+        return new BrotliOutputStream(body, parameters);
+    }
+}
@@ -0,0 +1,14 @@
+package dev.rono.rest.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+// This class turns on Spring's cache abstraction for the application
+// The caches themselves (Caffeine, size and TTL bounds) are configured in application.properties
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    // Cache of products by ID, kept in front of ProductRepo by ProductService
+    public static final String PRODUCTS_CACHE = "products";
+}
@@ -0,0 +1,19 @@
+package dev.rono.rest.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+// This class registers the message converter of the in-memory catalog pages (see ProductCatalog)
+// Spring Boot puts HttpMessageConverter beans ahead of its default converters, so a CatalogSnapshot.Page returned by
+// ProductController is written by CatalogPageConverter rather than serialized again by Jackson
+// The catalog itself is turned on with product.catalog.enabled=true; without it no page ever reaches the converter
+@Configuration
+@Profile("!reactive")
+public class CatalogConfig {
+
+    @Bean
+    public CatalogPageConverter catalogPageConverter() {
+        return new CatalogPageConverter();
+    }
+}
@@ -0,0 +1,47 @@
+package dev.rono.rest.config;
+
+import dev.rono.rest.services.CatalogSnapshot;
+
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+
+import java.io.IOException;
+
+// Writes a page of the in-memory catalog (CatalogSnapshot.Page) as a JSON array by copying the bytes every row was
+// encoded to when it entered the snapshot: no ProductView and no Jackson generator is created per request
+// The output is byte-for-byte what MappingJackson2HttpMessageConverter writes for the same products
+// Pages are only ever written, never read from a request body
+public class CatalogPageConverter extends AbstractHttpMessageConverter<CatalogSnapshot.Page> {
+
+    public CatalogPageConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return CatalogSnapshot.Page.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    protected boolean canRead(MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected CatalogSnapshot.Page readInternal(Class<? extends CatalogSnapshot.Page> clazz, HttpInputMessage inputMessage) {
+        throw new UnsupportedOperationException("Catalog pages are never read");
+    }
+
+    // The length is known up front, so the response is sent with Content-Length instead of chunked
+    @Override
+    protected Long getContentLength(CatalogSnapshot.Page page, MediaType contentType) {
+        return page.contentLength();
+    }
+
+    @Override
+    protected void writeInternal(CatalogSnapshot.Page page, HttpOutputMessage outputMessage) throws IOException {
+        page.writeJson(outputMessage.getBody());
+    }
+}
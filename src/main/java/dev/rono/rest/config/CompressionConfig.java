@@ -0,0 +1,45 @@
+package dev.rono.rest.config;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+
+import java.util.List;
+
+// This class compresses the responses of the servlet stack (see CompressionFilter) with Brotli or gzip
+// Settings are under product.compression.* (see CompressionProperties); product.compression.enabled=false turns it off
+// Tomcat's own server.compression is left off: it only knows gzip, and would compress the same responses twice
+// Other encoders can be added as ContentEncoder beans; the reactive profile uses Netty's compression instead
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@EnableConfigurationProperties(CompressionProperties.class)
+@ConditionalOnProperty(name = "product.compression.enabled", matchIfMissing = true)
+public class CompressionConfig {
+
+    @Bean
+    @Order(1) // Preferred when a client accepts both: smaller than gzip for the same CPU time
+    public BrotliContentEncoder brotliContentEncoder(CompressionProperties properties) {
+        return new BrotliContentEncoder(properties.getBrotliQuality());
+    }
+
+    @Bean
+    @Order(2)
+    public GzipContentEncoder gzipContentEncoder(CompressionProperties properties) {
+        return new GzipContentEncoder(properties.getGzipLevel());
+    }
+
+    // Runs right after the observation (metrics) filter, so the other filters and the handlers write through it
+    @Bean
+    public FilterRegistrationBean<CompressionFilter> compressionFilter(List<ContentEncoder> encoders,
+                                                                      CompressionProperties properties) {
+        FilterRegistrationBean<CompressionFilter> registration =
+                new FilterRegistrationBean<>(new CompressionFilter(encoders, properties));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+}
@@ -0,0 +1,374 @@
+package dev.rono.rest.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.util.StreamUtils;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// This filter compresses responses with the best content coding the client accepts (Accept-Encoding)
+// The encoders are pluggable (ContentEncoder beans, e.g. Brotli and gzip), and a response is only compressed when
+// its content type is listed and its body reaches the minimum size: the first bytes are held back until either
+// the minimum size is reached (compress) or the response ends (send as it is, with a Content-Length)
+// Streamed responses (NDJSON, CSV export) stay streamed: once compressing, every flush() sends what was written
+// Responses that are not compressible (event streams, images) are passed through from their first byte
+public class CompressionFilter extends OncePerRequestFilter {
+
+    private final List<ContentEncoder> encoders;
+    private final int minResponseSize;
+    private final List<MediaType> mimeTypes;
+
+    // encoders: in order of preference, for clients that accept several equally
+    public CompressionFilter(List<ContentEncoder> encoders, CompressionProperties properties) {
+        this.encoders = encoders.stream().filter(ContentEncoder::isAvailable).toList();
+        this.minResponseSize = (int) properties.getMinResponseSize().toBytes();
+        this.mimeTypes = properties.getMimeTypes().stream().map(MediaType::parseMediaType).toList();
+    }
+
+    // Names of the encoders that can be used in this process, in order of preference
+    public List<String> getEncodings() {
+        return encoders.stream().map(ContentEncoder::getName).toList();
+    }
+
+    // The body of an async response (SSE, streaming bodies) is finished on the async dispatch
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CompressingResponse compressing = WebUtils.getNativeResponse(response, CompressingResponse.class);
+        if (compressing == null && !isAsyncDispatch(request)) {
+            // The representation depends on Accept-Encoding, so caches must key on it
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            ContentEncoder encoder = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            if (encoder != null && !HttpMethod.HEAD.matches(request.getMethod())) {
+                compressing = new CompressingResponse(response, encoder);
+                response = compressing;
+            }
+        }
+        chain.doFilter(request, response);
+        if (compressing != null && !request.isAsyncStarted()) {
+            compressing.finish();
+        }
+    }
+
+    // Picks the encoder with the highest q-value in Accept-Encoding; ties go to the preferred encoder
+    // Returns null when the client accepts none of them (or sent no Accept-Encoding): the response stays identity
+    ContentEncoder negotiate(String acceptEncoding) {
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return null;
+        }
+        Map<String, Double> accepted = new HashMap<>();
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException ex) {
+                        q = 0;
+                    }
+                }
+            }
+            accepted.put(parts[0].trim().toLowerCase(Locale.ROOT), q);
+        }
+        ContentEncoder best = null;
+        double bestQ = 0;
+        for (ContentEncoder encoder : encoders) {
+            double q = accepted.getOrDefault(encoder.getName(), accepted.getOrDefault("*", 0.0));
+            if (q > bestQ) {
+                best = encoder;
+                bestQ = q;
+            }
+        }
+        return best;
+    }
+
+    private boolean isCompressible(HttpServletResponse response) {
+        int status = response.getStatus();
+        if (status == HttpServletResponse.SC_NO_CONTENT || status == HttpServletResponse.SC_NOT_MODIFIED
+                || status == HttpServletResponse.SC_PARTIAL_CONTENT
+                || response.getHeader(HttpHeaders.CONTENT_ENCODING) != null || response.getContentType() == null) {
+            return false;
+        }
+        try {
+            MediaType contentType = MediaType.parseMediaType(response.getContentType());
+            return mimeTypes.stream().anyMatch(mimeType -> mimeType.includes(contentType));
+        } catch (InvalidMediaTypeException ex) {
+            return false;
+        }
+    }
+
+    // Response whose body is held back until it is known whether it gets compressed
+    private final class CompressingResponse extends HttpServletResponseWrapper {
+
+        private enum State {UNDECIDED, COMPRESSING, IDENTITY}
+
+        private final ContentEncoder encoder;
+        private State state = State.UNDECIDED;
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream encoded;
+        private long contentLength = -1;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+        private boolean finished;
+
+        private CompressingResponse(HttpServletResponse response, ContentEncoder encoder) {
+            super(response);
+            this.encoder = encoder;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (writer != null) {
+                throw new IllegalStateException("getWriter() has already been called for this response");
+            }
+            return stream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                if (outputStream != null) {
+                    throw new IllegalStateException("getOutputStream() has already been called for this response");
+                }
+                writer = new PrintWriter(new OutputStreamWriter(stream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        private ServletOutputStream stream() {
+            if (outputStream == null) {
+                outputStream = new CompressingOutputStream();
+            }
+            return outputStream;
+        }
+
+        // The length of the compressed body is not known, so a declared length is only kept for identity responses
+        @Override
+        public void setContentLength(int length) {
+            setContentLengthLong(length);
+        }
+
+        @Override
+        public void setContentLengthLong(long length) {
+            if (state == State.IDENTITY) {
+                super.setContentLengthLong(length);
+            } else {
+                contentLength = length;
+            }
+        }
+
+        @Override
+        public void setHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(value != null ? Long.parseLong(value) : -1);
+            } else {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public void addHeader(String name, String value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(Long.parseLong(value));
+            } else {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public void setIntHeader(String name, int value) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(name)) {
+                setContentLengthLong(value);
+            } else {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        // A flush before the decision is ignored: sending the first bytes would rule out compressing the rest
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            } else if (outputStream != null) {
+                outputStream.flush();
+            }
+            if (state != State.UNDECIDED) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            if (state == State.COMPRESSING) {
+                throw new IllegalStateException("The response has already been committed");
+            }
+            if (buffer != null) {
+                buffer.reset();
+            }
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            resetBuffer();
+            super.reset();
+            contentLength = -1;
+            super.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+
+        // Error pages and redirects are written by the container itself
+        @Override
+        public void sendError(int status) throws IOException {
+            discard();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            discard();
+            super.sendError(status, message);
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            discard();
+            super.sendRedirect(location);
+        }
+
+        private void discard() {
+            if (state == State.UNDECIDED) {
+                buffer = null;
+                state = State.IDENTITY;
+            }
+        }
+
+        private void write(byte[] bytes, int offset, int length) throws IOException {
+            if (state == State.UNDECIDED && !isCompressible(this)) {
+                sendIdentity();
+            }
+            switch (state) {
+                case UNDECIDED -> {
+                    buffer.write(bytes, offset, length);
+                    if (buffer.size() >= minResponseSize) {
+                        startCompressing();
+                    }
+                }
+                case COMPRESSING -> encoded.write(bytes, offset, length);
+                case IDENTITY -> getResponse().getOutputStream().write(bytes, offset, length);
+            }
+        }
+
+        private void flush() throws IOException {
+            if (state == State.UNDECIDED && !isCompressible(this)) {
+                sendIdentity();
+            }
+            switch (state) {
+                case UNDECIDED -> { } // Held back until the minimum size or the end of the response
+                case COMPRESSING -> encoded.flush();
+                case IDENTITY -> getResponse().getOutputStream().flush();
+            }
+        }
+
+        private void startCompressing() throws IOException {
+            state = State.COMPRESSING;
+            super.setHeader(HttpHeaders.CONTENT_ENCODING, encoder.getName());
+            // The container ends the response itself; closing the encoder only writes its trailer
+            encoded = encoder.encode(StreamUtils.nonClosing(getResponse().getOutputStream()));
+            buffer.writeTo(encoded);
+            buffer = null;
+        }
+
+        private void sendIdentity() throws IOException {
+            state = State.IDENTITY;
+            if (contentLength >= 0) {
+                super.setContentLengthLong(contentLength);
+            }
+            if (buffer != null && buffer.size() > 0) {
+                buffer.writeTo(getResponse().getOutputStream());
+            }
+            buffer = null;
+        }
+
+        // Writes what was held back (a response below the minimum size is sent with its exact length)
+        private void finish() throws IOException {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            if (writer != null) {
+                writer.flush();
+            }
+            if (state == State.UNDECIDED) {
+                if (buffer.size() > 0) {
+                    contentLength = buffer.size();
+                }
+                sendIdentity();
+            } else if (state == State.COMPRESSING) {
+                encoded.close();
+            }
+        }
+
+        private final class CompressingOutputStream extends ServletOutputStream {
+
+            private final byte[] single = new byte[1];
+
+            @Override
+            public void write(int b) throws IOException {
+                single[0] = (byte) b;
+                CompressingResponse.this.write(single, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                CompressingResponse.this.write(bytes, offset, length);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                CompressingResponse.this.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                finish();
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(WriteListener listener) {
+                throw new UnsupportedOperationException("Non-blocking writes are not supported by CompressionFilter");
+            }
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package dev.rono.rest.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.List;
+
+// Settings of the response compression (product.compression.*), see CompressionFilter
+@ConfigurationProperties("product.compression")
+@Getter
+@Setter
+public class CompressionProperties {
+
+    private boolean enabled = true;
+
+    // Smaller responses are sent as they are: below about a packet, compressing saves nothing on the wire
+    private DataSize minResponseSize = DataSize.ofKilobytes(2);
+
+    // Content types that are compressed; everything else (images, event streams) is sent as it is
+    private List<String> mimeTypes = List.of("application/json", "application/x-ndjson", "text/csv", "text/html",
+            "text/css", "text/plain", "text/javascript", "application/javascript", "image/svg+xml");
+
+    // gzip level, 1 (fastest) to 9 (smallest)
+    private int gzipLevel = 5;
+
+    // Brotli quality, 0 (fastest) to 11 (smallest)
+    private int brotliQuality = 4;
+}
@@ -0,0 +1,65 @@
+package dev.rono.rest.config;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Adaptive limit on the number of API requests in flight (AIMD, like TCP congestion control)
+// While responses are fast the limit grows by about one per round of requests, as long as at least half of it
+// is in use; a response slower than the latency threshold, or one that had to wait for a pooled connection,
+// cuts it by the backoff ratio (at most once per threshold, so one slow burst counts once)
+// Requests over the limit are shed right away, so queues build up here instead of in front of the Hikari pool
+public class ConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    private long lastBackoff = System.nanoTime(); // Guarded by this
+
+    public ConcurrencyLimiter(RateLimitProperties.Concurrency settings) {
+        this.minLimit = settings.getMinLimit();
+        this.maxLimit = settings.getMaxLimit();
+        this.latencyThresholdNanos = settings.getLatencyThreshold().toNanos();
+        this.backoffRatio = settings.getBackoffRatio();
+        this.limit = Math.max(minLimit, Math.min(maxLimit, settings.getInitialLimit()));
+    }
+
+    // Takes a permit, or returns false when the limit is reached
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    // Returns a permit and adapts the limit to how the request went
+    public void release(long latencyNanos, boolean waitedForConnection) {
+        int inFlightBefore = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (latencyNanos > latencyThresholdNanos || waitedForConnection) {
+                long now = System.nanoTime();
+                if (now - lastBackoff > latencyThresholdNanos) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                    lastBackoff = now;
+                }
+            } else if (inFlightBefore * 2 >= (int) limit) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
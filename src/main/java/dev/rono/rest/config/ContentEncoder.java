@@ -0,0 +1,22 @@
+package dev.rono.rest.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+// One HTTP content coding (Content-Encoding) that CompressionFilter can apply to a response
+// Every ContentEncoder bean is offered to clients; when a client accepts several equally, the one with the
+// lowest @Order wins, so better compressors are declared first
+public interface ContentEncoder {
+
+    // Token of the coding in Accept-Encoding and Content-Encoding, e.g. "gzip" or "br"
+    String getName();
+
+    // False when the encoder cannot be used in this process (e.g. its native library did not load)
+    default boolean isAvailable() {
+        return true;
+    }
+
+    // Wraps the response body: bytes written to the returned stream are sent encoded
+    // flush() must send everything written so far, so streamed responses keep arriving while they are written
+    OutputStream encode(OutputStream body) throws IOException;
+}
@@ -0,0 +1,31 @@
+package dev.rono.rest.config;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+// gzip from the JDK, understood by every HTTP client
+public class GzipContentEncoder implements ContentEncoder {
+
+    private final int level;
+
+    // level: 1 (fastest) to 9 (smallest); JSON compresses well at low levels, so the default is a fast one
+    public GzipContentEncoder(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return "gzip";
+    }
+
+    @Override
+    public OutputStream encode(OutputStream body) throws IOException {
+        // syncFlush: flush() ends the current deflate block, so streamed data is sent instead of held back
+        return new GZIPOutputStream(body, 8192, true) {
+            {
+                def.setLevel(level);
+            }
+        };
+    }
+}
@@ -0,0 +1,49 @@
+package dev.rono.rest.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+
+// This class adds Idempotency-Key support (see IdempotencyFilter) to the create endpoints, the batch endpoints and
+// the repricing job endpoint (a retried job start would otherwise reprice the products twice)
+// Settings are under product.idempotency.* (see IdempotencyProperties); product.idempotency.enabled=false turns it off
+// The keys are kept in memory by default; with several instances behind a load balancer a retry can reach another
+// instance, so set product.idempotency.store=jdbc to share them through the idempotency_keys table
+@Configuration
+@Profile("!reactive")
+@EnableConfigurationProperties(IdempotencyProperties.class)
+@ConditionalOnProperty(name = "product.idempotency.enabled", matchIfMissing = true)
+public class IdempotencyConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "product.idempotency.store", havingValue = "memory", matchIfMissing = true)
+    public IdempotencyStore inMemoryIdempotencyStore(IdempotencyProperties properties) {
+        return new InMemoryIdempotencyStore(properties.getTtl(), properties.getMaxMemory());
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "product.idempotency.store", havingValue = "jdbc")
+    public IdempotencyStore jdbcIdempotencyStore(JdbcTemplate jdbcTemplate, IdempotencyProperties properties) {
+        return new JdbcIdempotencyStore(jdbcTemplate, properties.getTtl(), properties.getLockTimeout());
+    }
+
+    // Runs inside the compression filter, so the stored responses are not compressed for one client's encoding
+    @Bean
+    public FilterRegistrationBean<IdempotencyFilter> idempotencyFilter(IdempotencyStore store, IdempotencyProperties properties,
+                                                                       @Qualifier("handlerExceptionResolver") HandlerExceptionResolver exceptionResolver,
+                                                                       MeterRegistry meterRegistry) {
+        FilterRegistrationBean<IdempotencyFilter> registration =
+                new FilterRegistrationBean<>(new IdempotencyFilter(store, properties, exceptionResolver, meterRegistry));
+        registration.addUrlPatterns("/api/products", "/api/products/batch", "/api/products/jobs/reprice");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 3);
+        return registration;
+    }
+}
@@ -0,0 +1,242 @@
+package dev.rono.rest.config;
+
+import dev.rono.rest.exceptions.BadRequestException;
+import dev.rono.rest.exceptions.ConflictException;
+import dev.rono.rest.exceptions.UnprocessableEntityException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerExceptionResolver;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+// This filter makes the write endpoints safe to retry: a client sends an Idempotency-Key header (e.g. a UUID) with
+// a POST, and every retry with the same key gets the response of the first request instead of running it again
+// 1. The key is claimed in the IdempotencyStore together with a fingerprint of the method, path and body
+// 2. The request that claimed it runs; a 2xx response is stored, any other outcome frees the key again
+// 3. A retry of a completed request gets the stored response, marked with "Idempotent-Replayed: true"
+// 4. A retry while the original is still in flight waits for it (up to in-flight-timeout, then 409 Conflict),
+//    so concurrent duplicates never insert twice
+// 5. The same key with a different request is refused with 422 Unprocessable Entity
+// Requests without the header are not affected; replays run no handler, so they are not rate limited either
+// Errors are written by GlobalExceptionHandler (through the handler exception resolver), like the handlers' errors
+public class IdempotencyFilter extends OncePerRequestFilter {
+
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // Headers that are part of the result and replayed with the body
+    private static final List<String> STORED_HEADERS = List.of(
+            HttpHeaders.CONTENT_TYPE, HttpHeaders.LOCATION, HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED);
+
+    private final IdempotencyStore store;
+    private final IdempotencyProperties properties;
+    private final HandlerExceptionResolver exceptionResolver;
+    private final MeterRegistry meterRegistry;
+
+    public IdempotencyFilter(IdempotencyStore store, IdempotencyProperties properties,
+                             HandlerExceptionResolver exceptionResolver, MeterRegistry meterRegistry) {
+        this.store = store;
+        this.properties = properties;
+        this.exceptionResolver = exceptionResolver;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // Only writes that carry a key; reads are idempotent anyway
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return request.getHeader(IDEMPOTENCY_KEY_HEADER) == null
+                || HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())
+                || HttpMethod.OPTIONS.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String idempotencyKey = request.getHeader(IDEMPOTENCY_KEY_HEADER).trim();
+        if (idempotencyKey.isEmpty() || idempotencyKey.length() > properties.getMaxKeyLength()) {
+            reject(request, response, new BadRequestException(IDEMPOTENCY_KEY_HEADER + " must have 1 to "
+                    + properties.getMaxKeyLength() + " characters"));
+            return;
+        }
+        BufferedBodyRequest bufferedRequest = new BufferedBodyRequest(request);
+        String fingerprint = sha256(utf8(request.getMethod()), utf8(request.getRequestURI()),
+                utf8(String.valueOf(request.getQueryString())), bufferedRequest.body);
+        String clientKey = request.getHeader(properties.getClientKeyHeader());
+        String key = sha256(utf8(clientKey != null ? clientKey : ""), utf8(idempotencyKey));
+
+        // A released key (the original failed) is claimed again by the retry, so this loops at most a few times
+        String token = UUID.randomUUID().toString();
+        for (int attempt = 0; attempt < 3; attempt++) {
+            IdempotencyStore.Record existing = store.claim(key, fingerprint, token);
+            if (existing == null) {
+                execute(bufferedRequest, response, chain, key, fingerprint, token);
+                return;
+            }
+            if (!existing.fingerprint().equals(fingerprint)) {
+                count("mismatch");
+                reject(request, response, new UnprocessableEntityException(IDEMPOTENCY_KEY_HEADER
+                        + " was already used for a different request"));
+                return;
+            }
+            if (existing.inFlight()) {
+                existing = store.await(key, properties.getInFlightTimeout());
+            }
+            if (existing != null && existing.inFlight()) {
+                count("conflict");
+                reject(request, response, stillInFlight());
+                return;
+            }
+            if (existing != null) {
+                count("replayed");
+                replay(existing.response(), response);
+                return;
+            }
+        }
+        reject(request, response, stillInFlight());
+    }
+
+    // Runs the request that claimed the key with token; only a successful response is stored
+    private void execute(HttpServletRequest request, HttpServletResponse response, FilterChain chain,
+                         String key, String fingerprint, String token) throws ServletException, IOException {
+        ContentCachingResponseWrapper caching = new ContentCachingResponseWrapper(response);
+        boolean completed = false;
+        try {
+            chain.doFilter(request, caching);
+            int status = caching.getStatus();
+            if (status >= 200 && status < 300) {
+                Map<String, String> headers = new LinkedHashMap<>();
+                for (String name : STORED_HEADERS) {
+                    String value = name.equals(HttpHeaders.CONTENT_TYPE) ? caching.getContentType() : caching.getHeader(name);
+                    if (value != null) {
+                        headers.put(name, value);
+                    }
+                }
+                store.complete(key, token, new IdempotencyStore.Record(fingerprint,
+                        new IdempotencyStore.StoredResponse(status, headers, caching.getContentAsByteArray())));
+                completed = true;
+            }
+        } finally {
+            if (!completed) {
+                store.release(key, token);
+            }
+            caching.copyBodyToResponse();
+        }
+    }
+
+    private void replay(IdempotencyStore.StoredResponse stored, HttpServletResponse response) throws IOException {
+        response.setStatus(stored.status());
+        stored.headers().forEach(response::setHeader);
+        response.setHeader(REPLAYED_HEADER, "true");
+        response.setContentLength(stored.body().length);
+        StreamUtils.copy(stored.body(), response.getOutputStream());
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, RuntimeException ex) throws ServletException {
+        if (exceptionResolver.resolveException(request, response, null, ex) == null) {
+            throw new ServletException(ex);
+        }
+    }
+
+    private static ConflictException stillInFlight() {
+        return new ConflictException("A request with this " + IDEMPOTENCY_KEY_HEADER + " is still being processed, retry later");
+    }
+
+    private void count(String outcome) {
+        Counter.builder("product.api.idempotency")
+                .description("Requests with an Idempotency-Key that was already used: replayed, conflict or mismatch")
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // Hex SHA-256 of the parts, separated so that ("ab", "c") and ("a", "bc") differ
+    static String sha256(byte[]... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (byte[] part : parts) {
+                digest.update(part);
+                digest.update((byte) 0);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // Every JVM has SHA-256
+        }
+    }
+
+    private static byte[] utf8(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    // The body is read up front for the fingerprint, and handed to the handler from memory
+    private static final class BufferedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private BufferedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] bytes, int offset, int length) {
+                    return in.read(bytes, offset, length);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    throw new UnsupportedOperationException("Non-blocking reads are not supported by IdempotencyFilter");
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            Charset charset = getCharacterEncoding() != null ? Charset.forName(getCharacterEncoding()) : StandardCharsets.UTF_8;
+            return new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+    }
+}
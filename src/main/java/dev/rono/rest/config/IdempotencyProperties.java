@@ -0,0 +1,40 @@
+package dev.rono.rest.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+// Settings of the Idempotency-Key support of the write endpoints (product.idempotency.*), see IdempotencyFilter
+@ConfigurationProperties("product.idempotency")
+@Getter
+@Setter
+public class IdempotencyProperties {
+
+    private boolean enabled = true;
+
+    // memory: keys of this instance only; jdbc: the idempotency_keys table, shared by every instance
+    private Store store = Store.MEMORY;
+
+    // How long a completed request is replayed to retries with the same key
+    private Duration ttl = Duration.ofHours(24);
+
+    // Largest total size of the responses kept by the memory store (least recently used keys are dropped first)
+    private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+    // Longest accepted key; UUIDs, the usual choice, have 36 characters
+    private int maxKeyLength = 255;
+
+    // How long a retry waits for the original request that is still in flight, before it gets 409 Conflict
+    private Duration inFlightTimeout = Duration.ofSeconds(10);
+
+    // jdbc: an in-flight key not completed within this time (its instance died) can be claimed again
+    private Duration lockTimeout = Duration.ofMinutes(1);
+
+    // Keys are scoped per client: the same key sent with two API keys belongs to two different requests
+    private String clientKeyHeader = "X-API-Key";
+
+    public enum Store {MEMORY, JDBC}
+}
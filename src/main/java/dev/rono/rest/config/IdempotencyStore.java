@@ -0,0 +1,43 @@
+package dev.rono.rest.config;
+
+import java.time.Duration;
+import java.util.Map;
+
+// Deduplication store behind IdempotencyFilter: remembers every Idempotency-Key for a while, together with the
+// fingerprint of the request that used it and, once that request has finished, the response it got
+// InMemoryIdempotencyStore keeps the keys of one instance; JdbcIdempotencyStore shares them between instances
+public interface IdempotencyStore {
+
+    // Claims a key for a new request with the given fingerprint (a hash of its method, path and body)
+    // token: random and unique per request; only the holder of the claim can complete or release it with it
+    // Returns null when the key was free and now belongs to the caller, which must complete or release it;
+    // otherwise returns the existing record of the key (still in flight, or completed)
+    Record claim(String key, String fingerprint, String token);
+
+    // The record of a key, or null when the key is not (or no longer) stored
+    Record find(String key);
+
+    // Waits up to timeout for an in-flight key to be completed or released, and returns its record then
+    // (still in flight when the timeout passed, null when it was released)
+    Record await(String key, Duration timeout);
+
+    // Stores the response of the request that claimed the key with token; later claims get this record
+    // Does nothing when the claim is no longer the caller's (it expired and another request claimed the key)
+    void complete(String key, String token, Record record);
+
+    // Frees a key whose request failed, so that a retry runs the request again; like complete, only with the token
+    // of the claim, so a request whose claim expired cannot free the key of the request that claimed it after it
+    void release(String key, String token);
+
+    // fingerprint: of the request that claimed the key; response: null while that request is in flight
+    record Record(String fingerprint, StoredResponse response) {
+
+        public boolean inFlight() {
+            return response == null;
+        }
+    }
+
+    // What is replayed to a retry: status, the headers that describe the result (see IdempotencyFilter) and body
+    record StoredResponse(int status, Map<String, String> headers, byte[] body) {
+    }
+}
@@ -0,0 +1,94 @@
+package dev.rono.rest.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Idempotency keys of this instance in a Caffeine cache, bounded by the size of the stored responses and by age
+// A retry of an in-flight request waits on the original's future instead of polling; when the cache is full the
+// least recently used keys are dropped first (a retry after that runs the request again)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    // Rough size of an entry without its body (key, fingerprint, headers), used for the size bound
+    private static final int ENTRY_OVERHEAD = 512;
+
+    private final Cache<String, Entry> entries;
+
+    public InMemoryIdempotencyStore(Duration ttl, DataSize maxSize) {
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(ttl)
+                .maximumWeight(maxSize.toBytes())
+                .weigher((String key, Entry entry) -> entry.weight())
+                .build();
+    }
+
+    @Override
+    public Record claim(String key, String fingerprint, String token) {
+        Entry existing = entries.asMap().putIfAbsent(key, new Entry(new Record(fingerprint, null), token, new CompletableFuture<>()));
+        return existing == null ? null : existing.record();
+    }
+
+    @Override
+    public Record find(String key) {
+        Entry entry = entries.getIfPresent(key);
+        return entry == null ? null : entry.record();
+    }
+
+    @Override
+    public Record await(String key, Duration timeout) {
+        Entry entry = entries.getIfPresent(key);
+        if (entry == null || !entry.record().inFlight()) {
+            return entry == null ? null : entry.record();
+        }
+        try {
+            entry.done().get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException ex) {
+            // Still in flight: the record below says so
+        }
+        return find(key);
+    }
+
+    @Override
+    public void complete(String key, String token, Record record) {
+        Entry claimed = entries.getIfPresent(key);
+        if (claimed == null) {
+            // Dropped from the full cache while in flight: stored, unless another request has claimed the key since
+            entries.asMap().putIfAbsent(key, new Entry(record, token, CompletableFuture.completedFuture(null)));
+        } else if (claimed.holds(token)) {
+            // A new entry, so the cache weighs it again with its body
+            entries.asMap().replace(key, claimed, new Entry(record, token, claimed.done()));
+            claimed.done().complete(null);
+        }
+    }
+
+    @Override
+    public void release(String key, String token) {
+        Entry claimed = entries.getIfPresent(key);
+        if (claimed != null && claimed.holds(token)) {
+            entries.asMap().remove(key, claimed);
+            claimed.done().complete(null);
+        }
+    }
+
+    // token: of the request that claimed the key
+    // done: completed when the request that claimed the key completes or releases it
+    private record Entry(Record record, String token, CompletableFuture<Void> done) {
+
+        // Still in flight under the claim with this token
+        boolean holds(String token) {
+            return record.inFlight() && this.token.equals(token);
+        }
+
+        int weight() {
+            return ENTRY_OVERHEAD + (record.inFlight() ? 0 : record.response().body().length);
+        }
+    }
+}
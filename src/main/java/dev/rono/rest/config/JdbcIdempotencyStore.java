@@ -0,0 +1,125 @@
+package dev.rono.rest.config;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Idempotency keys in the idempotency_keys table, shared by every instance of the application
+// The primary key makes the claim atomic across instances: of two concurrent inserts of the same key, only one
+// succeeds and runs the request, the other one finds the in-flight row and polls it until the response is stored
+// An in-flight row expires after lockTimeout, so a key claimed by an instance that died can be claimed again;
+// a completed row expires after ttl, and expired rows are removed by removeExpiredKeys()
+// The row keeps the claim token of the request that inserted it, and only that request can complete or delete it:
+// a request that outlives its lock cannot overwrite or free the claim of the request that took the key over
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    // How often a retry checks whether the in-flight original has finished
+    private static final long POLL_INTERVAL_MILLIS = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration ttl;
+    private final Duration lockTimeout;
+
+    public JdbcIdempotencyStore(JdbcTemplate jdbcTemplate, Duration ttl, Duration lockTimeout) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.ttl = ttl;
+        this.lockTimeout = lockTimeout;
+    }
+
+    @Override
+    public Record claim(String key, String fingerprint, String token) {
+        // Normally one attempt; more when the existing row expired or was released in the meantime
+        for (int attempt = 0; attempt < 3; attempt++) {
+            Instant now = Instant.now();
+            try {
+                jdbcTemplate.update("insert into idempotency_keys (idempotency_key, fingerprint, claim_token, created_at, expires_at) values (?, ?, ?, ?, ?)",
+                        key, fingerprint, token, Timestamp.from(now), Timestamp.from(now.plus(lockTimeout)));
+                return null;
+            } catch (DuplicateKeyException ex) {
+                Record existing = find(key);
+                if (existing != null) {
+                    return existing;
+                }
+                jdbcTemplate.update("delete from idempotency_keys where idempotency_key = ? and expires_at <= ?",
+                        key, Timestamp.from(now));
+            }
+        }
+        // The key keeps changing hands: treat it as in flight, the caller waits for it
+        return new Record(fingerprint, null);
+    }
+
+    @Override
+    public Record find(String key) {
+        List<Record> records = jdbcTemplate.query(
+                "select fingerprint, status, headers, body from idempotency_keys where idempotency_key = ? and expires_at > ?",
+                (rs, row) -> {
+                    int status = rs.getInt("status");
+                    StoredResponse response = rs.wasNull() ? null
+                            : new StoredResponse(status, parseHeaders(rs.getString("headers")), rs.getBytes("body"));
+                    return new Record(rs.getString("fingerprint"), response);
+                },
+                key, Timestamp.from(Instant.now()));
+        return records.isEmpty() ? null : records.get(0);
+    }
+
+    @Override
+    public Record await(String key, Duration timeout) {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        Record record = find(key);
+        while (record != null && record.inFlight() && System.nanoTime() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            record = find(key);
+        }
+        return record;
+    }
+
+    @Override
+    public void complete(String key, String token, Record record) {
+        StoredResponse response = record.response();
+        jdbcTemplate.update("update idempotency_keys set status = ?, headers = ?, body = ?, expires_at = ? where idempotency_key = ? and claim_token = ? and status is null",
+                response.status(), formatHeaders(response.headers()), response.body(), Timestamp.from(Instant.now().plus(ttl)), key, token);
+    }
+
+    @Override
+    public void release(String key, String token) {
+        jdbcTemplate.update("delete from idempotency_keys where idempotency_key = ? and claim_token = ? and status is null", key, token);
+    }
+
+    // Removes expired keys every ten minutes
+    @Scheduled(fixedDelayString = "${product.idempotency.cleanup-interval-ms:600000}")
+    public void removeExpiredKeys() {
+        jdbcTemplate.update("delete from idempotency_keys where expires_at <= ?", Timestamp.from(Instant.now()));
+    }
+
+    // Headers are stored as "Name: value" lines
+    private static String formatHeaders(Map<String, String> headers) {
+        StringBuilder lines = new StringBuilder();
+        headers.forEach((name, value) -> lines.append(name).append(": ").append(value).append('\n'));
+        return lines.toString();
+    }
+
+    private static Map<String, String> parseHeaders(String lines) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        if (lines != null) {
+            for (String line : lines.split("\n")) {
+                int colon = line.indexOf(": ");
+                if (colon > 0) {
+                    headers.put(line.substring(0, colon), line.substring(colon + 2));
+                }
+            }
+        }
+        return headers;
+    }
+}
@@ -0,0 +1,46 @@
+package dev.rono.rest.config;
+
+import dev.rono.rest.models.ProductChange;
+import dev.rono.rest.models.ProductView;
+
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+// This class lists what the GraalVM native image (./mvnw -Pnative native:compile) has to keep for reflection
+// that Spring AOT cannot find by itself; on the JVM the hints are not used
+// Most hints are found by the AOT processing (entities, repositories, controller return types), these are the rest:
+// - ProductChange is serialized to JSON inside SSE events, which are not a controller return type
+// - ProductView is created by the "select new ..." constructor expressions in ProductRepo and serialized with its
+//   own Jackson serializer
+// - SqlCountingDataSource hands out JDK proxies of the JDBC interfaces, which the image has to define ahead of time
+@Configuration
+@RegisterReflectionForBinding({ProductChange.class, ProductView.class})
+@ImportRuntimeHints(NativeHintsConfig.ProductRuntimeHints.class)
+public class NativeHintsConfig {
+
+    static class ProductRuntimeHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            hints.reflection().registerType(ProductView.class, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+            hints.reflection().registerType(TypeReference.of(ProductView.class.getName() + "$Serializer"),
+                    MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+            for (Class<?> jdbcType : List.of(Connection.class, Statement.class, PreparedStatement.class,
+                    CallableStatement.class, ResultSet.class)) {
+                hints.proxies().registerJdkProxy(jdbcType);
+            }
+        }
+    }
+}
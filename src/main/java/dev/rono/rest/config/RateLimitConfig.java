@@ -0,0 +1,67 @@
+package dev.rono.rest.config;
+
+import com.zaxxer.hikari.HikariConfigMXBean;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceUnwrapper;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.util.function.BooleanSupplier;
+
+// This class puts the rate limiter and load shedder (RateLimitInterceptor) in front of the product API
+// Settings are under product.rate-limit.* (see RateLimitProperties); product.rate-limit.enabled=false turns it off
+// The concurrency limit and the number of requests in flight are published as the product.api.concurrency.* gauges
+@Configuration
+@Profile("!reactive")
+@EnableConfigurationProperties(RateLimitProperties.class)
+@ConditionalOnProperty(name = "product.rate-limit.enabled", matchIfMissing = true)
+public class RateLimitConfig implements WebMvcConfigurer {
+
+    @Autowired
+    private RateLimitProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired // Its Hikari pool tells whether requests are waiting for a connection
+    private DataSource dataSource;
+
+    @Bean
+    @ConditionalOnProperty(name = "product.rate-limit.concurrency.enabled", matchIfMissing = true)
+    public ConcurrencyLimiter concurrencyLimiter() {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties.getConcurrency());
+        Gauge.builder("product.api.concurrency.limit", limiter, ConcurrencyLimiter::getLimit)
+                .description("Current adaptive limit of API requests in flight")
+                .register(meterRegistry);
+        Gauge.builder("product.api.concurrency.in.flight", limiter, ConcurrencyLimiter::getInFlight)
+                .description("API requests in flight")
+                .register(meterRegistry);
+        return limiter;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        ConcurrencyLimiter limiter = properties.getConcurrency().isEnabled() ? concurrencyLimiter() : null;
+        registry.addInterceptor(new RateLimitInterceptor(properties, limiter, connectionsAwaited(), meterRegistry))
+                .addPathPatterns("/api/**");
+    }
+
+    // True while threads are waiting for a connection of the (primary) Hikari pool, i.e. the pool is saturated
+    private BooleanSupplier connectionsAwaited() {
+        HikariDataSource hikari = DataSourceUnwrapper.unwrap(dataSource, HikariConfigMXBean.class, HikariDataSource.class);
+        return () -> {
+            HikariPoolMXBean pool = hikari != null ? hikari.getHikariPoolMXBean() : null;
+            return pool != null && pool.getThreadsAwaitingConnection() > 0;
+        };
+    }
+}
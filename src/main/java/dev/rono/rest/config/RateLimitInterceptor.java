@@ -0,0 +1,132 @@
+package dev.rono.rest.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.rono.rest.exceptions.ServiceUnavailableException;
+import dev.rono.rest.exceptions.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+// This interceptor runs in front of every ProductController request and rejects the request before the handler
+// (and its database work) runs when a limit is reached:
+// 1. the client's token bucket (the endpoint's own per-client limit, or the default one) -> 429 Too Many Requests
+// 2. the endpoint's shared token bucket, when it has one -> 429
+// 3. the global token bucket of the whole API -> 429
+// 4. the adaptive concurrency limit (ConcurrencyLimiter) -> 503 Service Unavailable
+// The exceptions are turned into the usual {"error": ...} body with a Retry-After header by GlobalExceptionHandler,
+// and every rejection is counted in product.api.requests.rejected (tagged with the endpoint and the reason)
+public class RateLimitInterceptor implements HandlerInterceptor {
+
+    // Request attribute holding the start time of a request that took a concurrency permit
+    private static final String PERMIT_START = RateLimitInterceptor.class.getName() + ".permitStart";
+
+    private final RateLimitProperties properties;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final BooleanSupplier connectionsAwaited;
+    private final MeterRegistry meterRegistry;
+
+    private final TokenBucket globalBucket;
+    private final Map<String, TokenBucket> endpointBuckets = new ConcurrentHashMap<>();
+    // Per-client buckets, bounded in number and dropped when idle, keyed by "<endpoint or *> <client>"
+    private final Cache<String, TokenBucket> clientBuckets;
+
+    public RateLimitInterceptor(RateLimitProperties properties, ConcurrencyLimiter concurrencyLimiter,
+                                BooleanSupplier connectionsAwaited, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.connectionsAwaited = connectionsAwaited;
+        this.meterRegistry = meterRegistry;
+        this.globalBucket = bucket(properties.getGlobal());
+        this.clientBuckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxClients())
+                .expireAfterAccess(properties.getClientIdleTimeout())
+                .build();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        // The async dispatch that completes a streaming response was already counted by its first dispatch
+        if (!(handler instanceof HandlerMethod handlerMethod) || request.getDispatcherType() == DispatcherType.ASYNC) {
+            return true;
+        }
+        String endpoint = handlerMethod.getMethod().getName();
+        RateLimitProperties.Endpoint endpointLimits = properties.getEndpoints().get(endpoint);
+
+        // 1. Per client
+        String client = clientKey(request);
+        TokenBucket clientBucket = endpointLimits != null && endpointLimits.getPerClient() != null
+                ? clientBuckets.get(endpoint + " " + client, key -> bucket(endpointLimits.getPerClient()))
+                : clientBuckets.get("* " + client, key -> bucket(properties.getPerClient()));
+        checkRate(clientBucket, endpoint, "client", "Rate limit exceeded, slow down");
+
+        // 2. Per endpoint, shared by all clients
+        if (endpointLimits != null && endpointLimits.getGlobal() != null) {
+            TokenBucket endpointBucket = endpointBuckets.computeIfAbsent(endpoint, key -> bucket(endpointLimits.getGlobal()));
+            checkRate(endpointBucket, endpoint, "endpoint", "Too many requests to this endpoint, retry later");
+        }
+
+        // 3. Whole API
+        checkRate(globalBucket, endpoint, "global", "Too many requests, retry later");
+
+        // 4. Requests in flight
+        if (concurrencyLimiter != null && (endpointLimits == null || endpointLimits.isConcurrencyLimited())) {
+            if (!concurrencyLimiter.tryAcquire()) {
+                countRejection(endpoint, "concurrency");
+                throw new ServiceUnavailableException("Server is overloaded, retry later", 1);
+            }
+            request.setAttribute(PERMIT_START, System.nanoTime());
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Long start = (Long) request.getAttribute(PERMIT_START);
+        if (start != null) {
+            request.removeAttribute(PERMIT_START);
+            concurrencyLimiter.release(System.nanoTime() - start, connectionsAwaited.getAsBoolean());
+        }
+    }
+
+    // The API key header when it is one of the configured keys, otherwise the remote address
+    // (prefixed, so that a key cannot share a bucket with an address)
+    private String clientKey(HttpServletRequest request) {
+        String key = request.getHeader(properties.getClientKeyHeader());
+        return key != null && properties.getApiKeys().contains(key) ? "key:" + key : request.getRemoteAddr();
+    }
+
+    private void checkRate(TokenBucket bucket, String endpoint, String reason, String message) {
+        if (bucket == null) {
+            return;
+        }
+        long waitNanos = bucket.tryAcquire();
+        if (waitNanos > 0) {
+            countRejection(endpoint, reason);
+            throw new TooManyRequestsException(message, Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + 999_999_999)));
+        }
+    }
+
+    private void countRejection(String endpoint, String reason) {
+        Counter.builder("product.api.requests.rejected")
+                .description("Requests rejected by the rate limiter or shed by the concurrency limit")
+                .tag("endpoint", endpoint)
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    // A bucket for the limit, or null for no limit
+    private static TokenBucket bucket(RateLimitProperties.Limit limit) {
+        return limit == null || limit.getRate() <= 0 ? null : new TokenBucket(limit.getRate(), limit.getBurst());
+    }
+}
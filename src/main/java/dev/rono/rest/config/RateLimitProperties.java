@@ -0,0 +1,79 @@
+package dev.rono.rest.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Settings of the rate limiter and load shedder in front of the product API (product.rate-limit.*)
+// See RateLimitInterceptor for how the limits are applied
+@ConfigurationProperties("product.rate-limit")
+@Getter
+@Setter
+public class RateLimitProperties {
+
+    private boolean enabled = true;
+
+    // Request header that identifies a client (an API key); requests without it are limited by remote address
+    private String clientKeyHeader = "X-API-Key";
+
+    // The API keys that get a bucket of their own; any other key is ignored and the request is limited by remote
+    // address, so a client cannot get a fresh bucket by sending a new key with every request
+    private Set<String> apiKeys = new HashSet<>();
+
+    // Most clients whose buckets are kept; idle clients are dropped after clientIdleTimeout
+    private int maxClients = 100_000;
+    private Duration clientIdleTimeout = Duration.ofMinutes(10);
+
+    // Shared by every request to the API
+    private Limit global = new Limit(2000, 4000);
+
+    // Per client, for every endpoint without a per-client limit of its own
+    private Limit perClient = new Limit(100, 200);
+
+    // Limits of single endpoints, by ProductController method name (for example "importProducts")
+    private Map<String, Endpoint> endpoints = new HashMap<>();
+
+    private Concurrency concurrency = new Concurrency();
+
+    // Token bucket: rate requests per second on average, bursts of up to burst requests (rate 0 = no limit)
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Limit {
+        private double rate;
+        private int burst;
+    }
+
+    @Getter
+    @Setter
+    public static class Endpoint {
+        // Limit shared by all clients of this endpoint, checked in addition to the global limit
+        private Limit global;
+        // Per-client limit of this endpoint, instead of the default per-client limit
+        private Limit perClient;
+        // Long-lived requests (the SSE change stream) do not take a concurrency permit
+        private boolean concurrencyLimited = true;
+    }
+
+    // Adaptive concurrency limit (see ConcurrencyLimiter)
+    @Getter
+    @Setter
+    public static class Concurrency {
+        private boolean enabled = true;
+        private int initialLimit = 40;
+        private int minLimit = 8;
+        private int maxLimit = 400;
+        // Responses slower than this (or requests that waited for a pooled connection) lower the limit
+        private Duration latencyThreshold = Duration.ofMillis(500);
+        private double backoffRatio = 0.9;
+    }
+}
@@ -0,0 +1,85 @@
+package dev.rono.rest.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// This class adds read replicas when product.datasource.replica-urls lists one or more JDBC URLs
+// The primary pool is still configured by spring.datasource.*, and each replica gets a copy of its pool settings
+// with its own URL (and optionally its own credentials); JPA then uses the ReplicaRoutingDataSource on top of them
+// Without replica URLs (the default) Spring Boot's single DataSource is used and every query goes to the primary
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty("product.datasource.replica-urls")
+public class ReadReplicaConfig {
+
+    // Comma-separated JDBC URLs of the read replicas
+    @Value("${product.datasource.replica-urls}")
+    private List<String> replicaUrls;
+
+    // Replica credentials, when they differ from the primary's
+    @Value("${product.datasource.replica-username:#{null}}")
+    private String replicaUsername;
+
+    @Value("${product.datasource.replica-password:#{null}}")
+    private String replicaPassword;
+
+    // How long a replica that failed to hand out a connection is left out before it is tried again
+    @Value("${product.datasource.replica-retry-interval:10s}")
+    private Duration replicaRetryInterval;
+
+    // How long a client reads from the primary after it has written (should exceed the replication lag)
+    @Value("${product.datasource.read-your-writes-window:5s}")
+    private Duration readYourWritesWindow;
+
+    // The primary pool, bound to spring.datasource.* and spring.datasource.hikari.* like Boot's own DataSource
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    // The DataSource used by JPA: writes go to the primary, read-only transactions to the replicas
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ObjectProvider<MeterRegistry> meterRegistry) {
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : replicaUrls) {
+            HikariDataSource replica = new HikariDataSource();
+            primaryDataSource.copyStateTo(replica);
+            replica.setPoolName("replica-" + (replicas.size() + 1));
+            replica.setJdbcUrl(url.trim());
+            replica.setReadOnly(true);
+            if (replicaUsername != null) {
+                replica.setUsername(replicaUsername);
+                replica.setPassword(replicaPassword);
+            }
+            // Replica pools are not beans, so register their hikaricp.connections.* metrics here
+            if (replica.getMetricRegistry() == null && replica.getMetricsTrackerFactory() == null) {
+                meterRegistry.ifAvailable(replica::setMetricRegistry);
+            }
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, replicaRetryInterval);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter() {
+        return new ReadYourWritesFilter(readYourWritesWindow);
+    }
+}
@@ -0,0 +1,40 @@
+package dev.rono.rest.config;
+
+import java.util.function.Supplier;
+
+// This class decides, per thread, whether read-only work may go to a read replica (see ReplicaRoutingDataSource)
+// Reads are pinned to the primary for the rest of a request that has written, for requests that follow a write
+// (ReadYourWritesFilter), and for reads that must not be stale, such as loading a product into the shared cache
+// Without read replicas nothing reads the pin, so calling it costs nothing
+public final class ReadRouting {
+
+    private static final ThreadLocal<Boolean> PRIMARY_ONLY = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    // Runs the work with every read on the primary, then restores the previous routing of the thread
+    public static <T> T onPrimary(Supplier<T> work) {
+        Boolean previous = PRIMARY_ONLY.get();
+        PRIMARY_ONLY.set(Boolean.TRUE);
+        try {
+            return work.get();
+        } finally {
+            PRIMARY_ONLY.set(previous);
+        }
+    }
+
+    // True when reads of the current thread have to go to the primary
+    public static boolean isPrimaryOnly() {
+        return PRIMARY_ONLY.get() != null;
+    }
+
+    // Pins the reads of the current thread to the primary until clear() (used for whole requests)
+    static void pinToPrimary() {
+        PRIMARY_ONLY.set(Boolean.TRUE);
+    }
+
+    static void clear() {
+        PRIMARY_ONLY.remove();
+    }
+}
@@ -0,0 +1,79 @@
+package dev.rono.rest.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Arrays;
+
+// This filter gives clients read-your-writes consistency when reads go to read replicas
+// A request that writes gets a cookie that keeps the client's reads on the primary for the next `window`
+// (longer than the replication lag), and the rest of the writing request reads from the primary as well
+// This covers the redirect after a form post in ProductWebController, and API clients that keep cookies
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    public static final String COOKIE_NAME = "read-primary";
+
+    // Response of the request handled by the current thread, while the filter runs
+    private static final ThreadLocal<RequestState> CURRENT = new ThreadLocal<>();
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (request.getCookies() != null
+                && Arrays.stream(request.getCookies()).map(Cookie::getName).anyMatch(COOKIE_NAME::equals)) {
+            ReadRouting.pinToPrimary(); // This client wrote recently
+        }
+        CURRENT.set(new RequestState(response, window));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            CURRENT.remove();
+            ReadRouting.clear();
+        }
+    }
+
+    // Called when a statement that modifies data has run on the current thread: pins the rest of the request to the
+    // primary and sets the cookie (once, and only while the headers can still be written)
+    static void recordWrite() {
+        RequestState state = CURRENT.get();
+        if (state == null) {
+            return; // Not a request thread, e.g. the change relay
+        }
+        ReadRouting.pinToPrimary();
+        if (!state.cookieSet && !state.response.isCommitted()) {
+            state.response.addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(COOKIE_NAME, "1")
+                    .maxAge(state.window)
+                    .path("/")
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build()
+                    .toString());
+            state.cookieSet = true;
+        }
+    }
+
+    private static final class RequestState {
+        private final HttpServletResponse response;
+        private final Duration window;
+        private boolean cookieSet;
+
+        private RequestState(HttpServletResponse response, Duration window) {
+            this.response = response;
+            this.window = window;
+        }
+    }
+}
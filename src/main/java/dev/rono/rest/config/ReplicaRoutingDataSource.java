@@ -0,0 +1,202 @@
+package dev.rono.rest.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+// DataSource that sends read-only transactions to read replicas and everything else to the primary
+// It is a LazyConnectionDataSourceProxy: the physical connection is only fetched at the first statement, after
+// the transaction manager has marked it read-only (@Transactional(readOnly = true), which every Spring Data
+// repository read uses), and read-only connections come from the replica pool below
+// Replicas take turns (round-robin); a replica that cannot hand out a connection is skipped for retryInterval,
+// and reads fall back to the primary when every replica is down or ReadRouting pins them there
+public class ReplicaRoutingDataSource extends LazyConnectionDataSourceProxy {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+
+    private final List<DataSource> replicas;
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration retryInterval) {
+        super(new WriteTrackingDataSource(primary));
+        this.replicas = replicas;
+        setReadOnlyDataSource(new ReplicaPool(primary, replicas, retryInterval));
+    }
+
+    // Closes the replica pools on shutdown (the primary pool is a bean of its own)
+    public void close() throws Exception {
+        for (DataSource replica : replicas) {
+            if (replica instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    // Read-write connections always come from the primary, but taking one does not mean the request writes: a
+    // transaction that is not marked read-only may only read, and Hibernate fetches ID blocks on a connection of its
+    // own. The connections are handed out as JDK proxies whose statements tell ReadYourWritesFilter (which keeps the
+    // client's next reads on the primary) about a write once a statement that modifies data has run
+    private static final class WriteTrackingDataSource extends DelegatingDataSource {
+
+        // Statements that change rows; ID allocation on an emulated sequence (the product_seq table on MySQL) does
+        // too, but only hands out IDs, so it does not count
+        private static final Pattern MODIFYING = Pattern.compile("(?is)\\s*(insert|update|delete|merge|replace)\\b.*");
+        private static final Pattern ID_ALLOCATION = Pattern.compile("(?is)\\s*update\\s+\\w+_seq\\b.*");
+
+        private WriteTrackingDataSource(DataSource primary) {
+            super(primary);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return track(super.getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return track(super.getConnection(username, password));
+        }
+
+        private static Connection track(Connection connection) {
+            return proxy(Connection.class, connection, (target, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (result instanceof CallableStatement statement) {
+                    return proxy(CallableStatement.class, statement, new StatementHandler((String) args[0]));
+                }
+                if (result instanceof PreparedStatement statement) {
+                    return proxy(PreparedStatement.class, statement, new StatementHandler((String) args[0]));
+                }
+                if (result instanceof Statement statement) {
+                    return proxy(Statement.class, statement, new StatementHandler(null));
+                }
+                return result;
+            });
+        }
+
+        // Records a write after an execute call whose SQL modifies data; a batch of plain statements, whose SQL
+        // is not kept, always counts
+        private record StatementHandler(String preparedSql) implements Handler {
+
+            @Override
+            public Object invoke(Object target, Method method, Object[] args) throws Throwable {
+                Object result = WriteTrackingDataSource.invoke(target, method, args);
+                String name = method.getName();
+                if (name.startsWith("execute")) {
+                    String sql = preparedSql != null ? preparedSql
+                            : args != null && args.length > 0 && args[0] instanceof String text ? text : null;
+                    boolean batch = name.equals("executeBatch") || name.equals("executeLargeBatch");
+                    if (sql == null ? batch : MODIFYING.matcher(sql).matches() && !ID_ALLOCATION.matcher(sql).matches()) {
+                        ReadYourWritesFilter.recordWrite();
+                    }
+                }
+                return result;
+            }
+        }
+
+        // Calls the method on the target, rethrowing what it throws as it is (not wrapped in a reflection exception)
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        // Proxies share identity semantics: a proxy only equals itself
+        private static <T> T proxy(Class<T> type, T target, Handler handler) {
+            return type.cast(Proxy.newProxyInstance(ReplicaRoutingDataSource.class.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "equals" -> method.getParameterCount() == 1 ? proxy == args[0] : handler.invoke(target, method, args);
+                        case "hashCode" -> method.getParameterCount() == 0
+                                ? System.identityHashCode(proxy) : handler.invoke(target, method, args);
+                        default -> handler.invoke(target, method, args);
+                    }));
+        }
+
+        @FunctionalInterface
+        private interface Handler {
+            Object invoke(Object target, Method method, Object[] args) throws Throwable;
+        }
+    }
+
+    // Read-only connections: the next healthy replica, or the primary
+    private static final class ReplicaPool extends AbstractDataSource {
+
+        private final DataSource primary;
+        private final List<Replica> replicas;
+        private final Duration retryInterval;
+        private final AtomicInteger next = new AtomicInteger();
+
+        private ReplicaPool(DataSource primary, List<DataSource> replicas, Duration retryInterval) {
+            this.primary = primary;
+            this.replicas = replicas.stream().map(Replica::new).toList();
+            this.retryInterval = retryInterval;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return connect(DataSource::getConnection);
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return connect(dataSource -> dataSource.getConnection(username, password));
+        }
+
+        private Connection connect(ConnectionSource source) throws SQLException {
+            if (ReadRouting.isPrimaryOnly()) {
+                return source.connect(primary);
+            }
+            int start = next.getAndIncrement();
+            for (int i = 0; i < replicas.size(); i++) {
+                Replica replica = replicas.get(Math.floorMod(start + i, replicas.size()));
+                if (replica.isDown()) {
+                    continue;
+                }
+                try {
+                    return source.connect(replica.dataSource);
+                } catch (SQLException | RuntimeException ex) {
+                    // Hikari reports a pool that cannot start as a RuntimeException, a timeout as SQLException
+                    replica.downUntil = Instant.now().plus(retryInterval);
+                    log.warn("Read replica {} is unavailable, skipping it for {}: {}",
+                            replicas.indexOf(replica) + 1, retryInterval, ex.getMessage());
+                }
+            }
+            return source.connect(primary); // Every replica is down: reads fall back to the primary
+        }
+    }
+
+    private static final class Replica {
+        private final DataSource dataSource;
+        private volatile Instant downUntil = Instant.MIN;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+
+        private boolean isDown() {
+            return Instant.now().isBefore(downUntil);
+        }
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+}
@@ -0,0 +1,35 @@
+package dev.rono.rest.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import java.time.Duration;
+
+// This class turns on Spring's @Scheduled support for the application
+// The @Scheduled jobs (the statistics reconcile, the catalog reload, the repricing heartbeat, and the cleanup of
+// expired idempotency keys and delivered changes) scan or stream whole tables and can take seconds; they run on
+// Spring Boot's "taskScheduler", sized by spring.task.scheduling.pool.size (or on virtual threads when
+// spring.threads.virtual.enabled), so one slow job does not hold up the others
+// The write-behind price flush (PriceUpdateBuffer) and the change relay (ProductChangeRelay) run every 200 ms and
+// must never wait behind those, so each schedules itself on a thread of its own from dedicatedScheduler()
+// Those schedulers are deliberately not beans: Boot only creates its taskScheduler when there is no TaskScheduler bean,
+// and its applicationTaskExecutor (which runs the async MVC requests) only when there is no Executor bean at all
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+
+    // Runs task on a thread of its own, interval after the end of each run (like @Scheduled(fixedDelay)), starting now
+    // The returned scheduler belongs to the caller, which shuts it down; a shutdown lets a running task finish
+    public static ThreadPoolTaskScheduler dedicatedScheduler(String threadNamePrefix, Duration interval, Runnable task) {
+        ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix(threadNamePrefix);
+        scheduler.setPoolSize(1);
+        scheduler.setWaitForTasksToCompleteOnShutdown(true);
+        scheduler.setAwaitTerminationSeconds(10);
+        scheduler.initialize();
+        // Errors are logged and the task keeps running, as with @Scheduled
+        scheduler.scheduleWithFixedDelay(task, interval);
+        return scheduler;
+    }
+}
@@ -0,0 +1,47 @@
+package dev.rono.rest.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+import javax.sql.DataSource;
+
+// This class measures the SQL of every request to the product API and the web pages (see SqlBudgetFilter)
+// Settings are under product.sql-budget.* (see SqlBudgetProperties); product.sql-budget.enabled=false turns it off
+// The application's DataSource (bean "dataSource": Boot's pool, or the ReplicaRoutingDataSource) is wrapped in a
+// SqlCountingDataSource, so JPA, Spring Data and JdbcTemplate all go through it; the primary and replica pools
+// underneath are left as they are, so a statement is never counted twice
+@Configuration
+@Profile("!reactive")
+@EnableConfigurationProperties(SqlBudgetProperties.class)
+@ConditionalOnProperty(name = "product.sql-budget.enabled", matchIfMissing = true)
+public class SqlBudgetConfig {
+
+    // Static, so it is registered before the DataSource is created
+    @Bean
+    public static BeanPostProcessor sqlCountingDataSourcePostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof DataSource dataSource && beanName.equals("dataSource")
+                        && !(bean instanceof SqlCountingDataSource) ? new SqlCountingDataSource(dataSource) : bean;
+            }
+        };
+    }
+
+    // Runs inside the idempotency filter: a replayed response runs no handler, so it has nothing to measure
+    @Bean
+    public FilterRegistrationBean<SqlBudgetFilter> sqlBudgetFilter(SqlBudgetProperties properties, MeterRegistry meterRegistry) {
+        FilterRegistrationBean<SqlBudgetFilter> registration =
+                new FilterRegistrationBean<>(new SqlBudgetFilter(properties, meterRegistry));
+        registration.addUrlPatterns("/api/products/*", "/products/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 4);
+        return registration;
+    }
+}
@@ -0,0 +1,108 @@
+package dev.rono.rest.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+
+// This filter measures the JDBC work of every request to the product endpoints (see SqlRequestStats) and checks it
+// against a statement budget, so a handler that starts issuing extra queries shows up before it reaches production
+// - Every request is recorded as a SqlRequestEvent (JDK Flight Recorder) and in the product.sql.statements summary
+// - A request with more than max-statements statements is logged with its most repeated statement, and counted in
+//   product.sql.budget.exceeded{reason="statements"}
+// - A request that runs the same SQL repeated-statements times or more is logged as a likely N+1 query (one query
+//   per row of an earlier one), and counted with reason="repeated"
+// The bulk endpoints (batch, import, export, streams) run a few statements per chunk of their input, so they are
+// recorded but not checked (exempt-endpoints)
+// Tests can assert the statement count of an endpoint through the SqlRequestStats request attribute
+public class SqlBudgetFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(SqlBudgetFilter.class);
+
+    private final int maxStatements;
+    private final int repeatedStatements;
+    private final Set<String> exemptEndpoints;
+    private final MeterRegistry meterRegistry;
+
+    public SqlBudgetFilter(SqlBudgetProperties properties, MeterRegistry meterRegistry) {
+        this.maxStatements = properties.getMaxStatements();
+        this.repeatedStatements = properties.getRepeatedStatements();
+        this.exemptEndpoints = Set.copyOf(properties.getExemptEndpoints());
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        SqlRequestEvent event = new SqlRequestEvent();
+        event.begin();
+        SqlRequestStats stats = SqlRequestStats.open();
+        request.setAttribute(SqlRequestStats.ATTRIBUTE, stats);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SqlRequestStats.close();
+            event.end();
+            report(request, response, stats, event);
+        }
+    }
+
+    private void report(HttpServletRequest request, HttpServletResponse response, SqlRequestStats stats,
+                        SqlRequestEvent event) {
+        // The handler's pattern keeps the endpoint tag bounded (/api/products/{id}, not one tag per product)
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String endpoint = pattern != null ? pattern.toString() : request.getRequestURI();
+        boolean checked = pattern != null && !exemptEndpoints.contains(endpoint);
+        boolean overBudget = checked && stats.getStatements() > maxStatements;
+        Map.Entry<String, Integer> mostRepeated = stats.mostRepeated();
+        boolean repeated = checked && mostRepeated != null && mostRepeated.getValue() >= repeatedStatements;
+
+        if (event.shouldCommit()) {
+            event.method = request.getMethod();
+            event.endpoint = endpoint;
+            event.status = response.getStatus();
+            event.statements = stats.getStatements();
+            event.rowsFetched = stats.getRowsFetched();
+            event.databaseTime = stats.getDatabaseTime().toNanos();
+            event.overBudget = overBudget;
+            if (mostRepeated != null) {
+                event.mostRepeated = mostRepeated.getKey();
+                event.mostRepeatedCount = mostRepeated.getValue();
+            }
+            event.commit();
+        }
+
+        if (pattern == null) {
+            return; // No handler (404 for an unknown path, static resources): not worth a meter per URI
+        }
+        DistributionSummary.builder("product.sql.statements")
+                .description("JDBC statements executed per request")
+                .tags("method", request.getMethod(), "uri", endpoint)
+                .register(meterRegistry)
+                .record(stats.getStatements());
+        if (overBudget) {
+            meterRegistry.counter("product.sql.budget.exceeded", "method", request.getMethod(), "uri", endpoint,
+                    "reason", "statements").increment();
+            log.warn("{} {} ran {} SQL statements, over the budget of {} ({} rows fetched, {} ms in the database); "
+                            + "most repeated ({} times): {}", request.getMethod(), request.getRequestURI(),
+                    stats.getStatements(), maxStatements, stats.getRowsFetched(), stats.getDatabaseTime().toMillis(),
+                    mostRepeated.getValue(), mostRepeated.getKey());
+        }
+        if (repeated) {
+            meterRegistry.counter("product.sql.budget.exceeded", "method", request.getMethod(), "uri", endpoint,
+                    "reason", "repeated").increment();
+            log.warn("{} {} ran the same SQL statement {} times, likely an N+1 query: {}", request.getMethod(),
+                    request.getRequestURI(), mostRepeated.getValue(), mostRepeated.getKey());
+        }
+    }
+}
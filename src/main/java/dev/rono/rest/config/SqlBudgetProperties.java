@@ -0,0 +1,26 @@
+package dev.rono.rest.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.List;
+
+// Settings of the per-request SQL instrumentation (product.sql-budget.*), see SqlBudgetFilter
+@ConfigurationProperties("product.sql-budget")
+@Getter
+@Setter
+public class SqlBudgetProperties {
+
+    private boolean enabled = true;
+
+    // Most JDBC statements a request may run before it is logged and counted as over budget
+    private int maxStatements = 10;
+
+    // A request that runs the same SQL this many times is logged as a likely N+1 query
+    private int repeatedStatements = 5;
+
+    // Handler patterns that are recorded but not checked: their statement count grows with the size of their input
+    private List<String> exemptEndpoints = List.of("/api/products/batch", "/api/products/import",
+            "/api/products/export", "/api/products/stream", "/api/products/changes");
+}
@@ -0,0 +1,178 @@
+package dev.rono.rest.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+// This DataSource wraps the application's DataSource (the pool, or the replica router) so every JDBC statement is
+// measured, whoever runs it: Hibernate, Spring Data queries, JdbcTemplate
+// Connections, statements and result sets are handed out as thin JDK proxies; each execute call is timed and
+// recorded as a SqlStatementEvent, and, on a request thread (see SqlBudgetFilter), added to the request's
+// SqlRequestStats together with the rows read from its result sets and the time spent reading them
+// Everything else is passed straight through, including unwrap(), so pool metrics and DataSourceUnwrapper still
+// find the HikariDataSource underneath
+public class SqlCountingDataSource extends DelegatingDataSource {
+
+    // Statement methods that send SQL to the database
+    private static final Set<String> EXECUTE_METHODS = Set.of("execute", "executeQuery", "executeUpdate",
+            "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    // Statement methods that return a result set of an earlier execute
+    private static final Set<String> RESULT_SET_METHODS = Set.of("getResultSet", "getGeneratedKeys");
+
+    public SqlCountingDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection()));
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return proxy(Connection.class, new ConnectionHandler(obtainTargetDataSource().getConnection(username, password)));
+    }
+
+    // Calls the method on the target, rethrowing what it throws as it is (not wrapped in a reflection exception)
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(SqlCountingDataSource.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    // Proxies share identity semantics: a proxy only equals itself
+    private static Object identity(Object proxy, Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "equals" -> proxy == args[0];
+            case "hashCode" -> System.identityHashCode(proxy);
+            default -> null;
+        };
+    }
+
+    private static boolean isIdentityMethod(Method method) {
+        return (method.getName().equals("equals") && method.getParameterCount() == 1)
+                || (method.getName().equals("hashCode") && method.getParameterCount() == 0);
+    }
+
+    // Wraps the statements a connection creates; prepared statements remember their SQL for the execute call
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            Object result = SqlCountingDataSource.invoke(target, method, args);
+            if (result instanceof CallableStatement statement) {
+                return proxy(CallableStatement.class, new StatementHandler(statement, (String) args[0]));
+            }
+            if (result instanceof PreparedStatement statement) {
+                return proxy(PreparedStatement.class, new StatementHandler(statement, (String) args[0]));
+            }
+            if (result instanceof Statement statement) {
+                return proxy(Statement.class, new StatementHandler(statement, null));
+            }
+            return result;
+        }
+    }
+
+    // Times the execute calls of a statement and wraps the result sets it returns
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement target;
+        private final String preparedSql; // Null for a plain Statement, whose SQL is passed to execute
+
+        private StatementHandler(Statement target, String preparedSql) {
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            String name = method.getName();
+            if (!EXECUTE_METHODS.contains(name)) {
+                Object result = SqlCountingDataSource.invoke(target, method, args);
+                return RESULT_SET_METHODS.contains(name) && result instanceof ResultSet resultSet ? wrap(resultSet) : result;
+            }
+
+            String sql = preparedSql != null ? preparedSql : args != null && args.length > 0 ? (String) args[0] : null;
+            SqlStatementEvent event = new SqlStatementEvent();
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                Object result = SqlCountingDataSource.invoke(target, method, args);
+                return result instanceof ResultSet resultSet ? wrap(resultSet) : result;
+            } finally {
+                long nanos = System.nanoTime() - start;
+                event.end();
+                if (event.shouldCommit()) {
+                    event.sql = sql;
+                    event.batch = name.equals("executeBatch") || name.equals("executeLargeBatch");
+                    event.commit();
+                }
+                SqlRequestStats stats = SqlRequestStats.current();
+                if (stats != null) {
+                    stats.executed(sql, nanos);
+                }
+            }
+        }
+
+        private ResultSet wrap(ResultSet resultSet) {
+            SqlRequestStats stats = SqlRequestStats.current();
+            return stats == null ? resultSet : proxy(ResultSet.class, new ResultSetHandler(resultSet, stats));
+        }
+    }
+
+    // Counts the rows read from a result set of a request, and the time next() waits for them
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final SqlRequestStats stats;
+
+        private ResultSetHandler(ResultSet target, SqlRequestStats stats) {
+            this.target = target;
+            this.stats = stats;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (isIdentityMethod(method)) {
+                return identity(proxy, method, args);
+            }
+            if (!method.getName().equals("next")) {
+                return SqlCountingDataSource.invoke(target, method, args);
+            }
+            long start = System.nanoTime();
+            boolean hasRow = (Boolean) SqlCountingDataSource.invoke(target, method, args);
+            stats.fetched(hasRow ? 1 : 0, System.nanoTime() - start);
+            return hasRow;
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package dev.rono.rest.config;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// JDK Flight Recorder event for one HTTP request handled under SqlBudgetFilter, with its JDBC work
+// Its duration is the whole request; sort by statements or database time to find the endpoints to look at
+@Name("dev.rono.rest.SqlRequest")
+@Label("SQL per Request")
+@Description("JDBC statements, rows fetched and time in the database of one HTTP request")
+@Category({"Product API", "SQL"})
+@StackTrace(false)
+class SqlRequestEvent extends Event {
+
+    @Label("Method")
+    String method;
+
+    @Label("Endpoint")
+    @Description("The handler's path pattern, or the request URI when no handler matched")
+    String endpoint;
+
+    @Label("Status")
+    int status;
+
+    @Label("Statements")
+    int statements;
+
+    @Label("Rows Fetched")
+    long rowsFetched;
+
+    @Label("Database Time")
+    @Timespan(Timespan.NANOSECONDS)
+    long databaseTime;
+
+    @Label("Over Budget")
+    @Description("More statements than product.sql-budget.max-statements")
+    boolean overBudget;
+
+    @Label("Most Repeated Statement")
+    String mostRepeated;
+
+    @Label("Most Repeated Count")
+    int mostRepeatedCount;
+}
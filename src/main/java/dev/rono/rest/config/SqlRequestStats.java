@@ -0,0 +1,80 @@
+package dev.rono.rest.config;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The JDBC work of one HTTP request: statements executed, rows fetched and time spent in the database
+// SqlBudgetFilter opens one per request on the request thread, and SqlCountingDataSource adds to it as statements run
+// on that thread; work on other threads (scheduled jobs, the change relay) is not attributed to any request
+// The stats are also stored as the request attribute ATTRIBUTE, so tests can read them from an MvcResult
+public final class SqlRequestStats {
+
+    public static final String ATTRIBUTE = SqlRequestStats.class.getName();
+
+    // Stats of the request handled by the current thread, while SqlBudgetFilter runs
+    private static final ThreadLocal<SqlRequestStats> CURRENT = new ThreadLocal<>();
+
+    private int statements;
+    private long rowsFetched;
+    private long databaseNanos;
+    // Executions per SQL text, in the order the statements first ran
+    private final Map<String, Integer> executions = new LinkedHashMap<>();
+
+    // Stats of the current request, or null outside of one
+    static SqlRequestStats current() {
+        return CURRENT.get();
+    }
+
+    static SqlRequestStats open() {
+        SqlRequestStats stats = new SqlRequestStats();
+        CURRENT.set(stats);
+        return stats;
+    }
+
+    static void close() {
+        CURRENT.remove();
+    }
+
+    // A statement was executed (a JDBC batch counts once: it is one round trip)
+    void executed(String sql, long nanos) {
+        statements++;
+        databaseNanos += nanos;
+        executions.merge(sql == null ? "?" : sql, 1, Integer::sum);
+    }
+
+    // A result set was read, fetchedRows rows of it in nanos
+    void fetched(int fetchedRows, long nanos) {
+        rowsFetched += fetchedRows;
+        databaseNanos += nanos;
+    }
+
+    public int getStatements() {
+        return statements;
+    }
+
+    public long getRowsFetched() {
+        return rowsFetched;
+    }
+
+    public Duration getDatabaseTime() {
+        return Duration.ofNanos(databaseNanos);
+    }
+
+    // Executions per SQL text
+    public Map<String, Integer> getExecutions() {
+        return Collections.unmodifiableMap(executions);
+    }
+
+    // The statement executed most often, the likely culprit of an N+1 query pattern; null when none ran
+    public Map.Entry<String, Integer> mostRepeated() {
+        Map.Entry<String, Integer> most = null;
+        for (Map.Entry<String, Integer> entry : executions.entrySet()) {
+            if (most == null || entry.getValue() > most.getValue()) {
+                most = entry;
+            }
+        }
+        return most;
+    }
+}
@@ -0,0 +1,27 @@
+package dev.rono.rest.config;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// JDK Flight Recorder event for one JDBC statement executed through SqlCountingDataSource (any thread)
+// Its duration is the execute call; reading the result set is not included
+// Recorded with the default settings of a recording; e.g. -XX:StartFlightRecording, then jfr print --events
+// dev.rono.rest.SqlStatement, or open the recording in JDK Mission Control
+@Name("dev.rono.rest.SqlStatement")
+@Label("SQL Statement")
+@Description("A JDBC statement executed by the application")
+@Category({"Product API", "SQL"})
+@StackTrace(false) // The request event tells which endpoint ran it; a stack trace per statement is too costly
+class SqlStatementEvent extends Event {
+
+    @Label("SQL")
+    String sql;
+
+    @Label("Batch")
+    @Description("True for executeBatch, which sends many rows in one round trip")
+    boolean batch;
+}
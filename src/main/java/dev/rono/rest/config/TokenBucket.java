@@ -0,0 +1,30 @@
+package dev.rono.rest.config;
+
+// Token bucket rate limiter: holds up to `burst` tokens and refills at `rate` tokens per second
+// Every request takes one token; without a token the request is over the limit
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    TokenBucket(double ratePerSecond, int burst) {
+        this.tokensPerNano = ratePerSecond / 1e9;
+        this.capacity = Math.max(1, burst);
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    // Takes a token; returns 0 when one was available, otherwise the nanoseconds until the next one is
+    synchronized long tryAcquire() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return (long) Math.ceil((1 - tokens) / tokensPerNano);
+    }
+}
@@ -1,20 +1,64 @@
 package dev.rono.rest.controllers;
 
 
-import dev.rono.rest.exceptions.ResourceNotFoundException;
+import dev.rono.rest.exceptions.BadRequestException;
+import dev.rono.rest.models.BatchResult;
+import dev.rono.rest.models.ImportResult;
+import dev.rono.rest.models.PriceUpdate;
 import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductSearch;
+import dev.rono.rest.models.ProductStats;
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.models.RepriceJobView;
+import dev.rono.rest.models.RepriceRequest;
 import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.services.CatalogSnapshot;
+import dev.rono.rest.services.PriceUpdateBuffer;
+import dev.rono.rest.services.ProductCatalog;
+import dev.rono.rest.services.ProductChangeRelay;
+import dev.rono.rest.services.ProductCsv;
+import dev.rono.rest.services.ProductImportService;
+import dev.rono.rest.services.ProductService;
+import dev.rono.rest.services.ProductStatsService;
+import dev.rono.rest.services.ProductSuggestService;
+import dev.rono.rest.services.RepriceJobService;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.DigestUtils;
+import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
 
 @RestController // This annotation indicates that this class is a RESTful controller
 @RequestMapping("/api/products") // This annotation maps HTTP requests to the methods in this controller
+@Profile("!reactive") // Servlet/JPA stack; ReactiveProductController serves the same API in the "reactive" profile
 public class ProductController {
     // This class will handle HTTP requests related to products
     // It uses Spring's @RestController annotation to indicate that it is a RESTful controller
@@ -23,52 +67,368 @@ public class ProductController {
     // This annotation allows Spring to automatically inject the ProductRepo bean into this controller
     private ProductRepo productRepo;
 
-    // 1. GET all products
+    @Autowired // Single-product reads and writes go through ProductService so the product cache stays coherent
+    // The batch endpoints also delegate to it, and it persists them in chunked JDBC batches
+    private ProductService productService;
+
+    @Autowired // Parses, validates and inserts the bulk import uploads
+    private ProductImportService productImportService;
+
+    @Autowired // Serves /stats from the in-memory summary it keeps up to date
+    private ProductStatsService productStatsService;
+
+    @Autowired // Serves /suggest from the in-memory name index
+    private ProductSuggestService productSuggestService;
+
+    @Autowired // Serves single products from memory when the catalog is enabled (the listing goes through findPage)
+    private ProductCatalog productCatalog;
+
+    @Autowired // Takes the price-only updates, and knows the prices that are still waiting to be written
+    private PriceUpdateBuffer priceUpdateBuffer;
+
+    @Autowired // Runs the bulk repricing jobs in the background and reports their progress
+    private RepriceJobService repriceJobService;
+
+    @Autowired // Streams the product change outbox to the /changes subscribers
+    private ProductChangeRelay productChangeRelay;
+
+    @Autowired // Used by the streaming endpoint to write products one at a time
+    private ObjectMapper objectMapper;
+
+
+    // Page size used when the client does not ask for one, and the largest page a client may request
+    static final int DEFAULT_PAGE_SIZE = 100;
+    static final int MAX_PAGE_SIZE = 1000;
+
+    // Number of suggestions returned when the client does not ask for a number, and the most it may ask for
+    static final int DEFAULT_SUGGESTIONS = 10;
+    static final int MAX_SUGGESTIONS = 50;
+
+    // Response header carrying the cursor of the next page (absent on the last page)
+    static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    // Media type for newline-delimited JSON (one product per line)
+    static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    // Trailer fields of an export: number of rows written and rows per second
+    static final String EXPORT_ROWS_TRAILER = "X-Export-Rows";
+    static final String EXPORT_RATE_TRAILER = "X-Export-Rows-Per-Second";
+
+    // Buffer size of the import reader and the CSV export writer
+    private static final int IO_BUFFER_SIZE = 64 * 1024;
+
+    // 1. GET all products, one keyset page at a time
+    // Clients pass the ID of the last product they received as "after" to get the next page
+    // The next cursor is returned in the X-Next-Cursor header and as a Link header with rel="next"
+    // Optional filters and sorting run in the database: ?name=<prefix>&nameContains=<text>&minPrice=&maxPrice=
+    // &sort=id|name|price&direction=asc|desc (the cursor keeps working for every sort order)
+    // With product.catalog.enabled=true the plain listing comes from the in-memory catalog as a CatalogSnapshot.Page,
+    // which CatalogPageConverter writes as pre-encoded bytes; its validators are computed from the snapshot columns
     @GetMapping
-    public List<Product> getAllProducts() {
-        return productRepo.findAll();
+    public ResponseEntity<List<ProductView>> getAllProducts(@RequestParam(required = false) Long after,
+                                                            @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                                                            ProductSearch search) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        List<ProductView> products = productService.findPage(search, after, pageSize);
+
+        // The ETag covers the IDs and versions on the page, so a repeated poll of an unchanged page
+        // is answered with 304 Not Modified without serializing the products
+        ResponseEntity.BodyBuilder response;
+        if (products instanceof CatalogSnapshot.Page page) {
+            String eTag = page.eTag();
+            response = ResponseEntity.ok();
+            if (eTag != null) {
+                response.eTag(eTag);
+            }
+            if (page.lastModified() != null) {
+                response.lastModified(page.lastModified());
+            }
+        } else {
+            response = ResponseEntity.ok().eTag(pageETag(products));
+            products.stream().map(ProductView::lastModified).filter(Objects::nonNull).max(Instant::compareTo)
+                    .ifPresent(response::lastModified);
+        }
+        if (products.size() == pageSize) {
+            // A full page means there may be more rows, so hand out a cursor for the next one
+            Long nextCursor = products instanceof CatalogSnapshot.Page page
+                    ? page.lastId() : products.get(products.size() - 1).id();
+            String nextLink = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", nextCursor)
+                    .replaceQueryParam("limit", pageSize)
+                    .toUriString();
+            response.header(NEXT_CURSOR_HEADER, String.valueOf(nextCursor))
+                    .header(HttpHeaders.LINK, "<" + nextLink + ">; rel=\"next\"");
+        }
+        return response.body(products);
     }
 
-    // 2. GET one product by ID
+    // 1b. GET all products as a stream, with bounded memory regardless of table size
+    // Rows are read through a JDBC cursor and written to the response as soon as they are fetched
+    // Returns NDJSON by default, or a single JSON array when the client only accepts application/json
+    @GetMapping(value = "/stream", produces = {APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @Transactional(readOnly = true) // The cursor behind the stream is only open inside a transaction
+    public void streamAllProducts(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                  HttpServletResponse response) throws IOException {
+        boolean jsonArray = accept != null
+                && accept.contains(MediaType.APPLICATION_JSON_VALUE)
+                && !accept.contains(APPLICATION_NDJSON_VALUE);
+        response.setContentType(jsonArray ? MediaType.APPLICATION_JSON_VALUE : APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try (Stream<ProductView> products = productRepo.streamAllViews()) {
+            writeJson(products, response, jsonArray);
+        }
+    }
+
+    // 2. GET one product by ID (served from the product cache when possible)
+    // The response carries the product version as ETag; a request whose If-None-Match still matches
+    // is answered with 304 Not Modified after a version-only lookup, without loading the product
+    // A price update that has not been written yet (write-behind) is shown, without ETag until it is written
+    // With the catalog enabled the product is read from the snapshot, and from the cache or database only when the
+    // snapshot does not have it (created by another instance since the last reload)
     @GetMapping("/{id}")
-    public ResponseEntity<Product> getProductById(@PathVariable Long id) {
-        Optional<Product> productOpt = productRepo.findById(id);
-        if (productOpt.isEmpty()) {
-            // Throw an exception or return a 404 Not Found response
-            throw new ResourceNotFoundException("Product not found with ID: " + id);
+    public ResponseEntity<ProductView> getProductById(@PathVariable Long id, WebRequest request) {
+        ProductView fromCatalog = productCatalog.find(id);
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null && priceUpdateBuffer.pendingPrice(id) == null
+                && request.checkNotModified(eTag(fromCatalog != null ? fromCatalog.version() : productService.findVersion(id)))) {
+            return null; // checkNotModified has already prepared the 304 response
         }
-        Product product = productOpt.get();
-        return ResponseEntity.ok(product);
+        // Throws ResourceNotFoundException (404 Not Found) when the product does not exist
+        ProductView product = priceUpdateBuffer.withPendingPrice(fromCatalog != null ? fromCatalog : productService.findById(id));
+        return withValidators(ResponseEntity.ok(), product).body(product);
     }
 
     // 3. POST create a new product
     @PostMapping
-    public ResponseEntity<Product> createProduct(@RequestBody @Valid Product product) {
+    public ResponseEntity<ProductView> createProduct(@RequestBody @Valid Product product) {
         // Validate the product object using @Valid annotation
         // @RequestBody annotation binds the request body to the product parameter
-        Product savedProduct = productRepo.save(product);
-        return ResponseEntity.status(201).body(savedProduct); // Return 201 Created status
+        ProductView savedProduct = productService.create(product);
+        return withValidators(ResponseEntity.status(201), savedProduct).body(savedProduct); // Return 201 Created status
     }
 
     // 4. PUT update an existing product
+    // With an If-Match header the update only happens if the product still has that ETag (412 otherwise),
+    // which gives clients optimistic concurrency instead of last-writer-wins
     @PutMapping("/{id}")
-    public ResponseEntity<Product> updateProduct(@PathVariable Long id, @RequestBody @Valid Product productDetails) {
-
-        Product existingProduct = productRepo.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
-        // Update the existing product with new details
-        existingProduct.setName(productDetails.getName());
-        existingProduct.setPrice(productDetails.getPrice());
-        Product updatedProduct = productRepo.save(existingProduct);
-        return ResponseEntity.ok(updatedProduct);
+    public ResponseEntity<ProductView> updateProduct(@PathVariable Long id, @RequestBody @Valid Product productDetails,
+                                                 @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        // Update the existing product with new details (404 Not Found if it does not exist)
+        ProductView updatedProduct = productService.update(id, productDetails, versionFromIfMatch(ifMatch));
+        return withValidators(ResponseEntity.ok(), updatedProduct).body(updatedProduct);
     }
 
-    // 5. DELETE a product by ID
+    // 5. DELETE a product by ID (honours If-Match the same way as PUT)
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteProduct(@PathVariable Long id) {
-        Product existingProduct = productRepo.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
-        productRepo.delete(existingProduct);
+    public ResponseEntity<Void> deleteProduct(@PathVariable Long id,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        productService.delete(id, versionFromIfMatch(ifMatch));
         return ResponseEntity.noContent().build(); // Return 204 No Content status
     }
+
+    // 6. POST create many products at once
+    // Each entry is validated on its own; the response lists the outcome of every entry in request order
+    // Returns 201 Created when every entry was created, or 207 Multi-Status when some of them failed
+    @PostMapping("/batch")
+    public ResponseEntity<BatchResult> createProducts(@RequestBody List<Product> products) {
+        BatchResult result = productService.createAll(products);
+        return ResponseEntity.status(result.failed() == 0 ? 201 : 207).body(result);
+    }
+
+    // 7. PUT update many existing products at once (every entry must carry its ID)
+    @PutMapping("/batch")
+    public ResponseEntity<BatchResult> updateProducts(@RequestBody List<Product> products) {
+        BatchResult result = productService.updateAll(products);
+        return ResponseEntity.status(result.failed() == 0 ? 200 : 207).body(result);
+    }
+
+    // 8. DELETE many products at once, given a JSON array of IDs
+    @DeleteMapping("/batch")
+    public ResponseEntity<BatchResult> deleteProducts(@RequestBody List<Long> ids) {
+        BatchResult result = productService.deleteAll(ids);
+        return ResponseEntity.status(result.failed() == 0 ? 200 : 207).body(result);
+    }
+
+    // 9. GET a live stream of product changes as Server-Sent Events
+    // Every create, update and delete is sent as a "product-change" event whose id is its sequence number, so
+    // consumers receive deltas instead of polling the list; ?since=<seq> (or the Last-Event-ID header that
+    // EventSource sends on reconnect) resumes after that change, without it the stream starts with the next change
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) Long since,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) throws IOException {
+        return productChangeRelay.subscribe(lastEventId != null ? lastEventId : since);
+    }
+
+    // 10. POST import products from a CSV (text/csv) or NDJSON (application/x-ndjson) upload
+    // The body is read line by line while it arrives, valid rows are inserted in chunked batches and the response
+    // reports the failed lines (line number -> errors) and the import throughput in rows per second
+    // Returns 201 Created when every line was imported, or 207 Multi-Status when some of them failed
+    @PostMapping(value = "/import", consumes = {ProductCsv.MEDIA_TYPE, APPLICATION_NDJSON_VALUE})
+    public ResponseEntity<ImportResult> importProducts(HttpServletRequest request) throws IOException {
+        MediaType contentType = MediaType.parseMediaType(request.getContentType());
+        Charset charset = contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(request.getInputStream(), charset), IO_BUFFER_SIZE)) {
+            ImportResult result = contentType.isCompatibleWith(MediaType.parseMediaType(ProductCsv.MEDIA_TYPE))
+                    ? productImportService.importCsv(reader)
+                    : productImportService.importNdjson(reader);
+            return ResponseEntity.status(result.failed() == 0 ? 201 : 207).body(result);
+        }
+    }
+
+    // 11. GET export every product as CSV (?format=csv, the default) or NDJSON (?format=ndjson)
+    // Rows come from the same forward-only cursor as /stream and are written as they are fetched, so memory stays
+    // flat for any table size; the row count and rows per second are sent as HTTP trailer fields at the end
+    @GetMapping("/export")
+    @Transactional(readOnly = true) // The cursor behind the stream is only open inside a transaction
+    public void exportProducts(@RequestParam(defaultValue = "csv") String format,
+                               HttpServletResponse response) throws IOException {
+        boolean csv = format.equalsIgnoreCase("csv");
+        if (!csv && !format.equalsIgnoreCase("ndjson")) {
+            throw new BadRequestException("Format must be csv or ndjson");
+        }
+        long start = System.nanoTime();
+        long[] rows = new long[1];
+        response.setHeader("Trailer", EXPORT_ROWS_TRAILER + ", " + EXPORT_RATE_TRAILER);
+        response.setTrailerFields(() -> Map.of(
+                EXPORT_ROWS_TRAILER, String.valueOf(rows[0]),
+                EXPORT_RATE_TRAILER, String.valueOf(Math.round(rows[0] * 1e9 / Math.max(1, System.nanoTime() - start)))));
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"products." + format.toLowerCase() + "\"");
+        response.setContentType(csv ? ProductCsv.MEDIA_TYPE : APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+
+        try (Stream<ProductView> products = productRepo.streamAllViews()) {
+            if (!csv) {
+                rows[0] = writeJson(products, response, false);
+                return;
+            }
+            Writer writer = new BufferedWriter(new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8), IO_BUFFER_SIZE);
+            writer.write(ProductCsv.HEADER);
+            writer.write('\n');
+            for (ProductView product : (Iterable<ProductView>) products::iterator) {
+                writer.write(ProductCsv.format(product));
+                writer.write('\n');
+                rows[0]++;
+            }
+            writer.flush();
+        }
+    }
+
+    // 12. GET aggregate statistics: product count, lowest/highest/average price and a price histogram
+    // Served from a summary that every write updates, so the cost does not grow with the number of products
+    // The histogram buckets are set by product.stats.histogram-bounds
+    @GetMapping("/stats")
+    public ProductStats getStats() {
+        return productStatsService.getStats();
+    }
+
+    // 13. GET typeahead suggestions: products whose name contains q (ignoring case), names starting with q first,
+    // then names with a word starting with q; queries of one or two characters only match the start of a word
+    // Served from an in-memory name index, so it never runs a LIKE '%q%' query
+    @GetMapping("/suggest")
+    public List<ProductView> suggestProducts(@RequestParam String q,
+                                             @RequestParam(defaultValue = "" + DEFAULT_SUGGESTIONS) int limit) {
+        return productSuggestService.suggest(q, Math.max(1, Math.min(limit, MAX_SUGGESTIONS)));
+    }
+
+    // 14. PUT only the price of a product, for high-frequency price feeds
+    // Written right away by default (200 OK with the product and its ETag, 404 Not Found when it does not exist)
+    // With product.price-updates.write-behind=true the update is accepted with 202 Accepted and written with the next
+    // flush, together with the other pending updates; repeated updates of one product are written once, with the
+    // last price (an ID that does not exist by then is dropped), and 503 means too many products are pending
+    @PutMapping("/{id}/price")
+    public ResponseEntity<ProductView> updatePrice(@PathVariable Long id, @RequestBody @Valid PriceUpdate priceUpdate) {
+        ProductView updatedProduct = priceUpdateBuffer.update(id, priceUpdate.price());
+        if (updatedProduct == null) {
+            return ResponseEntity.accepted().build();
+        }
+        return withValidators(ResponseEntity.ok(), updatedProduct).body(updatedProduct);
+    }
+
+    // 15. POST start a bulk repricing job: every product matching the filters gets its price changed by percent
+    // Answered right away with 202 Accepted, the job at 0% and its URL in the Location header
+    // The job runs in parallel chunks of product IDs, each in its own transaction; prices that would drop to zero or
+    // below are left unchanged
+    @PostMapping("/jobs/reprice")
+    public ResponseEntity<RepriceJobView> startRepriceJob(@RequestBody @Valid RepriceRequest request) {
+        RepriceJobView job = repriceJobService.start(request);
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/products/jobs/{id}").buildAndExpand(job.id()).toUri();
+        return ResponseEntity.accepted().location(location).body(job);
+    }
+
+    // 16. GET the status of a repricing job: chunks done, progress in percent, rows updated and rows per second
+    @GetMapping("/jobs/{id}")
+    public RepriceJobView getRepriceJob(@PathVariable Long id) {
+        return repriceJobService.find(id);
+    }
+
+    // Writes streamed products as NDJSON or as one JSON array and returns how many were written
+    private long writeJson(Stream<ProductView> products, HttpServletResponse response, boolean jsonArray) throws IOException {
+        long count = 0;
+        // The generator must not close the response: that would end it (and send the trailers) before we return
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(StreamUtils.nonClosing(response.getOutputStream()))) {
+            // Rows are separated by our own newlines in NDJSON mode, not by Jackson's default root separator
+            generator.setRootValueSeparator(null);
+            // writeObject() flushes after every row; the rows go out whenever the response buffer is full instead,
+            // rather than as one socket write (or one compressed block) each
+            generator.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            if (jsonArray) {
+                generator.writeStartArray();
+            }
+            for (ProductView product : (Iterable<ProductView>) products::iterator) {
+                generator.writeObject(product);
+                if (!jsonArray) {
+                    generator.writeRaw('\n');
+                }
+                count++;
+            }
+            if (jsonArray) {
+                generator.writeEndArray();
+            }
+        }
+        return count;
+    }
+
+    // Strong ETag of a single product: its version, quoted
+    static String eTag(Long version) {
+        return "\"" + version + "\"";
+    }
+
+    // Strong ETag of a list page: a digest of the IDs and versions it contains
+    static String pageETag(List<ProductView> products) {
+        StringBuilder ids = new StringBuilder();
+        for (ProductView product : products) {
+            ids.append(product.id()).append(':').append(product.version()).append(',');
+        }
+        return "\"" + DigestUtils.md5DigestAsHex(ids.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // Adds the ETag and Last-Modified headers of a product to a response
+    // A product whose version is not known (a price update that has not been written yet) gets no ETag
+    static ResponseEntity.BodyBuilder withValidators(ResponseEntity.BodyBuilder response, ProductView product) {
+        if (product.version() != null) {
+            response.eTag(eTag(product.version()));
+        }
+        if (product.lastModified() != null) {
+            response.lastModified(product.lastModified());
+        }
+        return response;
+    }
+
+    // Reads the expected product version from an If-Match header
+    // Returns null when there is no precondition ("*" or no header); an ETag that is not one of ours never matches
+    static Long versionFromIfMatch(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException ex) {
+            return -1L; // Versions start at 0, so this can never match
+        }
+    }
 }
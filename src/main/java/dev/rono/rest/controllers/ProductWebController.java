@@ -1,18 +1,32 @@
 package dev.rono.rest.controllers;
 
-import dev.rono.rest.exceptions.ResourceNotFoundException;
 import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductSearch;
+import dev.rono.rest.models.ProductView;
 import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.services.PriceUpdateBuffer;
+import dev.rono.rest.services.ProductService;
 
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
+import org.springframework.util.DigestUtils;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
-import java.util.List;
+import java.nio.charset.StandardCharsets;
 
 
 // This class will handle web requests related to products
@@ -21,24 +35,73 @@ import java.util.List;
 // The ProductWebController is designed to handle web requests, typically for rendering views
 @Controller
 @RequestMapping("/products")
+@Profile("!reactive") // Spring MVC pages, not available when the "reactive" profile runs the WebFlux stack
 public class ProductWebController {
    
     // It is not a RESTful controller like ProductController, but rather a traditional web controller
     // It uses the ProductRepo to access the database for product-related operations
     @Autowired
     private ProductRepo productRepo;
+    // Single-product reads and writes go through ProductService, which keeps the product cache coherent
+    // with the REST API (ProductController uses the same service)
+    @Autowired
+    private ProductService productService;
+    // The edit form shows a price that is still waiting to be written, as the API does
+    @Autowired
+    private PriceUpdateBuffer priceUpdateBuffer;
     // Additional methods for handling web requests will be added here
 
 
-    // 1. GET all products for web view
+    // Rows per page when the request does not ask for a size, and the largest size a request may ask for
+    static final int DEFAULT_PAGE_SIZE = 20;
+    static final int MAX_PAGE_SIZE = 100;
+
+    // 1. GET one page of products for web view (?page=0&size=20&sort=name,asc)
+    // Only the requested page is loaded (a LIMIT/OFFSET query plus a count), so the page renders in bounded time
+    // The rendered page gets an ETag built from the products it shows and the total count; when the browser
+    // revalidates and nothing on the page has changed, it gets 304 Not Modified without rendering the template
     @GetMapping
-    public String viewProductsPage(Model model) {
-        List<Product> products = productRepo.findAll();
-        model.addAttribute("products", products);
-        // This method handles GET requests to the "/products.html" URL
-        // It retrieves all products from the database and adds them to the model
+    public String viewProductsPage(@PageableDefault(size = DEFAULT_PAGE_SIZE, sort = "id") Pageable pageable,
+                                   Model model, WebRequest request, HttpServletResponse response) {
+        Page<Product> page = productRepo.findAll(pageRequest(pageable));
+        // A flash message (after a create/update/delete) is part of the page, so that response is never cached
+        if (!model.containsAttribute("message")) {
+            // no-cache lets the browser keep the page but makes it revalidate with If-None-Match on every visit
+            response.setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+            if (request.checkNotModified(pageETag(page))) {
+                return null; // checkNotModified has already prepared the 304 response
+            }
+        }
+        model.addAttribute("page", page);
+        model.addAttribute("products", page.getContent());
+        // Current sort field and direction, used by the template to build the sortable column headers
+        Sort.Order order = page.getSort().iterator().next();
+        model.addAttribute("sortField", order.getProperty());
+        model.addAttribute("sortDirection", order.getDirection().isAscending() ? "asc" : "desc");
+        // This method handles GET requests to the "/products" URL
         return "products";
-        // Thymeleaf will render the "products.html" template with the products data
+        // Thymeleaf will render the "products.html" template with the products of the page
+    }
+
+    // Strong ETag of a rendered page: the IDs and versions of its products (so any edit to one of them changes it),
+    // plus everything else the page shows: the total count, the page position and the sort order
+    private static String pageETag(Page<Product> page) {
+        String state = ProductController.pageETag(page.map(ProductView::of).getContent()) + page.getTotalElements()
+                + ":" + page.getNumber() + ":" + page.getSize() + ":" + page.getSort();
+        return "\"" + DigestUtils.md5DigestAsHex(state.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    // Clamps the requested page to MAX_PAGE_SIZE rows and an indexed sort field (id, name or price),
+    // with the ID as tie-breaker so rows with equal names or prices keep a stable order across pages
+    private static Pageable pageRequest(Pageable pageable) {
+        Sort.Order order = pageable.getSort().stream()
+                .filter(o -> ProductSearch.SORT_FIELDS.contains(o.getProperty()))
+                .findFirst()
+                .orElse(Sort.Order.asc("id"));
+        Sort sort = order.getProperty().equals("id")
+                ? Sort.by(order)
+                : Sort.by(order, new Sort.Order(order.getDirection(), "id"));
+        return PageRequest.of(pageable.getPageNumber(), Math.min(pageable.getPageSize(), MAX_PAGE_SIZE), sort);
     }
 
     // 2. Show form to create a new product
@@ -56,7 +119,7 @@ public class ProductWebController {
             return "productForm";
         }
         // If the product is valid, save it to the database
-        productRepo.save(product);
+        productService.create(product);
         // Add a success message to the redirect attributes
         redirectAttributes.addFlashAttribute("message", "Product created successfully!");
         // Redirect to the products page after successful creation
@@ -67,9 +130,11 @@ public class ProductWebController {
     @GetMapping("/edit/{id}")
     public String showEditForm(@PathVariable Long id, Model model) {
         // Retrieve the product by ID and add it to the model
-        // If the product is not found, throw a ResourceNotFoundException
-        Product product = productRepo.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
+        // If the product is not found, a ResourceNotFoundException is thrown
+        // The form binds to a Product, filled from the cached read model
+        ProductView view = priceUpdateBuffer.withPendingPrice(productService.findById(id));
+        Product product = new Product(view.name(), view.price());
+        product.setId(view.id());
         model.addAttribute("product", product);
         return "productForm";
     }
@@ -81,14 +146,9 @@ public class ProductWebController {
             // If there are validation errors, return to the form view
             return "productForm";
         }
-        // Retrieve the existing product by ID
-        Product existingProduct = productRepo.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
-        // Update the existing product with new details
-        existingProduct.setName(productDetails.getName());
-        existingProduct.setPrice(productDetails.getPrice());
-        // Save the updated product to the database
-        productRepo.save(existingProduct);
+        // Update the existing product with new details and save it to the database
+        // If the product is not found, a ResourceNotFoundException is thrown
+        productService.update(id, productDetails, null);
         // Add a success message to the redirect attributes
         redirectAttributes.addFlashAttribute("message", "Product updated successfully!");
         // Redirect to the products page after successful update
@@ -98,11 +158,9 @@ public class ProductWebController {
     // 6. Handle product deletion
     @GetMapping("/delete/{id}")
     public String deleteProduct(@PathVariable Long id, RedirectAttributes redirectAttributes) {
-        // Retrieve the product by ID
-        Product existingProduct = productRepo.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
         // Delete the product from the database
-        productRepo.delete(existingProduct);
+        // If the product is not found, a ResourceNotFoundException is thrown
+        productService.delete(id, null);
         // Add a success message to the redirect attributes
         redirectAttributes.addFlashAttribute("message", "Product deleted successfully!");
         // Redirect to the products page after successful deletion
@@ -0,0 +1,111 @@
+package dev.rono.rest.controllers;
+
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductSearch;
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.services.ReactiveProductService;
+
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+import static dev.rono.rest.controllers.ProductController.*;
+
+@RestController // Same /api/products contract as ProductController, served by WebFlux and R2DBC
+@RequestMapping("/api/products")
+@Profile("reactive") // Replaces ProductController when the application runs with the "reactive" profile
+public class ReactiveProductController {
+    // This class handles the product API without blocking a thread per request
+    // Every handler returns a Mono or Flux, and the response is written once the database has answered
+    // The batch endpoints are only available on the servlet stack
+
+    @Autowired
+    private ReactiveProductService productService;
+
+    // 1. GET all products, one keyset page at a time (same parameters and headers as ProductController)
+    @GetMapping
+    public Mono<ResponseEntity<List<Product>>> getAllProducts(@RequestParam(required = false) Long after,
+                                                              @RequestParam(defaultValue = "" + DEFAULT_PAGE_SIZE) int limit,
+                                                              ProductSearch search, ServerHttpRequest request) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return productService.findPage(search, after, pageSize).collectList().map(products -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().eTag(pageETag(products.stream().map(ProductView::of).toList()));
+            products.stream().map(Product::getLastModified).filter(Objects::nonNull).max(Instant::compareTo)
+                    .ifPresent(response::lastModified);
+            if (products.size() == pageSize) {
+                // A full page means there may be more rows, so hand out a cursor for the next one
+                Long nextCursor = products.get(products.size() - 1).getId();
+                String nextLink = UriComponentsBuilder.fromHttpRequest(request)
+                        .replaceQueryParam("after", nextCursor)
+                        .replaceQueryParam("limit", pageSize)
+                        .toUriString();
+                response.header(NEXT_CURSOR_HEADER, String.valueOf(nextCursor))
+                        .header(HttpHeaders.LINK, "<" + nextLink + ">; rel=\"next\"");
+            }
+            return response.body(products);
+        });
+    }
+
+    // 1b. GET all products as a stream, NDJSON by default or a JSON array for application/json
+    // The Flux is written as the client reads it: WebFlux only requests more rows from R2DBC when the
+    // previous ones have been flushed to the socket, so a slow client applies backpressure to the query
+    @GetMapping(value = "/stream", produces = {APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public Flux<Product> streamAllProducts() {
+        return productService.streamAll();
+    }
+
+    // 2. GET one product by ID, with its version as ETag
+    // A request whose If-None-Match still matches is answered with 304 after a version-only lookup
+    @GetMapping("/{id}")
+    public Mono<ResponseEntity<Product>> getProductById(@PathVariable Long id,
+                                                        @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            return productService.findVersion(id).flatMap(version -> {
+                String eTag = eTag(version);
+                if (ifNoneMatch.contains(eTag) || ifNoneMatch.trim().equals("*")) {
+                    return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).<Product>build());
+                }
+                return productService.findById(id).map(product -> withValidators(ResponseEntity.ok(), ProductView.of(product)).body(product));
+            });
+        }
+        // Emits ResourceNotFoundException (404 Not Found) when the product does not exist
+        return productService.findById(id).map(product -> withValidators(ResponseEntity.ok(), ProductView.of(product)).body(product));
+    }
+
+    // 3. POST create a new product
+    @PostMapping
+    public Mono<ResponseEntity<Product>> createProduct(@RequestBody @Valid Product product) {
+        return productService.create(product)
+                .map(savedProduct -> withValidators(ResponseEntity.status(201), ProductView.of(savedProduct)).body(savedProduct));
+    }
+
+    // 4. PUT update an existing product (If-Match makes it conditional, 412 when the version has changed)
+    @PutMapping("/{id}")
+    public Mono<ResponseEntity<Product>> updateProduct(@PathVariable Long id, @RequestBody @Valid Product productDetails,
+                                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return productService.update(id, productDetails, versionFromIfMatch(ifMatch))
+                .map(updatedProduct -> withValidators(ResponseEntity.ok(), ProductView.of(updatedProduct)).body(updatedProduct));
+    }
+
+    // 5. DELETE a product by ID (honours If-Match the same way as PUT)
+    @DeleteMapping("/{id}")
+    public Mono<ResponseEntity<Void>> deleteProduct(@PathVariable Long id,
+                                                    @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return productService.delete(id, versionFromIfMatch(ifMatch))
+                .then(Mono.just(ResponseEntity.noContent().build())); // Return 204 No Content status
+    }
+}
@@ -0,0 +1,13 @@
+package dev.rono.rest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class BadRequestException extends RuntimeException {
+    // This class represents a custom exception for requests that are well-formed but cannot be processed as sent
+    // (for example a batch that is larger than the server accepts)
+    public BadRequestException(String message) {
+        super(message); // Call the constructor of the superclass with the error message
+    }
+}
@@ -0,0 +1,13 @@
+package dev.rono.rest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+public class ConflictException extends RuntimeException {
+    // This class represents a custom exception for requests that clash with another request in progress
+    // (for example a retry whose Idempotency-Key is still being processed by the original request)
+    public ConflictException(String message) {
+        super(message); // Call the constructor of the superclass with the error message
+    }
+}
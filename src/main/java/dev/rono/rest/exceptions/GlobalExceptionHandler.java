@@ -1,11 +1,17 @@
 package dev.rono.rest.exceptions;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -15,6 +21,13 @@ public class GlobalExceptionHandler {
     // This class will handle global exceptions for the REST API
     // It uses Spring's @RestControllerAdvice annotation to indicate that it is a global exception handler
 
+    // Every handled error is counted in the product.api.errors metric, tagged with the status and exception
+    private final MeterRegistry meterRegistry;
+
+    public GlobalExceptionHandler(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
     // Handle ResourceNotFoundException globally (specified by @ExceptionHandler)
     // This method will be called whenever a ResourceNotFoundException is thrown in the application
     // It will return a 404 Not Found response with an error message
@@ -22,6 +35,7 @@ public class GlobalExceptionHandler {
     @ExceptionHandler(ResourceNotFoundException.class)
     @ResponseStatus(HttpStatus.NOT_FOUND)
     public Map<String, String> handleResourceNotFoundException(ResourceNotFoundException ex) {
+        countError(HttpStatus.NOT_FOUND, ex);
         // Handle ResourceNotFoundException and return a 404 Not Found response
         Map<String, String> error = new HashMap<>();
         error.put("error", ex.getMessage());
@@ -29,10 +43,90 @@ public class GlobalExceptionHandler {
     }
 
 
+    // Handle BadRequestException globally
+    // It will return a 400 Bad Request response with the same error body shape as the 404 handler
+    @ExceptionHandler(BadRequestException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleBadRequestException(BadRequestException ex) {
+        countError(HttpStatus.BAD_REQUEST, ex);
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return error;
+    }
+
+    // Handle PreconditionFailedException globally (If-Match did not match the current version)
+    // It will return a 412 Precondition Failed response with an error message
+    @ExceptionHandler(PreconditionFailedException.class)
+    @ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+    public Map<String, String> handlePreconditionFailedException(PreconditionFailedException ex) {
+        countError(HttpStatus.PRECONDITION_FAILED, ex);
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return error;
+    }
+
+    // Handle ConflictException globally (e.g. a retry while the original request with its Idempotency-Key runs)
+    // It will return a 409 Conflict response with an error message
+    @ExceptionHandler(ConflictException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleConflictException(ConflictException ex) {
+        countError(HttpStatus.CONFLICT, ex);
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return error;
+    }
+
+    // Handle UnprocessableEntityException globally (e.g. an Idempotency-Key reused for a different request)
+    // It will return a 422 Unprocessable Entity response with an error message
+    @ExceptionHandler(UnprocessableEntityException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public Map<String, String> handleUnprocessableEntityException(UnprocessableEntityException ex) {
+        countError(HttpStatus.UNPROCESSABLE_ENTITY, ex);
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return error;
+    }
+
+    // Handle TooManyRequestsException globally (a rate limit of RateLimitInterceptor was reached)
+    // It will return a 429 Too Many Requests response with an error message and a Retry-After header
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<Map<String, String>> handleTooManyRequestsException(TooManyRequestsException ex) {
+        countError(HttpStatus.TOO_MANY_REQUESTS, ex);
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+
+    // Handle ServiceUnavailableException globally (the request was shed because the server is overloaded)
+    // It will return a 503 Service Unavailable response with an error message and a Retry-After header
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<Map<String, String>> handleServiceUnavailableException(ServiceUnavailableException ex) {
+        countError(HttpStatus.SERVICE_UNAVAILABLE, ex);
+        Map<String, String> error = new HashMap<>();
+        error.put("error", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(ex.getRetryAfterSeconds()))
+                .body(error);
+    }
+
+    // Handle optimistic locking failures (another request updated the same product in the meantime)
+    // It will return a 409 Conflict response, the client should reload the product and retry
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public Map<String, String> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        countError(HttpStatus.CONFLICT, ex);
+        Map<String, String> error = new HashMap<>();
+        error.put("error", "Product was modified concurrently, reload it and retry");
+        return error;
+    }
+
     // ValidationException handler
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleValidationException(MethodArgumentNotValidException ex) {
+        countError(HttpStatus.BAD_REQUEST, ex);
         Map<String, String> error = new HashMap<>();
         // Iterate through the validation errors and add them to the error map
 //        ex.getBindingResult().getFieldErrors().forEach(fieldError -> {
@@ -45,4 +139,26 @@ public class GlobalExceptionHandler {
         return error;
     }
 
+    // Same validation errors on the WebFlux stack (ReactiveProductController), with the same body
+    @ExceptionHandler(WebExchangeBindException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleWebExchangeBindException(WebExchangeBindException ex) {
+        countError(HttpStatus.BAD_REQUEST, ex);
+        Map<String, String> error = new HashMap<>();
+        for (FieldError fieldError : ex.getBindingResult().getFieldErrors()) {
+            error.put(fieldError.getField(), fieldError.getDefaultMessage());
+        }
+        return error;
+    }
+
+    // Increments the error counter for a handled exception
+    private void countError(HttpStatus status, Exception ex) {
+        Counter.builder("product.api.errors")
+                .description("Errors returned by GlobalExceptionHandler")
+                .tag("status", String.valueOf(status.value()))
+                .tag("exception", ex.getClass().getSimpleName())
+                .register(meterRegistry)
+                .increment();
+    }
+
 }
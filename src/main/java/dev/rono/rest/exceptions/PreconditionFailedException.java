@@ -0,0 +1,13 @@
+package dev.rono.rest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.PRECONDITION_FAILED)
+public class PreconditionFailedException extends RuntimeException {
+    // This class represents a custom exception for conditional requests whose precondition does not hold
+    // (for example an If-Match header that no longer matches the product's current version)
+    public PreconditionFailedException(String message) {
+        super(message); // Call the constructor of the superclass with the error message
+    }
+}
@@ -0,0 +1,13 @@
+package dev.rono.rest.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+public class UnprocessableEntityException extends RuntimeException {
+    // This class represents a custom exception for well-formed requests that cannot be processed
+    // (for example an Idempotency-Key that was already used for a different request body)
+    public UnprocessableEntityException(String message) {
+        super(message); // Call the constructor of the superclass with the error message
+    }
+}
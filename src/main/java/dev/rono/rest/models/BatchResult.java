@@ -0,0 +1,33 @@
+package dev.rono.rest.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+// Result of a batch create/update/delete request
+// It holds one item per submitted entry, in request order, so clients can match errors to their input
+public record BatchResult(int succeeded, int failed, List<Item> items) {
+
+    // Outcome of a single entry in the batch
+    public enum Status { CREATED, UPDATED, DELETED, INVALID, NOT_FOUND, FAILED }
+
+    // The index refers to the position of the entry in the request body
+    // Errors use the same field -> message shape as the single-product validation errors
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Item(int index, Long id, Status status, Map<String, String> errors) {
+
+        @JsonIgnore // Derived from the status, so it is not part of the JSON contract
+        public boolean isSuccess() {
+            return status == Status.CREATED || status == Status.UPDATED || status == Status.DELETED;
+        }
+    }
+
+    // Builds the result from the per-entry outcomes and counts the successes and failures
+    public static BatchResult of(Item[] items) {
+        int succeeded = (int) Arrays.stream(items).filter(Item::isSuccess).count();
+        return new BatchResult(succeeded, items.length - succeeded, List.of(items));
+    }
+}
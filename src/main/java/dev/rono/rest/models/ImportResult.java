@@ -0,0 +1,16 @@
+package dev.rono.rest.models;
+
+import java.util.List;
+import java.util.Map;
+
+// Result of a bulk import (POST /api/products/import)
+// Only failed lines are listed, at most ProductImportService.MAX_REPORTED_ERRORS of them, so the report
+// stays small for any upload size; errorsTruncated tells whether more lines failed than are listed
+public record ImportResult(long imported, long failed, long elapsedMillis, double rowsPerSecond,
+                           List<LineError> errors, boolean errorsTruncated) {
+
+    // A line of the upload that was not imported, numbered from 1 (a CSV header line counts as line 1)
+    // Errors use the same field -> message shape as the single-product validation errors
+    public record LineError(long line, Map<String, String> errors) {
+    }
+}
@@ -0,0 +1,11 @@
+package dev.rono.rest.models;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+// Request body of PUT /api/products/{id}/price: only the new price, with the same rules as Product.price
+public record PriceUpdate(
+        @NotNull(message = "Price must be provided")
+        @Positive(message = "Price must be positive")
+        Double price) {
+}
@@ -1,27 +1,46 @@
 package dev.rono.rest.models;
 
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
+import jakarta.persistence.Version;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
 
 @Entity // This annotation marks the class as a JPA entity
-@Table(name = "products") // This annotation specifies the table name in the database
+@Table(name = "products", indexes = { // This annotation specifies the table name in the database
+        // Indexes for searching and sorting by name and price; the trailing id column keeps keyset pages index-ordered
+        @Index(name = "idx_products_name", columnList = "name, id"),
+        @Index(name = "idx_products_price", columnList = "price, id")
+})
+// The same class is mapped by Spring Data R2DBC for the reactive profile, which needs its own @Table and @Id
+// (fully qualified, because their simple names clash with the JPA ones); versions are set by ReactiveProductService
+@org.springframework.data.relational.core.mapping.Table("products")
 @Getter // Lombok annotations to generate getters and setters automatically
 @Setter
 @NoArgsConstructor
 public class Product {
 
     @Id // This annotation marks the field as the primary key
-    @GeneratedValue(strategy = GenerationType.IDENTITY) // This annotation specifies that the primary key will be generated automatically
+    @org.springframework.data.annotation.Id
+    // The primary key comes from a pooled sequence (emulated with a table on MySQL) rather than IDENTITY:
+    // Hibernate has to run an IDENTITY insert immediately to learn the ID, which disables JDBC insert batching,
+    // while a pooled sequence hands out allocationSize IDs per round trip so inserts can be batched
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_seq")
+    @SequenceGenerator(name = "product_seq", sequenceName = "product_seq", allocationSize = 50)
     private  Long id;
 
     @NotBlank(message = "Name is Mandatory") // Bean Validation annotation to ensure the name is not blank
@@ -31,6 +50,17 @@ public class Product {
     @Positive(message = "Price must be positive") // Bean Validation annotation to ensure the price is positive
     private Double price;
 
+    // Optimistic locking version, incremented by Hibernate on every update
+    // It is sent to clients as the ETag header rather than in the JSON body, and checked against If-Match
+    @Version
+    @JsonIgnore
+    private Long version;
+
+    // Time of the last insert or update, sent to clients as the Last-Modified header
+    @UpdateTimestamp
+    @JsonIgnore
+    private Instant lastModified;
+
     // Constructors, getters, and setters
 //    public Product() { // Implemented by Lombok's @NoArgsConstructor
 //    }
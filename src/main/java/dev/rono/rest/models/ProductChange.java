@@ -0,0 +1,81 @@
+package dev.rono.rest.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// One row of the product change outbox: a create, update or delete of a product
+// Rows are inserted by ProductService in the same transaction as the product write itself, so a change is
+// recorded if and only if the write commits; ProductChangeRelay then numbers them and streams them to consumers
+@Entity
+@Table(name = "product_changes", indexes = {
+        // Consumers resume by sequence number, and the relay looks up the rows it has not numbered yet
+        @Index(name = "idx_product_changes_seq", columnList = "seq", unique = true)
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class ProductChange {
+
+    public enum Type {CREATED, UPDATED, DELETED}
+
+    // Insert order: the ID is assigned by the INSERT itself (AUTO_INCREMENT / identity column), inside the write's own
+    // transaction and after it has locked the product's row, so the changes of one product get IDs in commit order on
+    // every instance; the relay numbers the rows of each batch in this order (see ProductChangeRepo.findUnsequenced)
+    // Hibernate cannot batch inserts with database-assigned IDs, so the outbox rows of a chunk go out one INSERT each
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @JsonIgnore
+    private Long id;
+
+    // Position in the change stream, assigned by the relay after the row has committed (null until then)
+    // Sequence numbers only grow, so "since=<seq>" resumes a consumer exactly where it stopped
+    private Long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Type type;
+
+    @Column(nullable = false)
+    private Long productId;
+
+    // New state of the product (empty for deletes); version is null after an unconditional update
+    private String name;
+    private Double price;
+    private Long version;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+
+    public ProductChange(Type type, Long productId, String name, Double price, Long version, Instant changedAt) {
+        this.type = type;
+        this.productId = productId;
+        this.name = name;
+        this.price = price;
+        this.version = version;
+        this.changedAt = changedAt;
+    }
+
+    // Change record for a created or updated product
+    public static ProductChange of(Type type, Product product) {
+        Instant changedAt = product.getLastModified() != null ? product.getLastModified() : Instant.now();
+        return new ProductChange(type, product.getId(), product.getName(), product.getPrice(), product.getVersion(), changedAt);
+    }
+
+    // Change record for a deleted product
+    public static ProductChange deleted(Long productId) {
+        return new ProductChange(Type.DELETED, productId, null, null, null, Instant.now());
+    }
+}
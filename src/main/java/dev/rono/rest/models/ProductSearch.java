@@ -0,0 +1,40 @@
+package dev.rono.rest.models;
+
+import org.springframework.data.domain.Sort;
+
+import java.util.Set;
+
+// Search, filter and sort options of GET /api/products, bound from the query string
+// name matches a prefix (index-friendly), nameContains matches anywhere in the name,
+// minPrice/maxPrice are inclusive bounds, sort is one of id, name or price and direction is asc or desc
+public record ProductSearch(String name, String nameContains, Double minPrice, Double maxPrice,
+                            String sort, String direction) {
+
+    // Fields the list can be sorted by (each one is backed by an index)
+    public static final Set<String> SORT_FIELDS = Set.of("id", "name", "price");
+
+    public ProductSearch {
+        sort = sort == null || sort.isBlank() ? "id" : sort;
+        direction = direction == null || direction.isBlank() ? "asc" : direction;
+    }
+
+    // An empty search: every product, in ID order
+    public static ProductSearch none() {
+        return new ProductSearch(null, null, null, null, null, null);
+    }
+
+    // The sort direction (throws IllegalArgumentException for anything but asc/desc)
+    public Sort.Direction sortDirection() {
+        return Sort.Direction.fromString(direction);
+    }
+
+    // True when the request only asks for the plain ID-ordered listing
+    public boolean isUnfiltered() {
+        return isBlank(name) && isBlank(nameContains) && minPrice == null && maxPrice == null
+                && sort.equals("id") && direction.equalsIgnoreCase("asc");
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+}
@@ -0,0 +1,17 @@
+package dev.rono.rest.models;
+
+import java.time.Instant;
+import java.util.List;
+
+// Aggregate statistics of all products, served by GET /api/products/stats from ProductStatsService
+// minPrice, maxPrice and averagePrice are null when there are no products
+// pendingCorrections counts the writes since the last reconciliation whose effect on the price sum and histogram
+// could not be applied exactly (their old price was unknown); 0 means the figures are exact
+public record ProductStats(long count, Double minPrice, Double maxPrice, Double averagePrice,
+                           List<Bucket> histogram, Instant reconciledAt, long pendingCorrections) {
+
+    // Number of products priced from (inclusive) to (exclusive); the first bucket has no lower bound and the
+    // last one no upper bound (null)
+    public record Bucket(Double from, Double to, long count) {
+    }
+}
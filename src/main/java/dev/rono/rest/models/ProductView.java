@@ -0,0 +1,50 @@
+package dev.rono.rest.models;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.time.Instant;
+
+// Read model of a product: what ProductController returns for list, detail and streaming reads
+// It is filled straight from a query (a constructor expression, see ProductRepo), so read-only responses never
+// create managed Product entities, and being immutable it can be shared from the product cache between requests
+// The JSON is the same as Product's: id, name and price; version and lastModified travel as ETag and Last-Modified
+@JsonSerialize(using = ProductView.Serializer.class)
+public record ProductView(Long id, String name, Double price, @JsonIgnore Long version, @JsonIgnore Instant lastModified) {
+
+    public static ProductView of(Product product) {
+        return new ProductView(product.getId(), product.getName(), product.getPrice(), product.getVersion(), product.getLastModified());
+    }
+
+    // Writes the three fields directly instead of going through Jackson's reflective bean serializer,
+    // which matters for pages of 100 products and for the streaming endpoints
+    static final class Serializer extends StdSerializer<ProductView> {
+
+        Serializer() {
+            super(ProductView.class);
+        }
+
+        @Override
+        public void serialize(ProductView view, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeStartObject(view);
+            generator.writeFieldName("id");
+            if (view.id() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(view.id());
+            }
+            generator.writeStringField("name", view.name());
+            generator.writeFieldName("price");
+            if (view.price() == null) {
+                generator.writeNull();
+            } else {
+                generator.writeNumber(view.price());
+            }
+            generator.writeEndObject();
+        }
+    }
+}
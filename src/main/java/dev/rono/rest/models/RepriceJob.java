@@ -0,0 +1,93 @@
+package dev.rono.rest.models;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.Instant;
+
+// A bulk repricing job (POST /api/products/jobs/reprice, see RepriceJobService)
+// The product ID range [firstId, lastId] is fixed when the job is created and split into totalChunks chunks of
+// chunkSize IDs; products created after that are not repriced
+// Finished chunks are recorded in reprice_job_chunks (see RepriceJobRepo), which is where progress comes from
+@Entity
+@Table(name = "reprice_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+public class RepriceJob {
+
+    public enum Status {RUNNING, COMPLETED, FAILED}
+
+    // Jobs are rare, so IDs are taken one at a time and stay consecutive across restarts
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "reprice_job_seq")
+    @SequenceGenerator(name = "reprice_job_seq", sequenceName = "reprice_job_seq", allocationSize = 1)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private Status status;
+
+    // Price change in percent: every matching price is multiplied by (1 + percent / 100)
+    @Column(nullable = false)
+    private Double percent;
+
+    // Filters, with the same meaning as the search parameters of GET /api/products (null matches every product)
+    private String name;
+    private String nameContains;
+    private Double minPrice;
+    private Double maxPrice;
+
+    @Column(nullable = false)
+    private Long firstId;
+
+    @Column(nullable = false)
+    private Long lastId;
+
+    @Column(nullable = false)
+    private Integer chunkSize;
+
+    @Column(nullable = false)
+    private Integer totalChunks;
+
+    // Why the job failed (null unless status is FAILED)
+    @Column(length = 1000)
+    private String error;
+
+    @Column(nullable = false)
+    private Instant createdAt;
+
+    // Time the job was started, or resumed after a restart; rows per second are measured from here
+    @Column(nullable = false)
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    // Lease of a RUNNING job: the instance running it, which renews heartbeatAt while it does (null once released)
+    private String owner;
+    private Instant heartbeatAt;
+
+    // The search filters of the job
+    public ProductSearch filter() {
+        return new ProductSearch(name, nameContains, minPrice, maxPrice, null, null);
+    }
+
+    // First and last product ID of a chunk (numbered from 0)
+    public long chunkStart(int chunk) {
+        return firstId + (long) chunk * chunkSize;
+    }
+
+    public long chunkEnd(int chunk) {
+        return Math.min(chunkStart(chunk) + chunkSize - 1, lastId);
+    }
+}
@@ -0,0 +1,23 @@
+package dev.rono.rest.models;
+
+import java.time.Duration;
+import java.time.Instant;
+
+// Response of the bulk repricing job endpoints: the job's request, its status and progress
+// progress is the share of chunks done (0 to 100); rowsPerSecond counts the rows updated since the job was last
+// started (a resumed job is measured from its restart), over the time it has run since then
+public record RepriceJobView(Long id, RepriceJob.Status status, double percent, String name, String nameContains,
+                             Double minPrice, Double maxPrice, int totalChunks, long completedChunks, double progress,
+                             long rowsUpdated, double rowsPerSecond, Instant createdAt, Instant startedAt,
+                             Instant finishedAt, String error) {
+
+    public static RepriceJobView of(RepriceJob job, long completedChunks, long rowsUpdated, long rowsUpdatedSinceStart) {
+        Instant end = job.getFinishedAt() != null ? job.getFinishedAt() : Instant.now();
+        double seconds = Math.max(Duration.between(job.getStartedAt(), end).toNanos(), 1) / 1e9;
+        double progress = job.getTotalChunks() == 0 ? 100 : 100.0 * completedChunks / job.getTotalChunks();
+        return new RepriceJobView(job.getId(), job.getStatus(), job.getPercent(), job.getName(), job.getNameContains(),
+                job.getMinPrice(), job.getMaxPrice(), job.getTotalChunks(), completedChunks, progress, rowsUpdated,
+                rowsUpdatedSinceStart / seconds, job.getCreatedAt(), job.getStartedAt(), job.getFinishedAt(),
+                job.getError());
+    }
+}
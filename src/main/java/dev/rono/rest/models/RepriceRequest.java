@@ -0,0 +1,17 @@
+package dev.rono.rest.models;
+
+import jakarta.validation.constraints.DecimalMin;
+import jakarta.validation.constraints.NotNull;
+
+// Request body of POST /api/products/jobs/reprice: the price change in percent (10 raises prices by 10%, -25 lowers
+// them by a quarter), and optional filters with the same meaning as the search parameters of GET /api/products
+// A change of -100% or less would make every price zero or negative, which Product.price does not allow
+public record RepriceRequest(
+        @NotNull(message = "Percent must be provided")
+        @DecimalMin(value = "-100", inclusive = false, message = "Percent must be greater than -100")
+        Double percent,
+        String name,
+        String nameContains,
+        Double minPrice,
+        Double maxPrice) {
+}
@@ -0,0 +1,41 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.ProductChange;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+public interface ProductChangeRepo extends JpaRepository<ProductChange, Long> {
+    // This interface gives access to the product change outbox (see ProductChange)
+
+    // Committed changes that have no sequence number yet, oldest first (by ID, which is commit order per product)
+    // The rows are locked, so relays running in several application instances number each row only once
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from ProductChange c where c.seq is null order by c.id")
+    List<ProductChange> findUnsequenced(Limit limit);
+
+    // Highest sequence number handed out so far (0 when the stream is empty)
+    @Query("select coalesce(max(c.seq), 0) from ProductChange c")
+    long findMaxSeq();
+
+    // Lowest sequence number still stored, older ones have been removed by the retention cleanup
+    @Query("select min(c.seq) from ProductChange c")
+    Optional<Long> findMinSeq();
+
+    // Numbered changes after one sequence number, up to and including another, in stream order
+    @Query("select c from ProductChange c where c.seq > :after and c.seq <= :upTo order by c.seq")
+    List<ProductChange> findSequencedBetween(@Param("after") long after, @Param("upTo") long upTo, Limit limit);
+
+    // Removes numbered changes older than the cutoff, except the newest one (keepSeq) so numbering continues from it
+    @Modifying
+    @Query("delete from ProductChange c where c.changedAt < :cutoff and c.seq < :keepSeq")
+    int deleteSequencedBefore(@Param("cutoff") Instant cutoff, @Param("keepSeq") long keepSeq);
+}
@@ -1,9 +1,109 @@
 package dev.rono.rest.repositories;
 
 import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductView;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
-public interface ProductRepo extends JpaRepository<Product, Long> {
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface ProductRepo extends JpaRepository<Product, Long>, JpaSpecificationExecutor<Product>, ProductViewQueries,
+        ProductStatsQueries, ProductRepriceQueries {
     // This interface extends JpaRepository, which provides CRUD operations for the Product entity
-    // No additional methods are defined here, but you can add custom query methods if needed
+    // JpaSpecificationExecutor runs the search predicates built by ProductSpecifications in the database
+    // ProductViewQueries runs the same searches but returns ProductView records (see ProductViewQueriesImpl)
+    // ProductStatsQueries runs the price aggregates that reconcile the product statistics (see ProductStatsQueriesImpl)
+    // ProductRepriceQueries runs the set-based price updates of the repricing jobs (see ProductRepriceQueriesImpl)
+    // The custom query methods below support reading large product tables without loading them all at once
+    // findAll(Pageable), inherited from JpaRepository, backs the paginated and sortable products web page
+
+    // Number of rows the JDBC driver fetches per round trip when streaming products
+    String STREAM_FETCH_SIZE = "1000";
+
+    // Read queries of the API select a ProductView constructor instead of the entity: the rows become immutable
+    // records directly, without managed entities, persistence context entries or dirty-checking snapshots
+    String PRODUCT_VIEW = "new dev.rono.rest.models.ProductView(p.id, p.name, p.price, p.version, p.lastModified)";
+
+    // Keyset pagination: returns the next page of products whose ID is greater than the given cursor
+    // This uses the primary key index, so every page costs the same no matter how deep the client has paged
+    @Query("select " + PRODUCT_VIEW + " from Product p where p.id > :after order by p.id")
+    List<ProductView> findViewsAfter(@Param("after") Long after, Limit limit);
+
+    // One product as a ProductView, loaded into the product cache by ProductService
+    @Query("select " + PRODUCT_VIEW + " from Product p where p.id = :id")
+    Optional<ProductView> findViewById(@Param("id") Long id);
+
+    // Streams every product in ID order through a forward-only JDBC cursor
+    // Must be consumed inside a transaction, and the caller is responsible for closing the stream
+    // The records are not attached to the persistence context, so it does not grow while the stream is read
+    @Query("select " + PRODUCT_VIEW + " from Product p order by p.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = STREAM_FETCH_SIZE))
+    Stream<ProductView> streamAllViews();
+
+    // Returns those of the given IDs that exist, as ProductView records rather than managed entities
+    // Used by the batch delete to report missing IDs before removing the rest in one statement, and to take the
+    // prices of the removed products out of the statistics
+    @Query("select " + PRODUCT_VIEW + " from Product p where p.id in :ids")
+    List<ProductView> findViewsByIds(@Param("ids") Collection<Long> ids);
+
+    // Products of an ID range last modified at the given time: the rows a repricing chunk has just updated
+    @Query("select " + PRODUCT_VIEW + " from Product p where p.id between :fromId and :toId and p.lastModified = :modified")
+    List<ProductView> findViewsModifiedAt(@Param("fromId") Long fromId, @Param("toId") Long toId,
+                                          @Param("modified") Instant modified);
+
+    // Lowest and highest product ID (null when there are no products), the range a repricing job covers
+    @Query("select min(p.id) from Product p")
+    Long findMinId();
+
+    @Query("select max(p.id) from Product p")
+    Long findMaxId();
+
+    // Returns only the version of a product, so conditional GETs can be answered without loading the row
+    @Query("select p.version from Product p where p.id = :id")
+    Optional<Long> findVersionById(@Param("id") Long id);
+
+    // Current state of a product, with its row locked until the transaction ends (select ... for update)
+    // Read by a single-product write that does not know the old price or version, so the write that follows
+    // replaces exactly this state
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select " + PRODUCT_VIEW + " from Product p where p.id = :id")
+    Optional<ProductView> findViewByIdForUpdate(@Param("id") Long id);
+
+    // Single-statement writes: each of these runs one UPDATE/DELETE without loading the entity,
+    // and returns the number of affected rows (0 means no product matched)
+    // They bypass the persistence context, so they bump the version and last-modified time themselves
+
+    // Updates name and price of a product only if it still has the expected version (optimistic concurrency)
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update Product p set p.name = :name, p.price = :price, p.version = p.version + 1, p.lastModified = :now "
+            + "where p.id = :id and p.version = :version")
+    int updateNameAndPriceIfVersion(@Param("id") Long id, @Param("name") String name, @Param("price") Double price,
+                                    @Param("now") Instant now, @Param("version") Long version);
+
+    // Deletes a product by ID
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Product p where p.id = :id")
+    int deleteProductById(@Param("id") Long id);
+
+    // Deletes a product by ID only if it still has the expected version
+    @Transactional
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from Product p where p.id = :id and p.version = :version")
+    int deleteProductByIdIfVersion(@Param("id") Long id, @Param("version") Long version);
 }
@@ -0,0 +1,22 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.Product;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.time.Instant;
+import java.util.Map;
+
+public interface ProductRepriceQueries {
+    // This interface adds the set-based price update of the bulk repricing jobs to ProductRepo
+    // Spring Data finds its implementation by name (ProductRepriceQueriesImpl)
+
+    // Multiplies the price of every product matching the specification by factor, rounded to cents, with one UPDATE
+    // statement; like the other single-statement writes it bumps the version and sets the last-modified time itself
+    // Products whose new price would not be positive are left as they are (Product.price must stay positive)
+    // Returns the number of updated products
+    int updatePrices(Specification<Product> spec, double factor, Instant now);
+
+    // Prices of the products matching the specification, by ID, with their rows locked until the transaction ends
+    // Read before updatePrices in the same transaction, so the statistics get the exact old price of every row
+    Map<Long, Double> findPricesForUpdate(Specification<Product> spec);
+}
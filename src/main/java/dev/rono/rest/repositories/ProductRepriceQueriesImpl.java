@@ -0,0 +1,61 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.CriteriaUpdate;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+// Runs the search Specifications of ProductSpecifications as a Criteria UPDATE (and the locking read before it), so a
+// repricing job selects its products with exactly the predicates of the search endpoint
+// The specifications only use the root and the builder, so they are given no query
+class ProductRepriceQueriesImpl implements ProductRepriceQueries {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int updatePrices(Specification<Product> spec, double factor, Instant now) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaUpdate<Product> update = builder.createCriteriaUpdate(Product.class);
+        Root<Product> product = update.from(Product.class);
+        Expression<Double> newPrice = builder.round(builder.prod(product.<Double>get("price"), factor), 2);
+        update.set(product.<Double>get("price"), newPrice);
+        update.set(product.<Long>get("version"), builder.sum(product.<Long>get("version"), 1L));
+        update.set(product.<Instant>get("lastModified"), now);
+        Predicate predicate = spec.toPredicate(product, null, builder);
+        Predicate positive = builder.gt(newPrice, 0);
+        update.where(predicate == null ? positive : builder.and(predicate, positive));
+        return entityManager.createQuery(update).executeUpdate();
+    }
+
+    @Override
+    @Transactional
+    public Map<Long, Double> findPricesForUpdate(Specification<Product> spec) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<Product> product = query.from(Product.class);
+        query.multiselect(product.<Long>get("id"), product.<Double>get("price"));
+        Predicate predicate = spec.toPredicate(product, null, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        Map<Long, Double> prices = new HashMap<>();
+        entityManager.createQuery(query).setLockMode(LockModeType.PESSIMISTIC_WRITE).getResultList()
+                .forEach(row -> prices.put(row.get(0, Long.class), row.get(1, Double.class)));
+        return prices;
+    }
+}
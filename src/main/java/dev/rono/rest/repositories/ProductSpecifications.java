@@ -0,0 +1,60 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.Product;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+// This class builds the Specification predicates used to search products in the database
+// The name and price predicates are written so MySQL can use the idx_products_name / idx_products_price indexes:
+// prefix matches become LIKE 'abc%' (a range scan), while "contains" matches (LIKE '%abc%') cannot use an index
+public final class ProductSpecifications {
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    private ProductSpecifications() {
+    }
+
+    // Products whose name starts with the given text
+    public static Specification<Product> nameStartsWith(String prefix) {
+        return (root, query, cb) -> cb.like(root.get("name"), escapeLike(prefix) + "%", LIKE_ESCAPE);
+    }
+
+    // Products whose name contains the given text anywhere (full scan, use nameStartsWith when possible)
+    public static Specification<Product> nameContains(String text) {
+        return (root, query, cb) -> cb.like(root.get("name"), "%" + escapeLike(text) + "%", LIKE_ESCAPE);
+    }
+
+    public static Specification<Product> priceAtLeast(Double minPrice) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), minPrice);
+    }
+
+    public static Specification<Product> priceAtMost(Double maxPrice) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), maxPrice);
+    }
+
+    // Products whose ID is in the given range (both ends included)
+    public static Specification<Product> idBetween(Long fromId, Long toId) {
+        return (root, query, cb) -> cb.between(root.get("id"), fromId, toId);
+    }
+
+    // Keyset predicate: products that come after the cursor product when sorted by the given field, then by ID
+    // For an ascending sort on price this is "price > :price or (price = :price and id > :id)"
+    public static <T extends Comparable<? super T>> Specification<Product> after(String field, Sort.Direction direction,
+                                                                                T cursorValue, Long cursorId) {
+        return (root, query, cb) -> {
+            boolean asc = direction.isAscending();
+            if (field.equals("id")) {
+                return asc ? cb.greaterThan(root.get("id"), cursorId) : cb.lessThan(root.get("id"), cursorId);
+            }
+            return cb.or(
+                    asc ? cb.greaterThan(root.<T>get(field), cursorValue) : cb.lessThan(root.<T>get(field), cursorValue),
+                    cb.and(cb.equal(root.get(field), cursorValue),
+                            asc ? cb.greaterThan(root.get("id"), cursorId) : cb.lessThan(root.get("id"), cursorId)));
+        };
+    }
+
+    // Escapes the LIKE wildcards in user input so they are matched literally
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,17 @@
+package dev.rono.rest.repositories;
+
+public interface ProductStatsQueries {
+    // This interface adds the aggregate queries behind the product statistics to ProductRepo
+    // Spring Data finds its implementation by name (ProductStatsQueriesImpl)
+
+    // Count, sum, lowest and highest price of all products, and for every bound the number of products priced
+    // below it, computed by the database in a single pass over the table
+    PriceAggregate aggregatePrices(double[] bounds);
+
+    // Lowest and highest price only, answered from the price index without reading the table
+    PriceAggregate findPriceRange();
+
+    // min and max are null when there are no products; sum and below are only filled in by aggregatePrices
+    record PriceAggregate(long count, Double min, Double max, double sum, long[] below) {
+    }
+}
@@ -0,0 +1,59 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.Product;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs the statistics aggregates as Criteria queries: the histogram bounds are configurable, so the
+// "sum(case when price < bound then 1 else 0 end)" columns cannot be written as a fixed @Query
+class ProductStatsQueriesImpl implements ProductStatsQueries {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public PriceAggregate aggregatePrices(double[] bounds) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = builder.createQuery(Object[].class);
+        Root<Product> product = query.from(Product.class);
+        Expression<Double> price = product.get("price");
+        List<Selection<?>> columns = new ArrayList<>(List.of(
+                builder.count(product), builder.min(price), builder.max(price), builder.sum(price)));
+        for (double bound : bounds) {
+            columns.add(builder.sum(builder.<Long>selectCase()
+                    .when(builder.lessThan(price, bound), 1L)
+                    .otherwise(0L)));
+        }
+        query.multiselect(columns);
+
+        // Sums over an empty table are null
+        Object[] row = entityManager.createQuery(query).getSingleResult();
+        long[] below = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            below[i] = row[4 + i] == null ? 0 : ((Number) row[4 + i]).longValue();
+        }
+        return new PriceAggregate(((Number) row[0]).longValue(), (Double) row[1], (Double) row[2],
+                row[3] == null ? 0 : ((Number) row[3]).doubleValue(), below);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PriceAggregate findPriceRange() {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = builder.createQuery(Object[].class);
+        Expression<Double> price = query.from(Product.class).get("price");
+        query.multiselect(builder.min(price), builder.max(price));
+        Object[] row = entityManager.createQuery(query).getSingleResult();
+        return new PriceAggregate(0, (Double) row[0], (Double) row[1], 0, new long[0]);
+    }
+}
@@ -0,0 +1,16 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductView;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.List;
+
+public interface ProductViewQueries {
+    // This interface adds the search query that returns ProductView records to ProductRepo
+    // Spring Data finds its implementation by name (ProductViewQueriesImpl)
+
+    // Products matching the specification in the given order, at most limit of them, projected into ProductView
+    List<ProductView> findViews(Specification<Product> spec, Sort sort, int limit);
+}
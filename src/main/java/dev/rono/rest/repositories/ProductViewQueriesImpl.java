@@ -0,0 +1,41 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductView;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+// Runs the search Specifications of ProductSpecifications as a Criteria query that selects a ProductView
+// constructor, the Criteria counterpart of the constructor expressions in ProductRepo
+// (Spring Data's findBy(spec, ...) would load Product entities and convert them afterwards)
+class ProductViewQueriesImpl implements ProductViewQueries {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<ProductView> findViews(Specification<Product> spec, Sort sort, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<ProductView> query = builder.createQuery(ProductView.class);
+        Root<Product> product = query.from(Product.class);
+        query.select(builder.construct(ProductView.class, product.get("id"), product.get("name"), product.get("price"),
+                product.get("version"), product.get("lastModified")));
+        Predicate predicate = spec.toPredicate(product, query, builder);
+        if (predicate != null) {
+            query.where(predicate);
+        }
+        query.orderBy(QueryUtils.toOrders(sort, product, builder));
+        return entityManager.createQuery(query).setMaxResults(limit).getResultList();
+    }
+}
@@ -0,0 +1,56 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.Product;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.r2dbc.repository.R2dbcRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+@Profile("reactive") // Keeps Spring Data JPA from picking this interface up on the servlet stack
+public interface ReactiveProductRepo extends R2dbcRepository<Product, Long> {
+    // This interface is the non-blocking counterpart of ProductRepo, used by the "reactive" profile
+    // It runs the same SQL against the same products table through R2DBC instead of JDBC/Hibernate,
+    // so both stacks can be pointed at one database and compared
+
+    // Keyset pagination: returns the next page of products whose ID is greater than the given cursor
+    @Query("select * from products where id > :after order by id limit :limit")
+    Flux<Product> findPageAfter(long after, int limit);
+
+    // Emits every product in ID order; rows are pulled from the driver as the subscriber requests them,
+    // so a slow client slows down the read instead of buffering the table in memory
+    @Query("select * from products order by id")
+    Flux<Product> streamAllOrderById();
+
+    // Returns only the version of a product, so conditional GETs can be answered without loading the row
+    @Query("select version from products where id = :id")
+    Mono<Long> findVersionById(Long id);
+
+    // Single-statement writes, same as in ProductRepo: each returns the number of affected rows
+    // (0 means no product matched) and bumps the version and last-modified time itself
+
+    // Updates name and price of a product
+    @Modifying
+    @Query("update products set name = :name, price = :price, version = version + 1, last_modified = :now "
+            + "where id = :id")
+    Mono<Integer> updateNameAndPrice(Long id, String name, Double price, Instant now);
+
+    // Updates name and price of a product only if it still has the expected version (optimistic concurrency)
+    @Modifying
+    @Query("update products set name = :name, price = :price, version = version + 1, last_modified = :now "
+            + "where id = :id and version = :version")
+    Mono<Integer> updateNameAndPriceIfVersion(Long id, String name, Double price, Instant now, Long version);
+
+    // Deletes a product by ID
+    @Modifying
+    @Query("delete from products where id = :id")
+    Mono<Integer> deleteProductById(Long id);
+
+    // Deletes a product by ID only if it still has the expected version
+    @Modifying
+    @Query("delete from products where id = :id and version = :version")
+    Mono<Integer> deleteProductByIdIfVersion(Long id, Long version);
+}
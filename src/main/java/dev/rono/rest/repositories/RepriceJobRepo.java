@@ -0,0 +1,75 @@
+package dev.rono.rest.repositories;
+
+import dev.rono.rest.models.RepriceJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface RepriceJobRepo extends JpaRepository<RepriceJob, Long> {
+    // This interface stores the bulk repricing jobs and their chunk checkpoints (the reprice_job_chunks table)
+    // The checkpoint table has no entity: its rows are only inserted and aggregated, so plain SQL is enough
+
+    // Jobs that were running when the application stopped, to be resumed
+    List<RepriceJob> findByStatus(RepriceJob.Status status);
+
+    // Records a finished chunk; called inside the chunk's transaction, so the checkpoint commits with the chunk
+    // A second insert of the same chunk (the job resumed twice at once) fails on the primary key and rolls the
+    // chunk back, so no chunk is ever applied twice
+    @Modifying
+    @Query(nativeQuery = true, value = "insert into reprice_job_chunks (job_id, chunk, rows_updated, completed_at) "
+            + "values (:jobId, :chunk, :rowsUpdated, :completedAt)")
+    void insertChunk(@Param("jobId") Long jobId, @Param("chunk") int chunk, @Param("rowsUpdated") int rowsUpdated,
+                     @Param("completedAt") Instant completedAt);
+
+    // Chunks of a job that have already been applied
+    @Query(nativeQuery = true, value = "select chunk from reprice_job_chunks where job_id = :jobId")
+    List<Integer> findCompletedChunks(@Param("jobId") Long jobId);
+
+    // Progress of a job: chunks done, rows updated, and rows updated since the given time (for the rate)
+    @Query(nativeQuery = true, value = "select count(*) as chunks, coalesce(sum(rows_updated), 0) as rowsUpdated, "
+            + "coalesce(sum(case when completed_at >= :since then rows_updated else 0 end), 0) as rowsUpdatedSince "
+            + "from reprice_job_chunks where job_id = :jobId")
+    ChunkTotals sumChunks(@Param("jobId") Long jobId, @Param("since") Instant since);
+
+    // Marks a job as finished
+    @Transactional
+    @Modifying
+    @Query("update RepriceJob j set j.status = :status, j.error = :error, j.finishedAt = :now where j.id = :id")
+    int finish(@Param("id") Long id, @Param("status") RepriceJob.Status status, @Param("error") String error,
+               @Param("now") Instant now);
+
+    // Takes over an unfinished job whose lease has expired or was released, and marks it as started again
+    // The condition is checked by the UPDATE itself, so of several instances resuming at once only one gets the job
+    @Transactional
+    @Modifying
+    @Query("update RepriceJob j set j.owner = :owner, j.heartbeatAt = :now, j.startedAt = :now where j.id = :id "
+            + "and j.finishedAt is null and (j.heartbeatAt is null or j.heartbeatAt < :expiredBefore)")
+    int claim(@Param("id") Long id, @Param("owner") String owner, @Param("now") Instant now,
+              @Param("expiredBefore") Instant expiredBefore);
+
+    // Renews the leases of the jobs an instance is running
+    @Transactional
+    @Modifying
+    @Query("update RepriceJob j set j.heartbeatAt = :now where j.id in :ids and j.owner = :owner")
+    int renew(@Param("ids") Collection<Long> ids, @Param("owner") String owner, @Param("now") Instant now);
+
+    // Gives up the leases of an instance's running jobs when it shuts down, so another instance resumes them right away
+    @Transactional
+    @Modifying
+    @Query("update RepriceJob j set j.heartbeatAt = null where j.owner = :owner and j.finishedAt is null")
+    int release(@Param("owner") String owner);
+
+    interface ChunkTotals {
+        long getChunks();
+
+        long getRowsUpdated();
+
+        long getRowsUpdatedSince();
+    }
+}
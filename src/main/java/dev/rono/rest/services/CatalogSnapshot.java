@@ -0,0 +1,414 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.models.ProductView;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.util.DigestUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+
+// Immutable, columnar copy of the product table, in ID order, for serving reads from memory (see ProductCatalog)
+// The rows are kept in segments of up to SEGMENT_SIZE products, and every segment stores its fields in primitive
+// columns: long[] IDs, double[] prices, long[] versions and last-modified times, the names as packed UTF-8 bytes,
+// and the JSON of every product, encoded once when the row is added, so a page is written by copying bytes
+// No object is kept per product, which is what makes this much smaller than a List<Product> of the same rows
+// Changes never modify a snapshot: apply() returns a new one that shares every segment it did not touch, so a write
+// copies at most a few thousand rows, and readers holding the old snapshot keep a consistent view
+public final class CatalogSnapshot {
+
+    // Rows per segment: large enough to keep the segment list short, small enough to copy one on every write
+    static final int SEGMENT_SIZE = 1024;
+
+    // Stored for a missing version or last-modified time
+    private static final long UNKNOWN = Long.MIN_VALUE;
+
+    private static final byte[] EMPTY_ARRAY = {'[', ']'};
+
+    public static final CatalogSnapshot EMPTY = new CatalogSnapshot(new Segment[0]);
+
+    private final Segment[] segments;
+    // ID of the first row of every segment, to find the segment of an ID by binary search
+    private final long[] firstIds;
+    private final int size;
+
+    private CatalogSnapshot(Segment[] segments) {
+        this.segments = segments;
+        this.firstIds = new long[segments.length];
+        int rows = 0;
+        for (int i = 0; i < segments.length; i++) {
+            firstIds[i] = segments[i].ids[0];
+            rows += segments[i].size;
+        }
+        this.size = rows;
+    }
+
+    // Number of products
+    public int size() {
+        return size;
+    }
+
+    // 1. One product, or null when it is not in the snapshot
+    public ProductView find(long id) {
+        int segment = segmentOf(id);
+        if (segment < 0) {
+            return null;
+        }
+        int row = Arrays.binarySearch(segments[segment].ids, 0, segments[segment].size, id);
+        return row >= 0 ? segments[segment].view(row) : null;
+    }
+
+    // 2. The page of up to limit products whose ID is greater than after, in ID order (keyset pagination)
+    public Page page(long after, int limit) {
+        int segment = Math.max(0, segmentOf(after));
+        int row = 0;
+        if (segment < segments.length) {
+            row = Arrays.binarySearch(segments[segment].ids, 0, segments[segment].size, after);
+            row = row >= 0 ? row + 1 : -row - 1;
+            if (row == segments[segment].size) {
+                segment++;
+                row = 0;
+            }
+        }
+        int rows = 0;
+        for (int i = segment; i < segments.length && rows < limit; i++) {
+            rows += i == segment ? segments[i].size - row : segments[i].size;
+        }
+        return new Page(segments, segment, row, Math.min(rows, limit));
+    }
+
+    // 3. A new snapshot with the given changes: product ID -> new state, or null when the product was deleted
+    // A change that carries an older version than the row already in the snapshot arrived late and is ignored
+    // A change without a version cannot be ordered against the row it replaces, so it is applied with its version
+    // unknown: the row has no ETag (and pages holding it none either) until a versioned change or a reload replaces it
+    public CatalogSnapshot apply(NavigableMap<Long, ProductView> changes, ObjectWriter writer) {
+        if (changes.isEmpty()) {
+            return this;
+        }
+        if (segments.length == 0) {
+            Builder builder = new Builder(writer);
+            merge(null, changes, builder);
+            return builder.build();
+        }
+        List<Segment> result = new ArrayList<>(segments.length + 1);
+        for (int i = 0; i < segments.length; i++) {
+            // The first segment also takes IDs below its first row, the last one every ID above it
+            NavigableMap<Long, ProductView> segmentChanges = changes.subMap(
+                    i == 0 ? Long.MIN_VALUE : firstIds[i], true,
+                    i == segments.length - 1 ? Long.MAX_VALUE : firstIds[i + 1], false);
+            if (segmentChanges.isEmpty()) {
+                result.add(segments[i]); // Shared with this snapshot
+            } else {
+                Builder builder = new Builder(writer);
+                merge(segments[i], segmentChanges, builder);
+                result.addAll(builder.segments());
+            }
+        }
+        return new CatalogSnapshot(result.toArray(new Segment[0]));
+    }
+
+    // Writes the rows of a segment merged with its changes, in ID order
+    private static void merge(Segment segment, NavigableMap<Long, ProductView> changes, Builder builder) {
+        int size = segment == null ? 0 : segment.size;
+        int row = 0;
+        for (Map.Entry<Long, ProductView> change : changes.entrySet()) {
+            long id = change.getKey();
+            while (row < size && segment.ids[row] < id) {
+                builder.copy(segment, row++);
+            }
+            ProductView product = change.getValue();
+            if (row < size && segment.ids[row] == id) {
+                long version = segment.versions[row];
+                if (product == null) {
+                    row++; // Deleted
+                } else if (product.version() != null && version != UNKNOWN && product.version() < version) {
+                    builder.copy(segment, row++); // Late report of an older write
+                } else {
+                    builder.add(product);
+                    row++;
+                }
+            } else if (product != null) {
+                builder.add(product);
+            }
+        }
+        while (row < size) {
+            builder.copy(segment, row++);
+        }
+    }
+
+    // Index of the segment that holds the ID if it is in the snapshot, or -1 when it is below the first segment
+    private int segmentOf(long id) {
+        int index = Arrays.binarySearch(firstIds, id);
+        return index >= 0 ? index : -index - 2;
+    }
+
+    // One segment: columns of up to SEGMENT_SIZE rows, never modified once built
+    private static final class Segment {
+
+        final int size;
+        final long[] ids;
+        final double[] prices;
+        final long[] versions;
+        final long[] lastModified; // Epoch milliseconds
+        final byte[] names;        // UTF-8, row i ends at nameEnds[i]
+        final int[] nameEnds;
+        final byte[] json;         // Encoded rows, row i ends at jsonEnds[i]
+        final int[] jsonEnds;
+
+        Segment(int size, long[] ids, double[] prices, long[] versions, long[] lastModified,
+                byte[] names, int[] nameEnds, byte[] json, int[] jsonEnds) {
+            this.size = size;
+            this.ids = ids;
+            this.prices = prices;
+            this.versions = versions;
+            this.lastModified = lastModified;
+            this.names = names;
+            this.nameEnds = nameEnds;
+            this.json = json;
+            this.jsonEnds = jsonEnds;
+        }
+
+        ProductView view(int row) {
+            int nameStart = row == 0 ? 0 : nameEnds[row - 1];
+            return new ProductView(ids[row], new String(names, nameStart, nameEnds[row] - nameStart, StandardCharsets.UTF_8),
+                    prices[row], versions[row] == UNKNOWN ? null : versions[row],
+                    lastModified[row] == UNKNOWN ? null : Instant.ofEpochMilli(lastModified[row]));
+        }
+
+        int jsonStart(int row) {
+            return row == 0 ? 0 : jsonEnds[row - 1];
+        }
+    }
+
+    // Builds a snapshot from products added in ID order (the startup load), or the segments of a merge
+    public static final class Builder {
+
+        private final ObjectWriter writer;
+        private final List<Segment> segments = new ArrayList<>();
+
+        // Columns of the segment being filled, allocated on the first row so a merge that ends a segment does not
+        // leave an unused one behind
+        private int size;
+        private long[] ids;
+        private double[] prices;
+        private long[] versions;
+        private long[] lastModified;
+        private byte[] names;
+        private int[] nameEnds;
+        private byte[] json;
+        private int[] jsonEnds;
+
+        // writer: encodes one ProductView, the same way the API does (so the bytes match a Jackson response)
+        public Builder(ObjectWriter writer) {
+            this.writer = writer;
+        }
+
+        // Adds a product; products must be added in increasing ID order
+        public void add(ProductView product) {
+            byte[] encoded;
+            try {
+                encoded = writer.writeValueAsBytes(product);
+            } catch (JsonProcessingException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            byte[] name = product.name() == null ? new byte[0] : product.name().getBytes(StandardCharsets.UTF_8);
+            addRow(product.id(), product.price(), product.version() == null ? UNKNOWN : product.version(),
+                    product.lastModified() == null ? UNKNOWN : product.lastModified().toEpochMilli(),
+                    name, 0, name.length, encoded, 0, encoded.length);
+        }
+
+        // Copies a row of an existing segment, without encoding it again
+        void copy(Segment segment, int row) {
+            int nameStart = row == 0 ? 0 : segment.nameEnds[row - 1];
+            int jsonStart = segment.jsonStart(row);
+            addRow(segment.ids[row], segment.prices[row], segment.versions[row], segment.lastModified[row],
+                    segment.names, nameStart, segment.nameEnds[row] - nameStart,
+                    segment.json, jsonStart, segment.jsonEnds[row] - jsonStart);
+        }
+
+        public CatalogSnapshot build() {
+            return new CatalogSnapshot(segments().toArray(new Segment[0]));
+        }
+
+        List<Segment> segments() {
+            if (size > 0) {
+                finishSegment();
+            }
+            return segments;
+        }
+
+        private void addRow(long id, double price, long version, long modified,
+                            byte[] name, int nameOffset, int nameLength, byte[] encoded, int jsonOffset, int jsonLength) {
+            if (ids == null) {
+                startSegment();
+            }
+            int nameEnd = (size == 0 ? 0 : nameEnds[size - 1]) + nameLength;
+            int jsonEnd = (size == 0 ? 0 : jsonEnds[size - 1]) + jsonLength;
+            if (nameEnd > names.length) {
+                names = Arrays.copyOf(names, Math.max(nameEnd, names.length * 2));
+            }
+            if (jsonEnd > json.length) {
+                json = Arrays.copyOf(json, Math.max(jsonEnd, json.length * 2));
+            }
+            System.arraycopy(name, nameOffset, names, nameEnd - nameLength, nameLength);
+            System.arraycopy(encoded, jsonOffset, json, jsonEnd - jsonLength, jsonLength);
+            ids[size] = id;
+            prices[size] = price;
+            versions[size] = version;
+            lastModified[size] = modified;
+            nameEnds[size] = nameEnd;
+            jsonEnds[size] = jsonEnd;
+            if (++size == SEGMENT_SIZE) {
+                finishSegment();
+            }
+        }
+
+        private void startSegment() {
+            size = 0;
+            ids = new long[SEGMENT_SIZE];
+            prices = new double[SEGMENT_SIZE];
+            versions = new long[SEGMENT_SIZE];
+            lastModified = new long[SEGMENT_SIZE];
+            nameEnds = new int[SEGMENT_SIZE];
+            jsonEnds = new int[SEGMENT_SIZE];
+            names = new byte[SEGMENT_SIZE * 16];
+            json = new byte[SEGMENT_SIZE * 48];
+        }
+
+        // Trims the columns to the rows they hold, so a snapshot carries no spare capacity
+        private void finishSegment() {
+            segments.add(new Segment(size, Arrays.copyOf(ids, size), Arrays.copyOf(prices, size),
+                    Arrays.copyOf(versions, size), Arrays.copyOf(lastModified, size),
+                    Arrays.copyOf(names, nameEnds[size - 1]), Arrays.copyOf(nameEnds, size),
+                    Arrays.copyOf(json, jsonEnds[size - 1]), Arrays.copyOf(jsonEnds, size)));
+            size = 0;
+            ids = null;
+        }
+    }
+
+    // A page of consecutive rows of a snapshot
+    // It is a List<ProductView>, so it can stand in for a page read from the database, but its rows are only turned
+    // into ProductView records when get() is called: writeJson() copies the encoded rows, and the validators (ETag,
+    // Last-Modified) are computed from the columns
+    public static final class Page extends AbstractList<ProductView> {
+
+        private final Segment[] segments;
+        private final int firstSegment;
+        private final int firstRow;
+        private final int size;
+
+        private Page(Segment[] segments, int firstSegment, int firstRow, int size) {
+            this.segments = segments;
+            this.firstSegment = firstSegment;
+            this.firstRow = firstRow;
+            this.size = size;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public ProductView get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int segment = firstSegment;
+            int row = firstRow + index;
+            while (row >= segments[segment].size) {
+                row -= segments[segment].size;
+                segment++;
+            }
+            return segments[segment].view(row);
+        }
+
+        // ID of the last row (the cursor of the next page)
+        public long lastId() {
+            long[] last = new long[1];
+            forEachRow((segment, row) -> last[0] = segment.ids[row]);
+            return last[0];
+        }
+
+        // Number of bytes writeJson() writes
+        public long contentLength() {
+            if (size == 0) {
+                return EMPTY_ARRAY.length;
+            }
+            long length = 2 + (size - 1); // Brackets and commas
+            int remaining = size;
+            for (int segment = firstSegment, row = firstRow; remaining > 0; segment++, row = 0) {
+                int rows = Math.min(remaining, segments[segment].size - row);
+                length += segments[segment].jsonEnds[row + rows - 1] - segments[segment].jsonStart(row);
+                remaining -= rows;
+            }
+            return length;
+        }
+
+        // Writes the page as a JSON array, one write per segment it spans
+        public void writeJson(OutputStream out) throws IOException {
+            if (size == 0) {
+                out.write(EMPTY_ARRAY);
+                return;
+            }
+            out.write('[');
+            int remaining = size;
+            for (int segment = firstSegment, row = firstRow; remaining > 0; segment++, row = 0) {
+                Segment rows = segments[segment];
+                int count = Math.min(remaining, rows.size - row);
+                for (int i = row; i < row + count; i++) {
+                    if (remaining < size || i > row) {
+                        out.write(',');
+                    }
+                    out.write(rows.json, rows.jsonStart(i), rows.jsonEnds[i] - rows.jsonStart(i));
+                }
+                remaining -= count;
+            }
+            out.write(']');
+        }
+
+        // Strong ETag of the page: the same digest of IDs and versions as for a page read from the database
+        // Null when a row's version is unknown, since the page could then change without its ETag changing
+        public String eTag() {
+            StringBuilder ids = new StringBuilder(size * 16);
+            boolean[] unknown = new boolean[1];
+            forEachRow((segment, row) -> {
+                unknown[0] |= segment.versions[row] == UNKNOWN;
+                ids.append(segment.ids[row]).append(':').append(segment.versions[row]).append(',');
+            });
+            return unknown[0] ? null : "\"" + DigestUtils.md5DigestAsHex(ids.toString().getBytes(StandardCharsets.UTF_8)) + "\"";
+        }
+
+        // Latest last-modified time of the rows, or null when none is known
+        public Instant lastModified() {
+            long[] latest = {UNKNOWN};
+            forEachRow((segment, row) -> latest[0] = Math.max(latest[0], segment.lastModified[row]));
+            return latest[0] == UNKNOWN ? null : Instant.ofEpochMilli(latest[0]);
+        }
+
+        private void forEachRow(RowVisitor visitor) {
+            int remaining = size;
+            for (int segment = firstSegment, row = firstRow; remaining > 0; segment++, row = 0) {
+                int count = Math.min(remaining, segments[segment].size - row);
+                for (int i = row; i < row + count; i++) {
+                    visitor.visit(segments[segment], i);
+                }
+                remaining -= count;
+            }
+        }
+
+        private interface RowVisitor {
+            void visit(Segment segment, int row);
+        }
+    }
+}
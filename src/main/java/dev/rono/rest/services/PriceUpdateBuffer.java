@@ -0,0 +1,180 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.config.SchedulingConfig;
+import dev.rono.rest.exceptions.ServiceUnavailableException;
+import dev.rono.rest.models.ProductView;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// This class takes the price updates of PUT /api/products/{id}/price
+// Without write-behind (the default) every update is written right away by ProductService.updatePrice
+// With product.price-updates.write-behind=true an update is only recorded in memory and answered with 202 Accepted;
+// a later update of the same product replaces it, so a burst of updates to one product costs a single write
+// Every flush-interval-ms the pending prices are written with ProductService.updatePrices, one transaction and one
+// JDBC batch per chunk of hibernate.jdbc.batch_size products
+// - The pending prices are a ConcurrentHashMap (lock-free reads, writers only contend per hash bin)
+// - At most max-pending products can wait; an update of another product is then rejected with 503 and Retry-After
+//   until the next flush makes room
+// - A chunk that fails (database down, or a product changed by another request in the meantime) is put back, unless
+//   a newer price has arrived for it, and retried on the next flush
+// - Single-product reads see the pending price (see withPendingPrice), and shutdown writes out what is left
+// Pending prices live in this instance only: a crash loses them, and a full PUT of a product that still has a
+// pending price is overwritten by that price when it is flushed
+// The coalescing ratio (updates received per row written) and the flush latency are published as metrics
+@Service
+@Profile("!reactive") // Writes through ProductService, which belongs to the servlet/JPA stack
+public class PriceUpdateBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceUpdateBuffer.class);
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${product.price-updates.write-behind:false}")
+    private boolean writeBehind;
+
+    @Value("${product.price-updates.flush-interval-ms:200}")
+    private long flushIntervalMs;
+
+    // Most products that can have a pending price at once
+    @Value("${product.price-updates.max-pending:100000}")
+    private int maxPending;
+
+    // Prices waiting for the next flush, and the prices of the flush that is being written
+    // A price moves to flushing before it leaves pending, so a read always finds it in one of the two
+    private final Map<Long, Double> pending = new ConcurrentHashMap<>();
+    private final Map<Long, Double> flushing = new ConcurrentHashMap<>();
+
+    private volatile boolean closed;
+
+    // Runs flush() every flush-interval-ms (see SchedulingConfig)
+    private ThreadPoolTaskScheduler flushScheduler;
+
+    private Counter received;
+    private Counter written;
+    private Counter missing;
+    private Counter rejected;
+    private Timer flushTimer;
+
+    @PostConstruct
+    void start() {
+        received = meterRegistry.counter("product.price-updates", "outcome", "received");
+        written = meterRegistry.counter("product.price-updates", "outcome", "written");
+        missing = meterRegistry.counter("product.price-updates", "outcome", "missing");
+        rejected = meterRegistry.counter("product.price-updates", "outcome", "rejected");
+        flushTimer = Timer.builder("product.price-updates.flush")
+                .description("Time to write one chunk of pending price updates")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("product.price-updates.pending", pending, Map::size);
+        // Updates received per row written; 1 when nothing was coalesced
+        meterRegistry.gauge("product.price-updates.coalescing-ratio", this,
+                buffer -> buffer.written.count() == 0 ? 1 : buffer.received.count() / buffer.written.count());
+        flushScheduler = SchedulingConfig.dedicatedScheduler("price-flush-", Duration.ofMillis(flushIntervalMs), this::flush);
+    }
+
+    // 1. Set the price of a product
+    // Returns the updated product when it was written right away, or null when it is pending (write-behind)
+    public ProductView update(Long id, double price) {
+        if (!writeBehind) {
+            received.increment();
+            ProductView updated = productService.updatePrice(id, price);
+            written.increment();
+            return updated;
+        }
+        if (closed) {
+            throw new ServiceUnavailableException("Shutting down, price updates are no longer accepted", 1);
+        }
+        // An update of a product that already has a pending price never needs room, so it is never rejected
+        if (pending.size() >= maxPending && !pending.containsKey(id)) {
+            rejected.increment();
+            throw new ServiceUnavailableException("Too many pending price updates, retry after the next flush", 1);
+        }
+        pending.put(id, price);
+        received.increment();
+        return null;
+    }
+
+    // 2. The price of a product that has not been written yet, or null
+    public Double pendingPrice(Long id) {
+        Double price = pending.get(id);
+        return price != null ? price : flushing.get(id);
+    }
+
+    // A product as read from the database or cache, with its pending price if it has one
+    // The version and last-modified time of the pending state are not known yet, so they are left out (no ETag)
+    public ProductView withPendingPrice(ProductView product) {
+        Double price = pendingPrice(product.id());
+        return price == null ? product : new ProductView(product.id(), product.name(), price, null, null);
+    }
+
+    // 3. Write all pending prices, chunk by chunk; runs every flush-interval-ms (200 ms by default)
+    // Updates that arrive during the flush for products already taken are left for the next one
+    // Runs on a thread of its own, so a slow background job (statistics reconcile, catalog reload) never delays it
+    public synchronized void flush() {
+        int chunkSize = productService.chunkSize();
+        Map<Long, Double> chunk = new HashMap<>();
+        for (Long id : pending.keySet()) {
+            // Atomically takes the current price of the product, unless it was taken meanwhile
+            pending.computeIfPresent(id, (key, price) -> {
+                flushing.put(key, price);
+                chunk.put(key, price);
+                return null;
+            });
+            if (chunk.size() == chunkSize) {
+                write(chunk);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            write(chunk);
+        }
+    }
+
+    private void write(Map<Long, Double> chunk) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            int updated = productService.updatePrices(chunk).size();
+            written.increment(updated);
+            missing.increment(chunk.size() - updated); // Deleted since the update was accepted
+        } catch (DataAccessException ex) {
+            log.warn("Writing {} price updates failed, retrying them on the next flush: {}", chunk.size(), ex.getMessage());
+            chunk.forEach(pending::putIfAbsent);
+        } finally {
+            chunk.forEach(flushing::remove);
+            sample.stop(flushTimer);
+        }
+    }
+
+    // 4. On shutdown, stop accepting updates and write what is pending
+    // Runs before ProductService and the data source are destroyed, since this bean depends on them
+    @PreDestroy
+    public void flushOnShutdown() {
+        closed = true;
+        flushScheduler.shutdown(); // Waits for a flush that is running
+        if (!pending.isEmpty()) {
+            log.info("Writing {} pending price updates before shutdown", pending.size());
+            flush();
+        }
+    }
+}
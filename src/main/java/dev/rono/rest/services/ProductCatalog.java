@@ -0,0 +1,157 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.repositories.ProductRepo;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+// This class serves the plain product listing (GET /api/products without filters) and GET /api/products/{id} from
+// an in-memory CatalogSnapshot, when product.catalog.enabled=true
+// The snapshot is loaded from the table at startup, and ProductService reports every committed create, update and
+// delete; each report swaps in a new snapshot that shares the segments the write did not touch, so readers never
+// wait for writers and never see a half-applied batch
+// Writes that bypass ProductService (other instances, or SQL run directly) are picked up by the full reload every
+// reload-interval-ms (5 minutes by default); until then GET /{id} falls back to the database for products it does not
+// have, but the listing does not show them
+@Service
+@Profile("!reactive") // Fed by ProductService, which belongs to the servlet/JPA stack
+public class ProductCatalog implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalog.class);
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired // The load streams the table, which needs a transaction
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired // Encodes every row once, exactly as Jackson writes a ProductView in an API response
+    private ObjectMapper objectMapper;
+
+    @Value("${product.catalog.enabled:false}")
+    private boolean enabled;
+
+    private ObjectWriter writer;
+
+    private volatile CatalogSnapshot snapshot = CatalogSnapshot.EMPTY;
+
+    // Changes reported while a reload reads the table, replayed on the reloaded snapshot; null when no reload runs
+    // Guarded by this
+    private List<NavigableMap<Long, ProductView>> changesDuringReload;
+
+    @PostConstruct
+    void createWriter() {
+        writer = objectMapper.writerFor(ProductView.class);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // 1. Load every product once all singletons exist, before the web server starts
+    @Override
+    public void afterSingletonsInstantiated() {
+        reload();
+    }
+
+    // 2. Rebuild the snapshot from the table, then swap it in with the changes reported in the meantime
+    // Reads the primary: a lagging replica would bring back products that were just deleted
+    @Scheduled(fixedDelayString = "${product.catalog.reload-interval-ms:300000}")
+    public void reload() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        synchronized (this) {
+            changesDuringReload = new ArrayList<>();
+        }
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(writer);
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<ProductView> products = productRepo.streamAllViews()) {
+                    products.forEach(builder::add);
+                }
+            });
+        } catch (RuntimeException ex) {
+            synchronized (this) {
+                changesDuringReload = null;
+            }
+            throw ex;
+        }
+        CatalogSnapshot loaded = builder.build();
+        synchronized (this) {
+            for (NavigableMap<Long, ProductView> changes : changesDuringReload) {
+                loaded = loaded.apply(changes, writer);
+            }
+            changesDuringReload = null;
+            snapshot = loaded;
+        }
+        log.info("Loaded {} products into the catalog in {} ms", loaded.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // 3. Reads; null when the catalog is off or does not have the product
+    // A product whose version is unknown (see CatalogSnapshot.apply) is not served either, so it is read from the
+    // cache or database with its version
+
+    public ProductView find(Long id) {
+        ProductView product = enabled ? snapshot.find(id) : null;
+        return product != null && product.version() != null ? product : null;
+    }
+
+    // The page of up to limit products after the given ID (null for the first page)
+    public CatalogSnapshot.Page page(Long after, int limit) {
+        // Product IDs are always positive, so starting after 0 returns the first page
+        return snapshot.page(after == null ? 0L : after, limit);
+    }
+
+    // 4. Committed writes, reported by ProductService
+
+    public void upserted(ProductView product) {
+        upserted(List.of(product));
+    }
+
+    public void upserted(Collection<ProductView> products) {
+        NavigableMap<Long, ProductView> changes = new TreeMap<>();
+        products.forEach(product -> changes.put(product.id(), product));
+        apply(changes);
+    }
+
+    public void removed(Long id) {
+        removed(List.of(id));
+    }
+
+    public void removed(Collection<Long> ids) {
+        NavigableMap<Long, ProductView> changes = new TreeMap<>();
+        ids.forEach(id -> changes.put(id, null));
+        apply(changes);
+    }
+
+    // Writers take turns, so no change is lost between reading the current snapshot and swapping in the new one
+    private synchronized void apply(NavigableMap<Long, ProductView> changes) {
+        if (!enabled || changes.isEmpty()) {
+            return;
+        }
+        snapshot = snapshot.apply(changes, writer);
+        if (changesDuringReload != null) {
+            changesDuringReload.add(changes);
+        }
+    }
+}
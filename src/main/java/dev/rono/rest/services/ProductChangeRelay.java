@@ -0,0 +1,283 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.config.SchedulingConfig;
+import dev.rono.rest.models.ProductChange;
+import dev.rono.rest.repositories.ProductChangeRepo;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.CustomizableThreadCreator;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// This class relays the product change outbox to Server-Sent Events subscribers
+// On every tick it first numbers the outbox rows that committed since the last tick, in batches, then sends
+// the numbered rows to the subscribers: new subscribers are caught up from the sequence number they resume from,
+// and every subscriber that is up to date gets the rows numbered since the previous tick
+// Numbering happens after commit, so a transaction that commits late still gets a number after everything a
+// consumer has already seen, and "since=<seq>" never skips a change
+// Numbering and reading run on the relay's scheduler thread; the events of each subscriber go into a bounded queue of
+// its own, which a sender thread writes to the connection, one subscriber at a time and in order, so each subscriber
+// receives its events in order without gaps
+// A socket write blocks when the client stops reading, so it never runs on the relay thread: a stalled subscriber only
+// holds up its own sender, and once its queue (subscriber-buffer events) is full it is dropped, to reconnect later
+// with Last-Event-ID; a subscriber that is catching up is only given a page when its queue has room for it
+@Service
+@Profile("!reactive") // The outbox is written by ProductService, which belongs to the servlet/JPA stack
+public class ProductChangeRelay implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductChangeRelay.class);
+
+    // Event name of every change event, the change type is part of the JSON data
+    public static final String EVENT_NAME = "product-change";
+
+    // Event sent before the first change when a consumer resumes from a position that the retention
+    // cleanup has already removed: it has missed changes and should re-read the catalog
+    public static final String RESYNC_EVENT_NAME = "resync";
+
+    @Autowired
+    private ProductChangeRepo productChangeRepo;
+
+    @Autowired // Every batch of outbox rows is numbered in its own transaction
+    private TransactionTemplate transactionTemplate;
+
+    // Outbox rows numbered per transaction, and changes read per query when sending to subscribers
+    @Value("${product.changes.batch-size:500}")
+    private int batchSize;
+
+    // How long an SSE connection stays open before the client has to reconnect (with Last-Event-ID)
+    @Value("${product.changes.sse-timeout:30m}")
+    private Duration sseTimeout;
+
+    // Idle connections get a comment line this often, so proxies keep them open and dead clients are detected
+    @Value("${product.changes.heartbeat-interval:15s}")
+    private Duration heartbeatInterval;
+
+    // How long numbered changes are kept for consumers that resume from an old position
+    @Value("${product.changes.retention:7d}")
+    private Duration retention;
+
+    // Events waiting to be written per subscriber; a live subscriber whose queue overflows is dropped
+    @Value("${product.changes.subscriber-buffer:1000}")
+    private int subscriberBuffer;
+
+    @Value("${product.changes.relay-interval-ms:200}")
+    private long relayIntervalMs;
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private ThreadPoolTaskScheduler relayScheduler;
+
+    // Writes the queued events to the connections; at most one thread per subscriber at a time, and only while it has
+    // events to write, so idle subscribers hold no thread
+    private final ExecutorService senders = Executors.newCachedThreadPool(senderThreads()::createThread);
+
+    // Highest sequence number sent to up-to-date subscribers (-1 until the first tick has read it)
+    private long head = -1;
+    private Instant lastHeartbeat = Instant.now();
+
+    // 1. Open a change stream for a consumer, resuming after the given sequence number
+    // Without a position the stream starts with the next change
+    public SseEmitter subscribe(Long since) throws IOException {
+        return subscribe(new SseEmitter(sseTimeout.toMillis()), since);
+    }
+
+    // Opens a change stream on the given emitter (the integration tests pass emitters that record or block their writes)
+    public SseEmitter subscribe(SseEmitter emitter, Long since) throws IOException {
+        if (since != null && productChangeRepo.findMinSeq().map(min -> since < min - 1).orElse(false)) {
+            emitter.send(SseEmitter.event().name(RESYNC_EVENT_NAME).data("Changes after " + since + " are no longer available"));
+        }
+        Subscriber subscriber = new Subscriber(emitter, since, Math.max(subscriberBuffer, batchSize));
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(ex -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+        return emitter;
+    }
+
+    // Starts relaying every relay-interval-ms once every bean is ready, on a thread of its own (see SchedulingConfig),
+    // so the slow background jobs never delay it
+    @Override
+    public void afterSingletonsInstantiated() {
+        relayScheduler = SchedulingConfig.dedicatedScheduler("change-relay-", Duration.ofMillis(relayIntervalMs), this::relay);
+    }
+
+    // 2. Number the committed outbox rows and send them to the subscribers
+    public synchronized void relay() {
+        int numbered;
+        do {
+            numbered = transactionTemplate.execute(status -> numberPendingChanges());
+        } while (numbered == batchSize);
+        deliver();
+    }
+
+    // 3. Remove changes older than the retention period once an hour
+    @Scheduled(fixedDelayString = "${product.changes.cleanup-interval-ms:3600000}")
+    public void removeExpiredChanges() {
+        transactionTemplate.executeWithoutResult(status ->
+                productChangeRepo.deleteSequencedBefore(Instant.now().minus(retention), productChangeRepo.findMaxSeq()));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (relayScheduler != null) {
+            relayScheduler.shutdown();
+        }
+        senders.shutdownNow();
+    }
+
+    // Gives the next sequence numbers to one batch of unnumbered rows; the updates are sent as a JDBC batch on commit
+    // The locking read comes first, so the highest number is read after any other relay has committed its batch
+    private int numberPendingChanges() {
+        List<ProductChange> pending = productChangeRepo.findUnsequenced(Limit.of(batchSize));
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        long seq = productChangeRepo.findMaxSeq();
+        for (ProductChange change : pending) {
+            change.setSeq(++seq);
+        }
+        return pending.size();
+    }
+
+    // Sends the numbered changes each subscriber has not received yet
+    private void deliver() {
+        if (head < 0) {
+            head = productChangeRepo.findMaxSeq();
+        }
+        // Catch up subscribers that resume from an older position, one page per tick so others are not held up
+        for (Subscriber subscriber : subscribers) {
+            if (subscriber.position == null || subscriber.position > head) {
+                subscriber.position = head; // No (or an unknown future) position: start with the next change
+            } else if (subscriber.position < head && subscriber.queue.remainingCapacity() >= batchSize) {
+                List<ProductChange> changes = productChangeRepo.findSequencedBetween(subscriber.position, head, Limit.of(batchSize));
+                send(subscriber, changes);
+                subscriber.position = changes.size() < batchSize ? head : changes.get(changes.size() - 1).getSeq();
+            }
+        }
+        // Send the newly numbered changes to every subscriber that is up to date
+        List<ProductChange> changes;
+        do {
+            changes = productChangeRepo.findSequencedBetween(head, Long.MAX_VALUE, Limit.of(batchSize));
+            if (changes.isEmpty()) {
+                break;
+            }
+            long newHead = changes.get(changes.size() - 1).getSeq();
+            for (Subscriber subscriber : subscribers) {
+                if (subscriber.position == head) {
+                    send(subscriber, changes);
+                    subscriber.position = newHead;
+                }
+            }
+            head = newHead;
+            lastHeartbeat = Instant.now();
+        } while (changes.size() == batchSize);
+
+        if (Instant.now().isAfter(lastHeartbeat.plus(heartbeatInterval))) {
+            // A subscriber with a full queue has events coming anyway, so its heartbeat is simply skipped
+            subscribers.forEach(subscriber -> subscriber.enqueue(List.of(SseEmitter.event().comment("heartbeat"))));
+            lastHeartbeat = Instant.now();
+        }
+    }
+
+    // Queues the changes for the subscriber's sender; a subscriber without room for them is not keeping up
+    private void send(Subscriber subscriber, List<ProductChange> changes) {
+        List<SseEmitter.SseEventBuilder> events = changes.stream()
+                .map(change -> SseEmitter.event()
+                        .id(String.valueOf(change.getSeq()))
+                        .name(EVENT_NAME)
+                        .data(change, MediaType.APPLICATION_JSON))
+                .toList();
+        if (!subscriber.enqueue(events)) {
+            log.warn("Dropping a change stream subscriber that is {} events behind", subscriber.queue.size());
+            drop(subscriber, new IllegalStateException("Subscriber is not keeping up with the change stream"));
+        }
+    }
+
+    // The client went away, fell too far behind, or the emitter already completed: stop sending to it
+    // The emitter is completed on a sender thread, since it waits for a write that may be blocked
+    private void drop(Subscriber subscriber, Exception ex) {
+        subscribers.remove(subscriber);
+        subscriber.closed = true;
+        subscriber.queue.clear();
+        senders.execute(() -> subscriber.emitter.completeWithError(ex));
+    }
+
+    private static CustomizableThreadCreator senderThreads() {
+        CustomizableThreadCreator threads = new CustomizableThreadCreator("change-sender-");
+        threads.setDaemon(true);
+        return threads;
+    }
+
+    // An open change stream, the sequence number of the last change queued for it, and the events not written yet
+    // position is only read and written on the relay thread (null until the first tick for "start at the next change"),
+    // which is also the only thread adding to the queue
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<SseEmitter.SseEventBuilder> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private volatile boolean closed;
+        private Long position;
+
+        private Subscriber(SseEmitter emitter, Long position, int capacity) {
+            this.emitter = emitter;
+            this.position = position;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        // Queues all of the events, or none of them when there is not enough room; false means the queue is full
+        boolean enqueue(List<SseEmitter.SseEventBuilder> events) {
+            if (closed || queue.remainingCapacity() < events.size()) {
+                return closed;
+            }
+            queue.addAll(events);
+            scheduleDrain();
+            return true;
+        }
+
+        private void scheduleDrain() {
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        // Writes the queued events in order; runs on one sender thread at a time
+        private void drain() {
+            try {
+                SseEmitter.SseEventBuilder event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(event);
+                }
+            } catch (IOException | IllegalStateException ex) {
+                drop(this, ex);
+                return;
+            } finally {
+                draining.set(false);
+            }
+            // Events queued after the last poll but before draining was reset still need a sender
+            if (!closed && !queue.isEmpty()) {
+                scheduleDrain();
+            }
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.models.ProductView;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// This class reads and writes the CSV format of the bulk import and export endpoints
+// Export writes "id,name,price" rows under a header line; import reads a "name,price" row per line, or the
+// columns named in a header line (so an export file can be imported again, its id column is ignored)
+// Fields follow RFC 4180 quoting: fields with a comma or a quote are quoted and quotes are doubled
+// Every record must fit on one line, quoted line breaks are not supported
+public final class ProductCsv {
+
+    public static final String MEDIA_TYPE = "text/csv";
+
+    public static final String HEADER = "id,name,price";
+
+    private ProductCsv() {
+    }
+
+    // Formats one product as a CSV line (without the line break)
+    public static String format(ProductView product) {
+        return product.id() + "," + quote(product.name()) + "," + product.price();
+    }
+
+    // Splits one CSV line into its fields
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -0,0 +1,163 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.exceptions.BadRequestException;
+import dev.rono.rest.models.ImportResult;
+import dev.rono.rest.models.ImportResult.LineError;
+import dev.rono.rest.models.Product;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// This class imports products from a CSV or NDJSON upload, one line at a time
+// Lines are parsed and validated as they are read, and valid products are inserted in chunks of the JDBC
+// batch size through ProductService (one transaction per chunk, like the batch endpoints), so memory use
+// stays bounded by one chunk plus the error report no matter how large the upload is
+// The import is not atomic: chunks that were inserted stay inserted when a later line fails
+@Service
+@Profile("!reactive")
+public class ProductImportService {
+
+    // Failed lines listed in the report; further failures are only counted
+    public static final int MAX_REPORTED_ERRORS = 1000;
+
+    @Autowired // Validates and inserts the products
+    private ProductService productService;
+
+    @Autowired // Reads the NDJSON lines
+    private ObjectMapper objectMapper;
+
+    // 1. Import a CSV upload: "name,price" lines, or the columns named by a header line
+    public ImportResult importCsv(BufferedReader reader) throws IOException {
+        return importLines(reader, new CsvLineParser());
+    }
+
+    // 2. Import an NDJSON upload: one product JSON object per line
+    public ImportResult importNdjson(BufferedReader reader) throws IOException {
+        return importLines(reader, (line, lineNumber) -> {
+            try {
+                return objectMapper.readValue(line, Product.class);
+            } catch (JsonProcessingException ex) {
+                throw new IllegalArgumentException("Invalid JSON: " + ex.getOriginalMessage());
+            }
+        });
+    }
+
+    private ImportResult importLines(BufferedReader reader, LineParser parser) throws IOException {
+        long start = System.nanoTime();
+        Report report = new Report();
+        List<Product> chunk = new ArrayList<>(productService.chunkSize());
+        List<Long> chunkLines = new ArrayList<>(productService.chunkSize());
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            Product product;
+            try {
+                product = parser.parse(line, lineNumber);
+            } catch (IllegalArgumentException ex) {
+                report.fail(lineNumber, Map.of("error", ex.getMessage()));
+                continue;
+            }
+            if (product == null) {
+                continue; // Header line
+            }
+            Map<String, String> errors = productService.validate(product);
+            if (!errors.isEmpty()) {
+                report.fail(lineNumber, errors);
+                continue;
+            }
+            product.setId(null); // IDs are always assigned by the database
+            chunk.add(product);
+            chunkLines.add(lineNumber);
+            if (chunk.size() == productService.chunkSize()) {
+                insert(chunk, chunkLines, report);
+            }
+        }
+        insert(chunk, chunkLines, report);
+
+        long elapsedNanos = Math.max(1, System.nanoTime() - start);
+        double rowsPerSecond = Math.round(report.imported * 1e9 / elapsedNanos * 10) / 10.0;
+        return new ImportResult(report.imported, report.failed, elapsedNanos / 1_000_000, rowsPerSecond,
+                report.errors, report.failed > report.errors.size());
+    }
+
+    // Inserts the collected chunk and starts a new one; a failed chunk is reported on each of its lines
+    private void insert(List<Product> chunk, List<Long> chunkLines, Report report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            productService.insertChunk(chunk);
+            report.imported += chunk.size();
+        } catch (DataAccessException ex) {
+            chunkLines.forEach(line -> report.fail(line, Map.of("error", ex.getMostSpecificCause().getMessage())));
+        }
+        chunk.clear();
+        chunkLines.clear();
+    }
+
+    // Turns one line into a product, returns null for a line that holds no product (a header),
+    // or throws IllegalArgumentException when the line cannot be read
+    private interface LineParser {
+        Product parse(String line, long lineNumber);
+    }
+
+    // Reads CSV lines; a first line naming a "name" column is a header that defines the column order
+    private static final class CsvLineParser implements LineParser {
+
+        private int nameColumn = 0;
+        private int priceColumn = 1;
+
+        @Override
+        public Product parse(String line, long lineNumber) {
+            List<String> fields = ProductCsv.parseLine(line);
+            if (lineNumber == 1 && fields.stream().anyMatch(field -> field.trim().equalsIgnoreCase("name"))) {
+                List<String> columns = fields.stream().map(field -> field.trim().toLowerCase(Locale.ROOT)).toList();
+                nameColumn = columns.indexOf("name");
+                priceColumn = columns.indexOf("price");
+                if (priceColumn < 0) {
+                    throw new BadRequestException("CSV header must have a name and a price column");
+                }
+                return null;
+            }
+            if (fields.size() <= Math.max(nameColumn, priceColumn)) {
+                throw new IllegalArgumentException("Expected at least " + (Math.max(nameColumn, priceColumn) + 1)
+                        + " columns but found " + fields.size());
+            }
+            String price = fields.get(priceColumn).trim();
+            try {
+                return new Product(fields.get(nameColumn).trim(), price.isEmpty() ? null : Double.valueOf(price));
+            } catch (NumberFormatException ex) {
+                throw new IllegalArgumentException("Price is not a number: " + price);
+            }
+        }
+    }
+
+    // Counts imported and failed lines and keeps the first MAX_REPORTED_ERRORS failures
+    private static final class Report {
+        private long imported;
+        private long failed;
+        private final List<LineError> errors = new ArrayList<>();
+
+        private void fail(long line, Map<String, String> lineErrors) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new LineError(line, lineErrors));
+            }
+        }
+    }
+}
@@ -0,0 +1,359 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.models.ProductView;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// In-memory index of product names for typeahead: finds the products whose name contains a text without scanning
+// every name, the way LIKE '%text%' has to
+// Every indexed product gets a dense document number, and every gram of its case-folded name a posting list of the
+// document numbers that contain it, in increasing order (plain int arrays, no boxed entries per product):
+// - the trigrams of the name ("kettle" -> ket, ett, ttl, tle), which narrow down "contains" queries
+// - the first one and two characters of the name and of every word, which answer queries shorter than a trigram
+//   and find prefix matches first
+// A query intersects the posting lists of its grams (walking the shortest list and skipping ahead in the others),
+// checks each candidate name, and stops as soon as it has `limit` results; results are ranked in three tiers:
+// 1. names that start with the text, 2. names with a word that starts with it, 3. names that contain it elsewhere
+// (queries of one or two characters only match name and word prefixes); within a tier, older products come first
+// An update that keeps the name only overwrites the price of the product's document; an update that changes the
+// name adds a new document and marks the old one removed, like a delete, and the index is rebuilt once more than
+// half of its documents are removed, so repeated updates of the same products never grow it without bound
+// Reads share a read lock and run in parallel, writes take the write lock
+public class ProductNameIndex {
+
+    // Gram markers: name-start and word-start grams cannot collide with the trigrams of a name
+    private static final char NAME_START = '\u0001';
+    private static final char WORD_START = '\u0002';
+
+    // Ranks of a match, best first
+    private static final int NAME_PREFIX = 0;
+    private static final int WORD_PREFIX = 1;
+    private static final int CONTAINS = 2;
+    private static final int NO_MATCH = 3;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Per document number: product ID, name (null once removed) and price
+    private long[] ids = new long[1024];
+    private String[] names = new String[1024];
+    private double[] prices = new double[1024];
+    private int documents;
+    private int removed;
+
+    private Map<Long, Postings> postings = new HashMap<>();
+    private LongIntMap documentsById = new LongIntMap();
+
+    // 1. Add a product, or replace its name and price
+    // A new price alone (price feeds, repricing jobs) is written in place: the grams of the name stay the same
+    public void put(long id, String name, double price) {
+        lock.writeLock().lock();
+        try {
+            int document = documentsById.get(id);
+            if (document >= 0 && names[document].equals(name)) {
+                prices[document] = price;
+                return;
+            }
+            removeDocument(id);
+            addDocument(id, name, price);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // 2. Remove a product (nothing happens when it is not indexed)
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Number of indexed products
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents - removed;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of documents, the removed ones included: what the arrays and posting lists hold
+    public int documentCount() {
+        lock.readLock().lock();
+        try {
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 3. Up to limit products whose name contains the query (ignoring case), best matches first
+    public List<ProductView> suggest(String query, int limit) {
+        String text = query.strip();
+        if (text.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+        char[] folded = fold(text);
+        Set<Long> trigrams = new LinkedHashSet<>();
+        for (int i = 0; i + 3 <= folded.length; i++) {
+            trigrams.add(gram(folded[i], folded[i + 1], folded[i + 2]));
+        }
+        char second = folded.length > 1 ? folded[1] : 0;
+
+        List<ProductView> results = new ArrayList<>(Math.min(limit, 64));
+        lock.readLock().lock();
+        try {
+            collect(text, gram(NAME_START, folded[0], second), trigrams, NAME_PREFIX, limit, results);
+            collect(text, gram(WORD_START, folded[0], second), trigrams, WORD_PREFIX, limit, results);
+            if (!trigrams.isEmpty()) {
+                collect(text, null, trigrams, CONTAINS, limit, results);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    // Adds the matches of one rank: candidates from the intersection of the posting lists, checked against the name
+    private void collect(String text, Long prefixGram, Set<Long> trigrams, int rank, int limit, List<ProductView> results) {
+        if (results.size() >= limit) {
+            return;
+        }
+        List<Postings> lists = new ArrayList<>(trigrams.size() + 1);
+        if (prefixGram != null) {
+            lists.add(postings.get(prefixGram));
+        }
+        for (Long trigram : trigrams) {
+            lists.add(postings.get(trigram));
+        }
+        if (lists.contains(null)) {
+            return; // A gram of the query occurs in no name
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        Postings shortest = lists.get(0);
+        int[] cursors = new int[lists.size()];
+        candidates:
+        for (int i = 0; i < shortest.size; i++) {
+            int document = shortest.documents[i];
+            for (int list = 1; list < lists.size(); list++) {
+                cursors[list] = lists.get(list).seek(document, cursors[list]);
+                if (cursors[list] == lists.get(list).size) {
+                    return; // This list has no more documents, so neither has the intersection
+                }
+                if (lists.get(list).documents[cursors[list]] != document) {
+                    continue candidates;
+                }
+            }
+            String name = names[document];
+            if (name != null && rank(name, text) == rank) {
+                results.add(new ProductView(ids[document], name, prices[document], null, null));
+                if (results.size() >= limit) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // Best rank of the query's occurrences in a name
+    private static int rank(String name, String text) {
+        int best = NO_MATCH;
+        for (int i = 0; i + text.length() <= name.length() && best > WORD_PREFIX; i++) {
+            if (name.regionMatches(true, i, text, 0, text.length())) {
+                if (i == 0) {
+                    best = NAME_PREFIX;
+                } else if (Character.isLetterOrDigit(name.charAt(i)) && !Character.isLetterOrDigit(name.charAt(i - 1))) {
+                    best = WORD_PREFIX; // Same word boundaries as the word-start grams
+                } else {
+                    best = CONTAINS;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void addDocument(long id, String name, double price) {
+        if (documents == ids.length) {
+            int capacity = documents * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            names = Arrays.copyOf(names, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+        }
+        int document = documents++;
+        ids[document] = id;
+        names[document] = name;
+        prices[document] = price;
+        documentsById.put(id, document);
+
+        char[] folded = fold(name);
+        if (folded.length > 0) {
+            addPosting(gram(NAME_START, folded[0], (char) 0), document);
+            if (folded.length > 1) {
+                addPosting(gram(NAME_START, folded[0], folded[1]), document);
+            }
+        }
+        for (int i = 0; i < folded.length; i++) {
+            if (Character.isLetterOrDigit(folded[i]) && (i == 0 || !Character.isLetterOrDigit(folded[i - 1]))) {
+                addPosting(gram(WORD_START, folded[i], (char) 0), document);
+                if (i + 1 < folded.length) {
+                    addPosting(gram(WORD_START, folded[i], folded[i + 1]), document);
+                }
+            }
+            if (i + 3 <= folded.length) {
+                addPosting(gram(folded[i], folded[i + 1], folded[i + 2]), document);
+            }
+        }
+    }
+
+    private void addPosting(long gram, int document) {
+        postings.computeIfAbsent(gram, key -> new Postings()).add(document);
+    }
+
+    // The old document stays in the posting lists, but without a name it never matches
+    private void removeDocument(long id) {
+        int document = documentsById.get(id);
+        if (document >= 0) {
+            names[document] = null;
+            documentsById.put(id, -1);
+            removed++;
+        }
+    }
+
+    // Rebuilds the index once more than half of its documents (and at least 1024) are removed
+    private void compactIfNeeded() {
+        if (removed > 1024 && removed > documents / 2) {
+            compact();
+        }
+    }
+
+    // Rebuilds the index from the products still in it, dropping the removed documents from the posting lists
+    private void compact() {
+        long[] oldIds = ids;
+        String[] oldNames = names;
+        double[] oldPrices = prices;
+        int oldDocuments = documents;
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(1, oldDocuments - removed)) * 2);
+        ids = new long[capacity];
+        names = new String[capacity];
+        prices = new double[capacity];
+        documents = 0;
+        removed = 0;
+        postings = new HashMap<>();
+        documentsById = new LongIntMap();
+        for (int document = 0; document < oldDocuments; document++) {
+            if (oldNames[document] != null) {
+                addDocument(oldIds[document], oldNames[document], oldPrices[document]);
+            }
+        }
+    }
+
+    // Case folding of the grams, matching String.regionMatches(true, ...) which checks the candidates
+    private static char[] fold(String text) {
+        char[] folded = text.toCharArray();
+        for (int i = 0; i < folded.length; i++) {
+            folded[i] = Character.toLowerCase(Character.toUpperCase(folded[i]));
+        }
+        return folded;
+    }
+
+    private static long gram(char first, char second, char third) {
+        return ((long) first << 32) | ((long) second << 16) | third;
+    }
+
+    // Growable sorted array of document numbers
+    private static final class Postings {
+
+        private int[] documents = new int[4];
+        private int size;
+
+        // Documents are numbered in the order they are added, so appending keeps the list sorted
+        // A gram that occurs twice in a name is only listed once
+        void add(int document) {
+            if (size > 0 && documents[size - 1] == document) {
+                return;
+            }
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size + (size >> 1) + 1);
+            }
+            documents[size++] = document;
+        }
+
+        // Position of the first document >= target, searching from `from` (galloping, then binary search)
+        int seek(int target, int from) {
+            int step = 1;
+            int high = from;
+            while (high < size && documents[high] < target) {
+                from = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            int index = Arrays.binarySearch(documents, from, Math.min(high + 1, size), target);
+            return index >= 0 ? index : -index - 1;
+        }
+    }
+
+    // Open-addressing hash map from product ID to document number (-1 = removed), without boxing
+    private static final class LongIntMap {
+
+        private long[] keys = new long[2048];
+        private int[] values = new int[2048];
+        private boolean[] used = new boolean[2048];
+        private int size;
+
+        int get(long key) {
+            for (int slot = slot(key, keys.length); used[slot]; slot = (slot + 1) & (keys.length - 1)) {
+                if (keys[slot] == key) {
+                    return values[slot];
+                }
+            }
+            return -1;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int slot = slot(key, keys.length);
+            while (used[slot] && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            if (!used[slot]) {
+                used[slot] = true;
+                keys[slot] = key;
+                size++;
+            }
+            values[slot] = value;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldUsed[i]) {
+                    put(oldKeys[i], oldValues[i]);
+                }
+            }
+        }
+
+        private static int slot(long key, int capacity) {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 40) & (capacity - 1);
+        }
+    }
+}
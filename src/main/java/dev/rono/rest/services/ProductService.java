@@ -0,0 +1,585 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.config.CacheConfig;
+import dev.rono.rest.config.ReadRouting;
+import dev.rono.rest.exceptions.BadRequestException;
+import dev.rono.rest.exceptions.PreconditionFailedException;
+import dev.rono.rest.exceptions.ResourceNotFoundException;
+import dev.rono.rest.models.BatchResult;
+import dev.rono.rest.models.BatchResult.Item;
+import dev.rono.rest.models.BatchResult.Status;
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductChange;
+import dev.rono.rest.models.ProductSearch;
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.repositories.ProductChangeRepo;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.repositories.ProductSpecifications;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.CachePut;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+
+// This class holds the product operations used by both ProductController and ProductWebController
+// Reads return ProductView records projected by the query, never managed entities
+// Single-product reads go through the "products" cache (of ProductView), and every write path keeps that cache
+// coherent: creates put the saved product in the cache, updates and deletes evict it
+// Batch writes are split into chunks of hibernate.jdbc.batch_size rows, and each chunk is
+// persisted in its own transaction so Hibernate can send it as one JDBC batch
+// Every write also inserts a ProductChange row into the outbox in the same transaction, so the change stream
+// (ProductChangeRelay) contains exactly the writes that committed
+// Once a write has committed, its price delta is reported to ProductStatsService, which keeps the statistics, and
+// the new or removed name to ProductSuggestService, which keeps the typeahead index, and the new state or removed ID
+// to ProductCatalog, which serves the plain listing from memory when it is enabled
+@Service
+@Profile("!reactive") // Needs JPA, which the "reactive" profile turns off (see ReactiveProductService)
+public class ProductService {
+
+    // Largest number of entries accepted in one batch request
+    public static final int MAX_BATCH_SIZE = 10_000;
+
+    // Attempts of a single price update that runs into concurrent writes of the same product
+    static final int PRICE_UPDATE_ATTEMPTS = 3;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired // The product change outbox, written together with every product write
+    private ProductChangeRepo productChangeRepo;
+
+    @Autowired // Used to validate each batch entry on its own, so one bad entry does not reject the whole batch
+    private Validator validator;
+
+    @Autowired // Used to give every write (and every batch chunk) its own transaction together with its outbox row
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired // Used by the batch operations, which evict cache entries by hand after each chunk commits
+    private CacheManager cacheManager;
+
+    @Autowired // Gets the price delta of every committed write
+    private ProductStatsService productStatsService;
+
+    @Autowired // Gets the name of every committed create and update, and the ID of every delete
+    private ProductSuggestService productSuggestService;
+
+    @Autowired // Gets the new state of every committed create and update, and the ID of every delete
+    private ProductCatalog productCatalog;
+
+    @PersistenceContext // Used to flush and clear the persistence context after every chunk
+    private EntityManager entityManager;
+
+    // Chunk size matches the JDBC batch size, so every chunk is sent to the database as a single batch
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int chunkSize;
+
+    // 1. Get one product by ID, from the cache when present
+    // A missing product throws ResourceNotFoundException, which is never cached
+    // Cache misses are read from the primary: a lagging read replica would put a stale product in the cache
+    @Cacheable(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#id")
+    public ProductView findById(Long id) {
+        return ReadRouting.onPrimary(() -> productRepo.findViewById(id))
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
+    }
+
+    // 1b. Get only the version of a product, for conditional requests
+    // Uses the cached product when present, otherwise a version-only query instead of loading the row
+    public Long findVersion(Long id) {
+        ProductView cached = productCache().get(id, ProductView.class);
+        if (cached != null) {
+            return cached.version();
+        }
+        return productRepo.findVersionById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
+    }
+
+    // 1c. Get one keyset page of products matching the search, starting after the product with the given ID
+    // The plain ID-ordered listing uses the primary key directly; searches and other sort orders run as a
+    // Specification query ordered by (sort field, id), continuing after the cursor product's sort value
+    // Read-only, so the cursor lookup and the page query run on the same read replica
+    // With the catalog enabled, the plain listing is a CatalogSnapshot.Page served from memory instead
+    @Transactional(readOnly = true)
+    public List<ProductView> findPage(ProductSearch search, Long after, int limit) {
+        if (search.isUnfiltered()) {
+            if (productCatalog.isEnabled()) {
+                return productCatalog.page(after, limit);
+            }
+            // Product IDs are always positive, so starting after 0 returns the first page
+            return productRepo.findViewsAfter(after == null ? 0L : after, Limit.of(limit));
+        }
+        if (!ProductSearch.SORT_FIELDS.contains(search.sort())) {
+            throw new BadRequestException("Sort must be one of " + ProductSearch.SORT_FIELDS);
+        }
+        Sort.Direction direction;
+        try {
+            direction = search.sortDirection();
+        } catch (IllegalArgumentException ex) {
+            throw new BadRequestException("Direction must be asc or desc");
+        }
+
+        Specification<Product> spec = filter(search);
+        if (after != null) {
+            spec = spec.and(afterCursor(search.sort(), direction, after));
+        }
+        Sort sort = Sort.by(direction, search.sort()).and(Sort.by(direction, "id"));
+        return productRepo.findViews(spec, sort, limit);
+    }
+
+    // The name and price filters of a search (sort and direction are not part of it)
+    private static Specification<Product> filter(ProductSearch search) {
+        Specification<Product> spec = Specification.where(null);
+        if (search.name() != null && !search.name().isBlank()) {
+            spec = spec.and(ProductSpecifications.nameStartsWith(search.name()));
+        }
+        if (search.nameContains() != null && !search.nameContains().isBlank()) {
+            spec = spec.and(ProductSpecifications.nameContains(search.nameContains()));
+        }
+        if (search.minPrice() != null) {
+            spec = spec.and(ProductSpecifications.priceAtLeast(search.minPrice()));
+        }
+        if (search.maxPrice() != null) {
+            spec = spec.and(ProductSpecifications.priceAtMost(search.maxPrice()));
+        }
+        return spec;
+    }
+
+    // Keyset predicate continuing after the cursor product; other sort orders need the cursor's sort value
+    private Specification<Product> afterCursor(String field, Sort.Direction direction, Long after) {
+        if (field.equals("id")) {
+            return ProductSpecifications.after(field, direction, after, after);
+        }
+        ProductView cursor = productRepo.findViewById(after)
+                .orElseThrow(() -> new BadRequestException("Cursor product no longer exists: " + after));
+        return field.equals("name")
+                ? ProductSpecifications.after(field, direction, cursor.name(), after)
+                : ProductSpecifications.after(field, direction, cursor.price(), after);
+    }
+
+    // 2. Create a product and cache it under its new ID
+    // The transaction commits before the cache put, so the cache never holds a product that was rolled back
+    @CachePut(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#result.id")
+    public ProductView create(Product product) {
+        ProductView created = transactionTemplate.execute(status -> {
+            Product savedProduct = productRepo.save(product);
+            productChangeRepo.save(ProductChange.of(ProductChange.Type.CREATED, savedProduct));
+            return ProductView.of(savedProduct);
+        });
+        productStatsService.added(created.price());
+        productSuggestService.indexed(created);
+        productCatalog.upserted(created);
+        return created;
+    }
+
+    // 3. Update an existing product with a single UPDATE statement and evict its cache entry
+    // When expectedVersion is given (from an If-Match header) the update only happens if it still matches
+    // A zero row count means 404 Not Found, or 412 Precondition Failed when the product exists with another version
+    // The statistics need the old price: a conditional update of a cached product takes it from the cache (evicted
+    // only after this method); otherwise the row is read and locked first, which also gives an unconditional update
+    // the version it replaces, so the response ETag and the outbox row always carry the new one
+    @CacheEvict(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#id")
+    public ProductView update(Long id, Product productDetails, Long expectedVersion) {
+        Double[] oldPrice = {cachedPrice(id, expectedVersion)};
+        ProductView result = transactionTemplate.execute(status -> {
+            Long version = expectedVersion;
+            if (version == null || oldPrice[0] == null) {
+                ProductView current = currentForUpdate(id, expectedVersion);
+                oldPrice[0] = current.price();
+                version = current.version();
+            }
+            Instant now = Instant.now();
+            if (productRepo.updateNameAndPriceIfVersion(id, productDetails.getName(), productDetails.getPrice(), now, version) == 0) {
+                throw notFoundOrModified(id, expectedVersion);
+            }
+            Product updatedProduct = new Product(productDetails.getName(), productDetails.getPrice());
+            updatedProduct.setId(id);
+            updatedProduct.setVersion(version + 1);
+            updatedProduct.setLastModified(now);
+            productChangeRepo.save(ProductChange.of(ProductChange.Type.UPDATED, updatedProduct));
+            return ProductView.of(updatedProduct);
+        });
+        productStatsService.changed(oldPrice[0], result.price());
+        productSuggestService.indexed(result);
+        productCatalog.upserted(result);
+        return result;
+    }
+
+    // 4. Delete a product with a single DELETE statement and evict it from the cache
+    // expectedVersion, the zero row count and the old price work the same way as for update; an unconditional delete
+    // of a cached product needs no version, so only an uncached product is read first
+    @CacheEvict(cacheNames = CacheConfig.PRODUCTS_CACHE, key = "#id")
+    public void delete(Long id, Long expectedVersion) {
+        Double[] oldPrice = {cachedPrice(id, expectedVersion)};
+        transactionTemplate.executeWithoutResult(status -> {
+            Long version = expectedVersion;
+            if (oldPrice[0] == null) {
+                ProductView current = currentForUpdate(id, expectedVersion);
+                oldPrice[0] = current.price();
+                version = current.version();
+            }
+            int deleted = version == null
+                    ? productRepo.deleteProductById(id)
+                    : productRepo.deleteProductByIdIfVersion(id, version);
+            if (deleted == 0) {
+                throw notFoundOrModified(id, expectedVersion);
+            }
+            productChangeRepo.save(ProductChange.deleted(id));
+        });
+        productStatsService.removed(oldPrice[0]);
+        productSuggestService.removed(id);
+        productCatalog.removed(id);
+    }
+
+    // 5. Create many products
+    // Invalid entries are reported and skipped, valid entries are inserted chunk by chunk
+    public BatchResult createAll(List<Product> products) {
+        checkBatchSize(products);
+        Item[] items = new Item[products.size()];
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            Map<String, String> errors = validate(product);
+            if (errors.isEmpty()) {
+                product.setId(null); // IDs are always assigned by the database
+                valid.add(i);
+            } else {
+                items[i] = new Item(i, null, Status.INVALID, errors);
+            }
+        }
+
+        for (List<Integer> chunk : chunks(valid)) {
+            try {
+                insertChunk(chunk.stream().map(products::get).toList());
+                chunk.forEach(i -> items[i] = new Item(i, products.get(i).getId(), Status.CREATED, null));
+            } catch (DataAccessException ex) {
+                chunk.forEach(i -> items[i] = failed(i, null, ex));
+            }
+        }
+        return BatchResult.of(items);
+    }
+
+    // 6. Update many products
+    // Every entry must carry the ID of an existing product; the existing rows are loaded one chunk at a time
+    public BatchResult updateAll(List<Product> products) {
+        checkBatchSize(products);
+        Item[] items = new Item[products.size()];
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < products.size(); i++) {
+            Product product = products.get(i);
+            Map<String, String> errors = validate(product);
+            if (product.getId() == null) {
+                errors.put("id", "ID is mandatory");
+            }
+            if (errors.isEmpty()) {
+                valid.add(i);
+            } else {
+                items[i] = new Item(i, product.getId(), Status.INVALID, errors);
+            }
+        }
+
+        for (List<Integer> chunk : chunks(valid)) {
+            // Old and new price of every updated product, reported to the statistics once the chunk has committed
+            List<double[]> priceChanges = new ArrayList<>();
+            List<ProductView> updatedViews = new ArrayList<>();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    priceChanges.clear();
+                    updatedViews.clear();
+                    List<Long> ids = chunk.stream().map(i -> products.get(i).getId()).toList();
+                    Map<Long, Product> existing = productRepo.findAllById(ids).stream()
+                            .collect(Collectors.toMap(Product::getId, Function.identity()));
+                    List<Product> updated = new ArrayList<>();
+                    for (int i : chunk) {
+                        Product details = products.get(i);
+                        Product existingProduct = existing.get(details.getId());
+                        if (existingProduct == null) {
+                            items[i] = notFound(i, details.getId());
+                            continue;
+                        }
+                        priceChanges.add(new double[]{existingProduct.getPrice(), details.getPrice()});
+                        existingProduct.setName(details.getName());
+                        existingProduct.setPrice(details.getPrice());
+                        updated.add(existingProduct);
+                        updatedViews.add(ProductView.of(existingProduct));
+                        items[i] = new Item(i, details.getId(), Status.UPDATED, null);
+                    }
+                    entityManager.flush(); // Increments the versions the change rows copy
+                    productChangeRepo.saveAll(updated.stream()
+                            .map(product -> ProductChange.of(ProductChange.Type.UPDATED, product)).toList());
+                    flushAndClear();
+                });
+                chunk.forEach(i -> evict(products.get(i).getId()));
+                priceChanges.forEach(change -> productStatsService.changed(change[0], change[1]));
+                updatedViews.forEach(productSuggestService::indexed);
+                productCatalog.upserted(updatedViews);
+            } catch (DataAccessException ex) {
+                chunk.forEach(i -> items[i] = failed(i, products.get(i).getId(), ex));
+            }
+        }
+        return BatchResult.of(items);
+    }
+
+    // 7. Delete many products by ID
+    // Each chunk is removed with a single "delete ... where id in (...)" statement
+    public BatchResult deleteAll(List<Long> ids) {
+        checkBatchSize(ids);
+        Item[] items = new Item[ids.size()];
+        List<Integer> valid = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (ids.get(i) == null) {
+                items[i] = new Item(i, null, Status.INVALID, Map.of("id", "ID is mandatory"));
+            } else {
+                valid.add(i);
+            }
+        }
+
+        for (List<Integer> chunk : chunks(valid)) {
+            // Prices of the deleted products, reported to the statistics once the chunk has committed
+            Map<Long, Double> deletedPrices = new HashMap<>();
+            try {
+                transactionTemplate.executeWithoutResult(status -> {
+                    deletedPrices.clear();
+                    productRepo.findViewsByIds(chunk.stream().map(ids::get).toList())
+                            .forEach(product -> deletedPrices.put(product.id(), product.price()));
+                    Set<Long> existing = deletedPrices.keySet();
+                    productRepo.deleteAllByIdInBatch(existing);
+                    productChangeRepo.saveAll(existing.stream().map(ProductChange::deleted).toList());
+                    for (int i : chunk) {
+                        Long id = ids.get(i);
+                        items[i] = existing.contains(id) ? new Item(i, id, Status.DELETED, null) : notFound(i, id);
+                    }
+                });
+                chunk.forEach(i -> evict(ids.get(i)));
+                deletedPrices.values().forEach(productStatsService::removed);
+                deletedPrices.keySet().forEach(productSuggestService::removed);
+                productCatalog.removed(deletedPrices.keySet());
+            } catch (DataAccessException ex) {
+                chunk.forEach(i -> items[i] = failed(i, ids.get(i), ex));
+            }
+        }
+        return BatchResult.of(items);
+    }
+
+    // 8. Set the price of one product, for the price-update endpoint when write-behind is off
+    // Unlike update, the existing row is loaded first: the name is needed for the change row, and the old price makes
+    // the statistics delta exact
+    // Setting a price does not depend on the previous state, so a concurrent write of the same product is retried
+    // (up to PRICE_UPDATE_ATTEMPTS times) instead of failing with 409 Conflict
+    public ProductView updatePrice(Long id, double price) {
+        List<ProductView> updated;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                updated = updatePrices(Map.of(id, price));
+                break;
+            } catch (OptimisticLockingFailureException ex) {
+                if (attempt == PRICE_UPDATE_ATTEMPTS) {
+                    throw ex;
+                }
+            }
+        }
+        if (updated.isEmpty()) {
+            throw new ResourceNotFoundException("Product not found with ID: " + id);
+        }
+        return updated.get(0);
+    }
+
+    // 9. Set the prices of many products (product ID -> new price) in one transaction, returning the updated
+    // products; IDs that do not exist are skipped
+    // Used by PriceUpdateBuffer to write the coalesced price updates; the products are loaded with one query, and the
+    // updates go out as one JDBC batch with a version check each, so a product changed by another request since it
+    // was loaded fails the whole call with an OptimisticLockingFailureException (a DataAccessException)
+    // Callers should not pass more than chunkSize prices
+    public List<ProductView> updatePrices(Map<Long, Double> prices) {
+        List<double[]> priceChanges = new ArrayList<>();
+        List<ProductView> updatedViews;
+        try {
+            updatedViews = transactionTemplate.execute(status -> {
+                List<Product> updated = productRepo.findAllById(prices.keySet());
+                for (Product product : updated) {
+                    double price = prices.get(product.getId());
+                    priceChanges.add(new double[]{product.getPrice(), price});
+                    product.setPrice(price);
+                }
+                entityManager.flush(); // Increments the versions the change rows copy
+                productChangeRepo.saveAll(updated.stream()
+                        .map(product -> ProductChange.of(ProductChange.Type.UPDATED, product)).toList());
+                List<ProductView> views = updated.stream().map(ProductView::of).toList();
+                flushAndClear();
+                return views;
+            });
+        } catch (PersistenceException ex) {
+            // A flush through the EntityManager throws JPA exceptions, which are not translated by the repositories
+            throw EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(ex);
+        }
+        updatedViews.forEach(product -> evict(product.id()));
+        priceChanges.forEach(change -> productStatsService.changed(change[0], change[1]));
+        updatedViews.forEach(productSuggestService::indexed);
+        productCatalog.upserted(updatedViews);
+        return updatedViews;
+    }
+
+    // 10. Reprice the products of an ID range that match the search filters: price * factor, rounded to cents
+    // Used by RepriceJobService for one chunk of a job; the prices are changed with a single UPDATE statement, and
+    // products whose new price would not be positive are skipped, so the Product.price rule still holds
+    // checkpoint runs inside the transaction with the number of updated products, so whatever it records commits or
+    // rolls back together with the new prices and their outbox rows
+    // The updated rows are read back by their new last-modified time, for the outbox and the in-memory views; a write
+    // of another request that lands on the same microsecond is read back too, which only repeats its current state
+    // The matching rows are read and locked before the UPDATE, so the statistics get the exact old price of each
+    public List<ProductView> repriceRange(ProductSearch search, long fromId, long toId, double factor,
+                                          IntConsumer checkpoint) {
+        Map<Long, Double> oldPrices = new HashMap<>();
+        List<ProductView> updatedViews;
+        try {
+            updatedViews = transactionTemplate.execute(status -> {
+                // Truncated to what the column stores, so the read-back finds the rows by equality
+                Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+                Specification<Product> spec = filter(search).and(ProductSpecifications.idBetween(fromId, toId));
+                oldPrices.clear();
+                oldPrices.putAll(productRepo.findPricesForUpdate(spec));
+                int updated = oldPrices.isEmpty() ? 0 : productRepo.updatePrices(spec, factor, now);
+                List<ProductView> views = updated == 0 ? List.of() : productRepo.findViewsModifiedAt(fromId, toId, now);
+                productChangeRepo.saveAll(views.stream().map(view -> new ProductChange(ProductChange.Type.UPDATED,
+                        view.id(), view.name(), view.price(), view.version(), view.lastModified())).toList());
+                checkpoint.accept(updated);
+                flushAndClear();
+                return views;
+            });
+        } catch (PersistenceException ex) {
+            throw EntityManagerFactoryUtils.convertJpaAccessExceptionIfPossible(ex);
+        }
+        updatedViews.forEach(product -> evict(product.id()));
+        // A row of another write read back with them (not locked here) is reported by that write
+        updatedViews.stream().filter(product -> oldPrices.containsKey(product.id()))
+                .forEach(product -> productStatsService.changed(oldPrices.get(product.id()), product.price()));
+        updatedViews.forEach(productSuggestService::indexed);
+        productCatalog.upserted(updatedViews);
+        return updatedViews;
+    }
+
+    // Inserts one chunk of validated products, with their outbox rows, in a single transaction
+    // Used by createAll and by ProductImportService; the chunk should not be larger than chunkSize
+    void insertChunk(List<Product> products) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<Product> created = productRepo.saveAll(products);
+            entityManager.flush(); // Assigns the timestamps the change rows copy
+            productChangeRepo.saveAll(created.stream()
+                    .map(product -> ProductChange.of(ProductChange.Type.CREATED, product)).toList());
+            flushAndClear();
+        });
+        List<ProductView> created = products.stream().map(ProductView::of).toList();
+        products.forEach(product -> productStatsService.added(product.getPrice()));
+        created.forEach(productSuggestService::indexed);
+        productCatalog.upserted(created);
+    }
+
+    // Number of products to insert per chunk (the JDBC batch size)
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    private void checkBatchSize(List<?> entries) {
+        if (entries.size() > MAX_BATCH_SIZE) {
+            throw new BadRequestException("Batch size must not exceed " + MAX_BATCH_SIZE + " entries");
+        }
+    }
+
+    // Validates one product and returns its errors as field -> message (empty when valid)
+    Map<String, String> validate(Product product) {
+        Map<String, String> errors = new HashMap<>();
+        for (ConstraintViolation<Product> violation : validator.validate(product)) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return errors;
+    }
+
+    // Splits the entry indexes into chunks of at most chunkSize entries
+    private List<List<Integer>> chunks(List<Integer> indexes) {
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < indexes.size(); from += chunkSize) {
+            chunks.add(indexes.subList(from, Math.min(from + chunkSize, indexes.size())));
+        }
+        return chunks;
+    }
+
+    // Reads and locks the row a single-product write replaces; 404 Not Found when it does not exist, and 412
+    // Precondition Failed when a conditional write expects another version
+    private ProductView currentForUpdate(Long id, Long expectedVersion) {
+        ProductView current = productRepo.findViewByIdForUpdate(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Product not found with ID: " + id));
+        if (expectedVersion != null && !expectedVersion.equals(current.version())) {
+            throw new PreconditionFailedException("Product with ID: " + id + " has been modified");
+        }
+        return current;
+    }
+
+    // Explains why a single-statement write matched no row: the product is gone, or (for a conditional
+    // write) it exists with another version; this extra lookup only runs on the failure path
+    private RuntimeException notFoundOrModified(Long id, Long expectedVersion) {
+        if (expectedVersion != null && productRepo.existsById(id)) {
+            return new PreconditionFailedException("Product with ID: " + id + " has been modified");
+        }
+        return new ResourceNotFoundException("Product not found with ID: " + id);
+    }
+
+    // Price of a cached product, for the statistics of a single-statement write; null when it is not cached,
+    // or when a conditional write expects another version than the cached one
+    private Double cachedPrice(Long id, Long expectedVersion) {
+        ProductView cached = productCache().get(id, ProductView.class);
+        if (cached == null || (expectedVersion != null && !expectedVersion.equals(cached.version()))) {
+            return null;
+        }
+        return cached.price();
+    }
+
+    // Removes a product from the cache once the batch chunk that changed it has committed
+    private void evict(Long id) {
+        productCache().evict(id);
+    }
+
+    private Cache productCache() {
+        return cacheManager.getCache(CacheConfig.PRODUCTS_CACHE);
+    }
+
+    // Sends the pending batch to the database and drops the managed entities so memory stays bounded
+    private void flushAndClear() {
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private static Item notFound(int index, Long id) {
+        return new Item(index, id, Status.NOT_FOUND, Map.of("error", "Product not found with ID: " + id));
+    }
+
+    private static Item failed(int index, Long id, DataAccessException ex) {
+        return new Item(index, id, Status.FAILED, Map.of("error", ex.getMostSpecificCause().getMessage()));
+    }
+}
@@ -0,0 +1,194 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.config.ReadRouting;
+import dev.rono.rest.models.ProductStats;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.repositories.ProductStatsQueries.PriceAggregate;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAccumulator;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// This class keeps the product statistics (count, price range, average and histogram) in memory, so that
+// GET /api/products/stats is answered without reading the table
+// ProductService reports every committed create, update and delete, for the API and the web pages alike, and the
+// summary is adjusted by that delta in striped accumulators (LongAdder/DoubleAdder), which concurrent writers update
+// without contending on a lock
+// Every write reads the old price inside its transaction (single-product writes take it from the cache or a locked
+// read of the row), so the deltas are exact; a caller that cannot tell the old price reports null, which is counted
+// as a pending correction, and writes that bypass the service are not reported at all: both are fixed by the
+// reconciliation, which compares the summary with a SQL aggregate and adds the difference, once every reconcile-interval
+// Removing the lowest or highest price cannot be undone by an accumulator either: the next read then looks the
+// price range up in the price index
+@Service
+@Profile("!reactive") // Fed by ProductService, which belongs to the servlet/JPA stack
+public class ProductStatsService {
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    // Upper bounds of the histogram buckets, in ascending order; the last bucket has no upper bound
+    @Value("${product.stats.histogram-bounds:10,25,50,100,250,500,1000}")
+    private double[] bounds;
+
+    // Reconcile this often: fixes the pending corrections, and writes that bypass the service
+    @Value("${product.stats.reconcile-interval:5m}")
+    private Duration reconcileInterval;
+
+    private final LongAdder count = new LongAdder();
+    private final DoubleAdder priceSum = new DoubleAdder();
+    private final DoubleAccumulator minPrice = new DoubleAccumulator(Math::min, Double.POSITIVE_INFINITY);
+    private final DoubleAccumulator maxPrice = new DoubleAccumulator(Math::max, Double.NEGATIVE_INFINITY);
+    private LongAdder[] buckets;
+
+    // Writes whose old price was unknown since the last reconciliation
+    private final AtomicLong pendingCorrections = new AtomicLong();
+    // Set when the lowest or highest price may have been removed
+    private volatile boolean rangeStale;
+    // Null until the first reconciliation has filled the summary
+    private volatile Instant reconciledAt;
+
+    @PostConstruct
+    void createBuckets() {
+        bounds = Arrays.stream(bounds).sorted().toArray();
+        buckets = new LongAdder[bounds.length + 1];
+        Arrays.setAll(buckets, i -> new LongAdder());
+    }
+
+    // 1. The statistics, from the summary
+    public ProductStats getStats() {
+        if (reconciledAt == null) {
+            reconcile();
+        }
+        if (rangeStale) {
+            refreshRange();
+        }
+        long total = count.sum();
+        List<ProductStats.Bucket> histogram = new ArrayList<>(buckets.length);
+        for (int i = 0; i < buckets.length; i++) {
+            histogram.add(new ProductStats.Bucket(i == 0 ? null : bounds[i - 1], i == bounds.length ? null : bounds[i],
+                    Math.max(0, buckets[i].sum())));
+        }
+        return new ProductStats(Math.max(0, total),
+                total > 0 && Double.isFinite(minPrice.get()) ? minPrice.get() : null,
+                total > 0 && Double.isFinite(maxPrice.get()) ? maxPrice.get() : null,
+                total > 0 ? priceSum.sum() / total : null,
+                histogram, reconciledAt, pendingCorrections.get());
+    }
+
+    // 2. Deltas of committed writes, reported by ProductService
+
+    public void added(double price) {
+        count.increment();
+        priceSum.add(price);
+        buckets[bucket(price)].increment();
+        minPrice.accumulate(price);
+        maxPrice.accumulate(price);
+    }
+
+    // oldPrice: null when it is not known
+    public void removed(Double oldPrice) {
+        count.decrement();
+        if (oldPrice == null) {
+            pendingCorrections.incrementAndGet();
+            rangeStale = true;
+            return;
+        }
+        priceSum.add(-oldPrice);
+        buckets[bucket(oldPrice)].decrement();
+        if (oldPrice <= minPrice.get() || oldPrice >= maxPrice.get()) {
+            rangeStale = true;
+        }
+    }
+
+    // oldPrice: null when it is not known
+    public void changed(Double oldPrice, double newPrice) {
+        if (oldPrice == null || oldPrice <= minPrice.get() || oldPrice >= maxPrice.get()) {
+            rangeStale = true;
+        }
+        minPrice.accumulate(newPrice);
+        maxPrice.accumulate(newPrice);
+        if (oldPrice == null) {
+            // Without the old price neither the sum nor the buckets can be moved; the reconciliation does that
+            pendingCorrections.incrementAndGet();
+            return;
+        }
+        priceSum.add(newPrice - oldPrice);
+        buckets[bucket(oldPrice)].decrement();
+        buckets[bucket(newPrice)].increment();
+    }
+
+    // 3. Reconcile once reconcile-interval has passed since the last reconciliation (checked every 10 seconds)
+    // Pending corrections do not bring it forward, since the service's own writes report exact deltas; until the next
+    // reconciliation the statistics report how many there are
+    @Scheduled(fixedDelayString = "${product.stats.check-interval-ms:10000}")
+    public void reconcileIfNeeded() {
+        Instant last = reconciledAt;
+        if (last == null || last.plus(reconcileInterval).isBefore(Instant.now())) {
+            reconcile();
+        }
+    }
+
+    // Compares the summary with one aggregate query over the table and adds the difference to every accumulator
+    // Deltas that writers report while the query runs are kept, so the summary is not reset under them; a write
+    // that commits just before the query and reports just after is counted twice until the next reconciliation
+    // Runs on the primary: a lagging replica would undo deltas that have already been applied
+    public synchronized void reconcile() {
+        long pending = pendingCorrections.get();
+        long countBefore = count.sum();
+        double sumBefore = priceSum.sum();
+        long[] bucketsBefore = Arrays.stream(buckets).mapToLong(LongAdder::sum).toArray();
+        rangeStale = false;
+
+        PriceAggregate aggregate = ReadRouting.onPrimary(() -> productRepo.aggregatePrices(bounds));
+
+        count.add(aggregate.count() - countBefore);
+        priceSum.add(aggregate.sum() - sumBefore);
+        long below = 0;
+        for (int i = 0; i < buckets.length; i++) {
+            long actual = (i < bounds.length ? aggregate.below()[i] : aggregate.count()) - below;
+            below += actual;
+            buckets[i].add(actual - bucketsBefore[i]);
+        }
+        setRange(aggregate);
+        pendingCorrections.addAndGet(-pending);
+        reconciledAt = Instant.now();
+    }
+
+    // Looks up the price range after the lowest or highest price may have gone (two index lookups)
+    private synchronized void refreshRange() {
+        if (rangeStale) {
+            rangeStale = false;
+            setRange(ReadRouting.onPrimary(() -> productRepo.findPriceRange()));
+        }
+    }
+
+    private void setRange(PriceAggregate aggregate) {
+        minPrice.reset();
+        maxPrice.reset();
+        if (aggregate.min() != null) {
+            minPrice.accumulate(aggregate.min());
+            maxPrice.accumulate(aggregate.max());
+        }
+    }
+
+    // Index of the bucket of a price: the first bound above it, or the last bucket
+    private int bucket(double price) {
+        int index = Arrays.binarySearch(bounds, price);
+        // An exact bound starts the next bucket; otherwise binarySearch returns -(insertion point) - 1
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+}
@@ -0,0 +1,72 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.repositories.ProductRepo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+// This class answers the typeahead suggestions (GET /api/products/suggest) from an in-memory ProductNameIndex,
+// instead of a LIKE '%text%' query that has to read every product name
+// The index is loaded from the table once at startup, before the application takes requests, and ProductService
+// reports every committed create, update and delete to it, for the API and the web pages alike
+// Each instance has its own index: writes made through another instance, or directly in the database, only show
+// up here after a restart
+@Service
+@Profile("!reactive") // Fed by ProductService, which belongs to the servlet/JPA stack
+public class ProductSuggestService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSuggestService.class);
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired // The startup load streams the table, which needs a transaction
+    private TransactionTemplate transactionTemplate;
+
+    // Turned off where there is no database to load from (the cds-training profile)
+    @Value("${product.suggest.load-on-startup:true}")
+    private boolean loadOnStartup;
+
+    private final ProductNameIndex index = new ProductNameIndex();
+
+    // 1. Load every product name, streamed through a cursor so the table is never held in memory as entities
+    // Runs once all singletons exist, before the web server starts
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!loadOnStartup) {
+            return;
+        }
+        long start = System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<ProductView> products = productRepo.streamAllViews()) {
+                products.forEach(this::indexed);
+            }
+        });
+        log.info("Indexed {} product names for suggestions in {} ms", index.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // 2. Up to limit products whose name contains the query, names starting with it first
+    public List<ProductView> suggest(String query, int limit) {
+        return index.suggest(query, limit);
+    }
+
+    // 3. Committed writes, reported by ProductService
+
+    public void indexed(ProductView product) {
+        index.put(product.id(), product.name(), product.price());
+    }
+
+    public void removed(Long id) {
+        index.remove(id);
+    }
+}
@@ -0,0 +1,215 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.exceptions.BadRequestException;
+import dev.rono.rest.exceptions.PreconditionFailedException;
+import dev.rono.rest.exceptions.ResourceNotFoundException;
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductSearch;
+import dev.rono.rest.repositories.ReactiveProductRepo;
+
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.data.relational.core.query.Criteria;
+import org.springframework.data.relational.core.query.Query;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+
+// This class is the non-blocking counterpart of ProductService, used by ReactiveProductController
+// It only exists in the "reactive" profile and implements the same rules with R2DBC:
+// keyset pages, database-side search and sorting, and single-statement conditional updates and deletes
+// Unlike ProductService it does not use the products cache, every read goes to the database
+@Service
+@Profile("reactive")
+public class ReactiveProductService {
+
+    // IDs reserved per round trip to the product_seq sequence, must match allocationSize on Product.id
+    static final int ID_ALLOCATION_SIZE = 50;
+
+    @Autowired
+    private ReactiveProductRepo productRepo;
+
+    @Autowired // Used for inserts with a pre-assigned ID and for the search queries
+    private R2dbcEntityTemplate entityTemplate;
+
+    @Autowired // Used to reserve blocks of product IDs from product_seq
+    private DatabaseClient databaseClient;
+
+    @Autowired // Keeps the two statements of the MySQL ID reservation on one connection
+    private TransactionalOperator transactionalOperator;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    // Current block of reserved IDs: nextId up to and including lastId are still free
+    private long nextId = 1;
+    private long lastId = 0;
+
+    // 1. Get one product by ID
+    public Mono<Product> findById(Long id) {
+        return productRepo.findById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Product not found with ID: " + id)));
+    }
+
+    // 1b. Get only the version of a product, for conditional requests
+    public Mono<Long> findVersion(Long id) {
+        return productRepo.findVersionById(id)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Product not found with ID: " + id)));
+    }
+
+    // 1c. Get one keyset page of products matching the search, starting after the product with the given ID
+    // Same contract as ProductService.findPage, built with Spring Data relational criteria instead of Specifications
+    public Flux<Product> findPage(ProductSearch search, Long after, int limit) {
+        if (search.isUnfiltered()) {
+            // Product IDs are always positive, so starting after 0 returns the first page
+            return productRepo.findPageAfter(after == null ? 0L : after, limit);
+        }
+        if (!ProductSearch.SORT_FIELDS.contains(search.sort())) {
+            return Flux.error(new BadRequestException("Sort must be one of " + ProductSearch.SORT_FIELDS));
+        }
+        Sort.Direction direction;
+        try {
+            direction = search.sortDirection();
+        } catch (IllegalArgumentException ex) {
+            return Flux.error(new BadRequestException("Direction must be asc or desc"));
+        }
+
+        Criteria criteria = Criteria.empty();
+        if (search.name() != null && !search.name().isBlank()) {
+            criteria = criteria.and("name").like(escapeLike(search.name()) + "%");
+        }
+        if (search.nameContains() != null && !search.nameContains().isBlank()) {
+            criteria = criteria.and("name").like("%" + escapeLike(search.nameContains()) + "%");
+        }
+        if (search.minPrice() != null) {
+            criteria = criteria.and("price").greaterThanOrEquals(search.minPrice());
+        }
+        if (search.maxPrice() != null) {
+            criteria = criteria.and("price").lessThanOrEquals(search.maxPrice());
+        }
+        Sort sort = Sort.by(direction, search.sort()).and(Sort.by(direction, "id"));
+        Mono<Criteria> pageCriteria = after == null
+                ? Mono.just(criteria)
+                : afterCursor(search.sort(), direction, after).map(criteria::and);
+        return pageCriteria.flatMapMany(where ->
+                entityTemplate.select(Product.class).matching(Query.query(where).sort(sort).limit(limit)).all());
+    }
+
+    // Keyset criteria continuing after the cursor product; other sort orders need the cursor's sort value
+    // For an ascending sort on price this is "price > :price or (price = :price and id > :id)"
+    private Mono<Criteria> afterCursor(String field, Sort.Direction direction, Long after) {
+        boolean asc = direction.isAscending();
+        if (field.equals("id")) {
+            return Mono.just(asc ? Criteria.where("id").greaterThan(after) : Criteria.where("id").lessThan(after));
+        }
+        return productRepo.findById(after)
+                .switchIfEmpty(Mono.error(() -> new BadRequestException("Cursor product no longer exists: " + after)))
+                .map(cursor -> {
+                    Object value = field.equals("name") ? cursor.getName() : cursor.getPrice();
+                    Criteria beyond = asc ? Criteria.where(field).greaterThan(value) : Criteria.where(field).lessThan(value);
+                    Criteria tie = Criteria.where(field).is(value)
+                            .and(asc ? Criteria.where("id").greaterThan(after) : Criteria.where("id").lessThan(after));
+                    return beyond.or(tie);
+                });
+    }
+
+    // 1d. Emit every product in ID order, at the pace the subscriber requests them
+    public Flux<Product> streamAll() {
+        return productRepo.streamAllOrderById();
+    }
+
+    // 2. Create a product with an ID from the shared product_seq sequence
+    public Mono<Product> create(Product product) {
+        return nextId().flatMap(id -> {
+            product.setId(id);
+            product.setVersion(0L); // New products start at version 0, like Hibernate's @Version
+            product.setLastModified(Instant.now());
+            return entityTemplate.insert(product);
+        });
+    }
+
+    // 3. Update an existing product with a single UPDATE statement
+    // expectedVersion, the zero row count and the returned product work the same way as in ProductService.update
+    public Mono<Product> update(Long id, Product productDetails, Long expectedVersion) {
+        Instant now = Instant.now();
+        Mono<Integer> updated = expectedVersion == null
+                ? productRepo.updateNameAndPrice(id, productDetails.getName(), productDetails.getPrice(), now)
+                : productRepo.updateNameAndPriceIfVersion(id, productDetails.getName(), productDetails.getPrice(), now, expectedVersion);
+        return updated.flatMap(count -> {
+            if (count == 0) {
+                return notFoundOrModified(id, expectedVersion);
+            }
+            Product updatedProduct = new Product(productDetails.getName(), productDetails.getPrice());
+            updatedProduct.setId(id);
+            updatedProduct.setVersion(expectedVersion == null ? null : expectedVersion + 1);
+            updatedProduct.setLastModified(now);
+            return Mono.just(updatedProduct);
+        });
+    }
+
+    // 4. Delete a product with a single DELETE statement
+    public Mono<Void> delete(Long id, Long expectedVersion) {
+        Mono<Integer> deleted = expectedVersion == null
+                ? productRepo.deleteProductById(id)
+                : productRepo.deleteProductByIdIfVersion(id, expectedVersion);
+        return deleted.flatMap(count -> count == 0 ? notFoundOrModified(id, expectedVersion) : Mono.empty());
+    }
+
+    // Error for a conditional write that matched no row: 412 when the product exists with another version, else 404
+    private <T> Mono<T> notFoundOrModified(Long id, Long expectedVersion) {
+        if (expectedVersion == null) {
+            return Mono.error(new ResourceNotFoundException("Product not found with ID: " + id));
+        }
+        return productRepo.existsById(id).flatMap(exists -> Mono.error(exists
+                ? new PreconditionFailedException("Product with ID: " + id + " has been modified")
+                : new ResourceNotFoundException("Product not found with ID: " + id)));
+    }
+
+    // Hands out the next product ID, reserving a new block of ID_ALLOCATION_SIZE IDs when the current one is used up
+    // The blocks are the ones Hibernate's pooled optimizer would use for the same sequence value,
+    // so IDs never collide with products created through the servlet/JPA stack
+    private Mono<Long> nextId() {
+        synchronized (this) {
+            if (nextId <= lastId) {
+                return Mono.just(nextId++);
+            }
+        }
+        return reserveIdBlock().map(highId -> {
+            synchronized (this) {
+                if (nextId > lastId) { // Another request may have reserved a block in the meantime
+                    nextId = Math.max(1, highId - ID_ALLOCATION_SIZE + 1);
+                    lastId = highId;
+                }
+                return nextId++;
+            }
+        });
+    }
+
+    // Reserves a block of IDs and returns its highest ID
+    // H2 has a real sequence; on MySQL Hibernate emulates it with a one-row product_seq table
+    private Mono<Long> reserveIdBlock() {
+        if (connectionFactory.getMetadata().getName().contains("H2")) {
+            return databaseClient.sql("select next value for product_seq")
+                    .map(row -> row.get(0, Long.class))
+                    .one();
+        }
+        // LAST_INSERT_ID(expr) remembers the new value for this connection, so it can be read back without a lock
+        return databaseClient.sql("update product_seq set next_val = last_insert_id(next_val + " + ID_ALLOCATION_SIZE + ")")
+                .fetch().rowsUpdated()
+                .then(databaseClient.sql("select last_insert_id()").map(row -> row.get(0, Long.class)).one())
+                .map(nextValue -> nextValue - ID_ALLOCATION_SIZE)
+                .as(transactionalOperator::transactional);
+    }
+
+    // Escapes the LIKE wildcards in user input so they are matched literally (backslash is the default escape)
+    private static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,288 @@
+package dev.rono.rest.services;
+
+import dev.rono.rest.exceptions.ResourceNotFoundException;
+import dev.rono.rest.models.RepriceJob;
+import dev.rono.rest.models.RepriceJobView;
+import dev.rono.rest.models.RepriceRequest;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.repositories.RepriceJobRepo;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.util.CustomizableThreadCreator;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// This class runs the bulk repricing jobs of POST /api/products/jobs/reprice in the background
+// A job covers the product ID range as it is when the job starts, split into chunks of chunk-size IDs; each chunk is
+// one set-based UPDATE in its own transaction (ProductService.repriceRange), so a chunk holds its row locks briefly
+// and a failure only rolls back that chunk
+// - Chunks run in parallel on a fixed pool of workers threads, shared by all jobs, so the load a job puts on the
+//   database is bounded no matter how large the table is (each worker uses at most one pooled connection)
+// - Every chunk inserts its checkpoint row in its own transaction; a job left RUNNING by a crash or a shutdown is
+//   resumed and skips the chunks that have a checkpoint, so no chunk is applied twice
+// - The instance running a job holds a lease on it (owner and heartbeat_at), renewed every heartbeat-interval; a job
+//   is only resumed once its lease is older than lease-timeout (its instance died) or was released by a shutdown,
+//   so a job running on a live instance is never run twice; instances look for such jobs at startup and on every
+//   heartbeat
+// - A chunk that hits a transient error (a deadlock, a lock timeout) is retried up to CHUNK_ATTEMPTS times; any other
+//   error fails the job, and the chunks still queued are skipped
+// Progress and rows per second are computed from the checkpoints, so any instance can report any job
+@Service
+@Profile("!reactive") // Writes through ProductService, which belongs to the servlet/JPA stack
+public class RepriceJobService implements SmartInitializingSingleton {
+
+    private static final Logger log = LoggerFactory.getLogger(RepriceJobService.class);
+
+    // Attempts of a chunk that runs into a deadlock or lock timeout
+    static final int CHUNK_ATTEMPTS = 3;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired // Finds the ID range of a new job
+    private ProductRepo productRepo;
+
+    @Autowired
+    private RepriceJobRepo repriceJobRepo;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // Threads updating chunks at once, over all jobs
+    @Value("${product.reprice.workers:4}")
+    private int workers;
+
+    // Product IDs per chunk; IDs come from a sequence, so a chunk holds about this many products
+    @Value("${product.reprice.chunk-size:1000}")
+    private int chunkSize;
+
+    // Resume the jobs left RUNNING by a shutdown or crash, at startup and on every heartbeat once their lease expired
+    @Value("${product.reprice.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    // A job whose lease has not been renewed for this long is taken to be orphaned, and is resumed by another instance
+    // (a few heartbeat intervals, so a slow renewal is not mistaken for a dead instance)
+    @Value("${product.reprice.lease-timeout:60s}")
+    private Duration leaseTimeout;
+
+    // IDs of the jobs running in this instance
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    // Owner of the leases this instance takes: process and host, made unique across restarts
+    private final String instanceId = ManagementFactory.getRuntimeMXBean().getName() + "/"
+            + UUID.randomUUID().toString().substring(0, 8);
+
+    private ExecutorService workerPool;
+    private Counter rowsUpdated;
+    private Timer chunkTimer;
+
+    @PostConstruct
+    void start() {
+        CustomizableThreadCreator threads = new CustomizableThreadCreator("reprice-");
+        threads.setDaemon(true);
+        workerPool = Executors.newFixedThreadPool(workers, threads::createThread);
+        rowsUpdated = meterRegistry.counter("product.reprice.rows");
+        chunkTimer = Timer.builder("product.reprice.chunks")
+                .description("Time to reprice one chunk of a repricing job")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        meterRegistry.gauge("product.reprice.jobs.running", running, Set::size);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (resumeOnStartup) {
+            resumeJobs();
+        }
+    }
+
+    // Chunks still queued are dropped, so their jobs stay RUNNING; their leases are released, so another instance (or
+    // this one at its next start) resumes them without waiting for the lease to expire
+    @PreDestroy
+    void stop() throws InterruptedException {
+        workerPool.shutdownNow();
+        workerPool.awaitTermination(10, TimeUnit.SECONDS);
+        try {
+            repriceJobRepo.release(instanceId);
+        } catch (RuntimeException ex) {
+            log.warn("Could not release the leases of the running repricing jobs, they resume once they expire", ex);
+        }
+    }
+
+    // 1. Start a repricing job over the products that exist now; returns right away with the job at 0%
+    public RepriceJobView start(RepriceRequest request) {
+        Long firstId = productRepo.findMinId();
+        Long lastId = productRepo.findMaxId();
+        Instant now = Instant.now();
+        RepriceJob job = new RepriceJob();
+        job.setStatus(RepriceJob.Status.RUNNING);
+        job.setPercent(request.percent());
+        job.setName(request.name());
+        job.setNameContains(request.nameContains());
+        job.setMinPrice(request.minPrice());
+        job.setMaxPrice(request.maxPrice());
+        job.setFirstId(firstId == null ? 0 : firstId);
+        job.setLastId(lastId == null ? 0 : lastId);
+        job.setChunkSize(chunkSize);
+        job.setTotalChunks(firstId == null ? 0 : (int) ((lastId - firstId) / chunkSize + 1));
+        job.setCreatedAt(now);
+        job.setStartedAt(now);
+        job.setOwner(instanceId);
+        job.setHeartbeatAt(now);
+        RepriceJob saved = repriceJobRepo.save(job);
+        log.info("Repricing job {} started: {}% over product IDs {}-{} in {} chunks", saved.getId(),
+                saved.getPercent(), saved.getFirstId(), saved.getLastId(), saved.getTotalChunks());
+        run(saved, Set.of());
+        return RepriceJobView.of(saved, 0, 0, 0);
+    }
+
+    // 2. Status and progress of a job
+    public RepriceJobView find(Long id) {
+        RepriceJob job = repriceJobRepo.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("Repricing job not found with ID: " + id));
+        RepriceJobRepo.ChunkTotals totals = repriceJobRepo.sumChunks(id, job.getStartedAt());
+        return RepriceJobView.of(job, totals.getChunks(), totals.getRowsUpdated(), totals.getRowsUpdatedSince());
+    }
+
+    // 3. Resume the jobs left RUNNING (by a crash, or a shutdown with chunks still queued) from their checkpoints
+    // Runs at startup and on every heartbeat; a job is only taken over when its lease has expired or was released,
+    // so a job that is running in this instance or in another live one is left alone
+    public void resumeJobs() {
+        for (RepriceJob job : repriceJobRepo.findByStatus(RepriceJob.Status.RUNNING)) {
+            if (running.contains(job.getId())) {
+                continue;
+            }
+            Instant now = Instant.now();
+            if (repriceJobRepo.claim(job.getId(), instanceId, now, now.minus(leaseTimeout)) == 0) {
+                continue; // Still leased by a live instance (or finished meanwhile)
+            }
+            Set<Integer> completed = new HashSet<>(repriceJobRepo.findCompletedChunks(job.getId()));
+            job.setStartedAt(now);
+            log.info("Repricing job {} resumed: {} of {} chunks already done", job.getId(), completed.size(),
+                    job.getTotalChunks());
+            run(job, completed);
+        }
+    }
+
+    // 4. Renew the leases of the jobs running here, then resume the jobs whose lease has expired
+    @Scheduled(fixedDelayString = "${product.reprice.heartbeat-interval-ms:10000}")
+    public void heartbeat() {
+        if (!running.isEmpty()) {
+            repriceJobRepo.renew(Set.copyOf(running), instanceId, Instant.now());
+        }
+        if (resumeOnStartup) {
+            resumeJobs();
+        }
+    }
+
+    // Queues the chunks of a job that are not done yet, and marks the job finished once they all have run
+    private void run(RepriceJob job, Set<Integer> completed) {
+        if (!running.add(job.getId())) {
+            return;
+        }
+        JobRun jobRun = new JobRun(job);
+        List<CompletableFuture<Void>> chunks = new ArrayList<>();
+        for (int chunk = 0; chunk < job.getTotalChunks(); chunk++) {
+            if (!completed.contains(chunk)) {
+                int number = chunk;
+                chunks.add(CompletableFuture.runAsync(() -> runChunk(jobRun, number), workerPool));
+            }
+        }
+        CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).whenComplete((result, ex) -> finish(jobRun));
+    }
+
+    private void runChunk(JobRun jobRun, int chunk) {
+        if (jobRun.failure != null) {
+            return; // The job has failed, the rest of its chunks are not applied
+        }
+        RepriceJob job = jobRun.job;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                int updated = chunkTimer.record(() -> productService.repriceRange(job.filter(), job.chunkStart(chunk),
+                        job.chunkEnd(chunk), jobRun.factor,
+                        rows -> repriceJobRepo.insertChunk(job.getId(), chunk, rows, Instant.now()))).size();
+                rowsUpdated.increment(updated);
+                return;
+            } catch (DataIntegrityViolationException ex) {
+                return; // The checkpoint exists: the chunk was applied by another run of the same job
+            } catch (TransientDataAccessException ex) {
+                if (attempt == CHUNK_ATTEMPTS) {
+                    jobRun.failed(chunk, ex);
+                    return;
+                }
+            } catch (RuntimeException ex) {
+                jobRun.failed(chunk, ex);
+                return;
+            }
+        }
+    }
+
+    private void finish(JobRun jobRun) {
+        RepriceJob job = jobRun.job;
+        try {
+            if (jobRun.failure != null && workerPool.isShutdown()) {
+                // Interrupted by the shutdown rather than failed: left RUNNING, to resume at the next start
+                log.info("Repricing job {} stopped by the shutdown, it resumes at the next start", job.getId());
+            } else if (jobRun.failure == null) {
+                repriceJobRepo.finish(job.getId(), RepriceJob.Status.COMPLETED, null, Instant.now());
+                log.info("Repricing job {} completed", job.getId());
+            } else {
+                String error = jobRun.failure.length() > 1000 ? jobRun.failure.substring(0, 1000) : jobRun.failure;
+                repriceJobRepo.finish(job.getId(), RepriceJob.Status.FAILED, error, Instant.now());
+            }
+        } catch (RuntimeException ex) {
+            // Left RUNNING: the next start resumes it, finds every chunk done and marks it finished
+            log.warn("Could not record the end of repricing job {}", job.getId(), ex);
+        } finally {
+            running.remove(job.getId());
+        }
+    }
+
+    // A job running in this instance: its multiplier, and the first error of its chunks
+    private static final class JobRun {
+
+        private final RepriceJob job;
+        private final double factor;
+        private volatile String failure;
+
+        private JobRun(RepriceJob job) {
+            this.job = job;
+            this.factor = 1 + job.getPercent() / 100;
+        }
+
+        private synchronized void failed(int chunk, RuntimeException ex) {
+            log.warn("Repricing job {} failed on chunk {} (product IDs {}-{})", job.getId(), chunk,
+                    job.chunkStart(chunk), job.chunkEnd(chunk), ex);
+            if (failure == null) {
+                failure = "Chunk " + chunk + " (product IDs " + job.chunkStart(chunk) + "-" + job.chunkEnd(chunk)
+                        + ") failed: " + ex.getMessage();
+            }
+        }
+    }
+}
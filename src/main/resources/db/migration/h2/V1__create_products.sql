@@ -0,0 +1,15 @@
+-- Products table with its indexes for searching and sorting (the trailing id keeps keyset pages index-ordered)
+create table products (
+    id bigint not null,
+    name varchar(255),
+    price float(53) not null,
+    version bigint,
+    last_modified timestamp(6) with time zone,
+    primary key (id)
+);
+
+create index idx_products_name on products (name, id);
+create index idx_products_price on products (price, id);
+
+-- Pooled sequence of the JPA mapping (allocationSize 50)
+create sequence product_seq start with 1 increment by 50;
@@ -0,0 +1,30 @@
+-- A database that Hibernate created before the migrations existed (ddl-auto=update, the original Product mapping) is
+-- baselined at version 1: it has a products table, but without the columns, indexes and sequence V1 creates
+-- The statements up to the outbox bring such a table up to V1, and change nothing in a table V1 created:
+-- existing rows get version 0, and product_seq is started so the first block it hands out follows the highest ID
+-- (the pooled optimizer takes the value it reads as the end of a block of 50)
+alter table products add column if not exists version bigint;
+alter table products add column if not exists last_modified timestamp(6) with time zone;
+update products set version = 0 where version is null;
+
+create index if not exists idx_products_name on products (name, id);
+create index if not exists idx_products_price on products (price, id);
+
+create sequence if not exists product_seq start with 1 increment by 50;
+alter sequence product_seq restart with (select coalesce(max(id), 0) + 50 from products);
+
+-- Product change outbox, written in the same transaction as the product and numbered by ProductChangeRelay
+create table product_changes (
+    id bigint not null,
+    seq bigint,
+    type varchar(16) not null check (type in ('CREATED', 'UPDATED', 'DELETED')),
+    product_id bigint not null,
+    name varchar(255),
+    price float(53),
+    version bigint,
+    changed_at timestamp(6) with time zone not null,
+    primary key (id),
+    constraint idx_product_changes_seq unique (seq)
+);
+
+create sequence product_change_seq start with 1 increment by 50;
@@ -0,0 +1,14 @@
+-- Idempotency keys of the write endpoints (JdbcIdempotencyStore): the request fingerprint, and the stored response
+-- once the request has completed (status is null while it is in flight); the key is a hash of client and key
+create table idempotency_keys (
+    idempotency_key char(64) not null,
+    fingerprint char(64) not null,
+    status integer,
+    headers varchar(2000),
+    body blob,
+    created_at timestamp(6) not null,
+    expires_at timestamp(6) not null,
+    primary key (idempotency_key)
+);
+
+create index idx_idempotency_keys_expires_at on idempotency_keys (expires_at);
@@ -0,0 +1,3 @@
+-- Product change IDs are now taken one at a time (allocationSize = 1), so they follow insert order across instances
+-- The next value comes after every ID already handed out in the old blocks of 50
+alter sequence product_change_seq increment by 1;
@@ -0,0 +1,5 @@
+-- Product change IDs are assigned by the insert itself (an identity column), under the locks of the write that
+-- inserts the row, instead of being fetched from product_change_seq first; the relay numbers rows in ID order
+-- The identity continues after the highest existing ID
+alter table product_changes alter column id bigint generated by default as identity;
+drop sequence product_change_seq;
@@ -0,0 +1,16 @@
+-- Products table with its indexes for searching and sorting (the trailing id keeps keyset pages index-ordered)
+-- MySQL has no sequences: Hibernate emulates the pooled product_seq with a one-row table
+create table products (
+    id bigint not null,
+    name varchar(255),
+    price float(53) not null,
+    version bigint,
+    last_modified datetime(6),
+    primary key (id)
+) engine=InnoDB;
+
+create index idx_products_name on products (name, id);
+create index idx_products_price on products (price, id);
+
+create table product_seq (next_val bigint) engine=InnoDB;
+insert into product_seq values (1);
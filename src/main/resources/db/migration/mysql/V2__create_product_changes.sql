@@ -0,0 +1,50 @@
+-- A database that Hibernate created before the migrations existed (ddl-auto=update, the original Product mapping) is
+-- baselined at version 1: it has a products table, but without the columns, indexes and sequence table V1 creates
+-- The statements up to the outbox bring such a table up to V1, and change nothing in a table V1 created:
+-- existing rows get version 0, and product_seq is moved past the highest ID, so the first block it hands out
+-- follows it (the pooled optimizer takes the value it reads as the end of a block of 50)
+-- MySQL has no "add column/index if not exists", so each one is only run when information_schema does not list it
+set @ddl = (select if(count(*) = 0, 'alter table products add column version bigint', 'do 0') from information_schema.columns
+            where table_schema = database() and table_name = 'products' and column_name = 'version');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+set @ddl = (select if(count(*) = 0, 'alter table products add column last_modified datetime(6)', 'do 0') from information_schema.columns
+            where table_schema = database() and table_name = 'products' and column_name = 'last_modified');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+update products set version = 0 where version is null;
+
+set @ddl = (select if(count(*) = 0, 'create index idx_products_name on products (name, id)', 'do 0') from information_schema.statistics
+            where table_schema = database() and table_name = 'products' and index_name = 'idx_products_name');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+set @ddl = (select if(count(*) = 0, 'create index idx_products_price on products (price, id)', 'do 0') from information_schema.statistics
+            where table_schema = database() and table_name = 'products' and index_name = 'idx_products_price');
+prepare stmt from @ddl;
+execute stmt;
+deallocate prepare stmt;
+
+create table if not exists product_seq (next_val bigint) engine=InnoDB;
+insert into product_seq (next_val) select 1 from dual where not exists (select * from product_seq);
+update product_seq set next_val = greatest(next_val, (select coalesce(max(id), 0) + 50 from products));
+
+-- Product change outbox, written in the same transaction as the product and numbered by ProductChangeRelay
+create table product_changes (
+    id bigint not null,
+    seq bigint,
+    type enum ('CREATED', 'UPDATED', 'DELETED') not null,
+    product_id bigint not null,
+    name varchar(255),
+    price float(53),
+    version bigint,
+    changed_at datetime(6) not null,
+    primary key (id)
+) engine=InnoDB;
+
+alter table product_changes add constraint idx_product_changes_seq unique (seq);
+
+create table product_change_seq (next_val bigint) engine=InnoDB;
+insert into product_change_seq values (1);
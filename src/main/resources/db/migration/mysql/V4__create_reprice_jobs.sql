@@ -0,0 +1,33 @@
+-- Bulk repricing jobs (RepriceJobService): the job definition, its status and the product ID range it covers, which
+-- is split into chunks of chunk_size IDs
+create table reprice_jobs (
+    id bigint not null,
+    status enum ('RUNNING', 'COMPLETED', 'FAILED') not null,
+    percent float(53) not null,
+    name varchar(255),
+    name_contains varchar(255),
+    min_price float(53),
+    max_price float(53),
+    first_id bigint not null,
+    last_id bigint not null,
+    chunk_size integer not null,
+    total_chunks integer not null,
+    error varchar(1000),
+    created_at datetime(6) not null,
+    started_at datetime(6) not null,
+    finished_at datetime(6),
+    primary key (id)
+) engine=InnoDB;
+
+create table reprice_job_seq (next_val bigint) engine=InnoDB;
+insert into reprice_job_seq values (1);
+
+-- Checkpoints: one row per chunk, inserted in the transaction that updated the chunk's products, so a chunk is
+-- applied once even when its job is resumed after a crash
+create table reprice_job_chunks (
+    job_id bigint not null,
+    chunk integer not null,
+    rows_updated integer not null,
+    completed_at datetime(6) not null,
+    primary key (job_id, chunk)
+) engine=InnoDB;
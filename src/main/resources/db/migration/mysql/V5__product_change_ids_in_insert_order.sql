@@ -0,0 +1,3 @@
+-- Product change IDs are now taken one at a time (allocationSize = 1), so they follow insert order across instances
+-- The table-based sequence holds the next value after the last block of 50 handed out, and Hibernate now adds 1
+-- to it instead of 50, so it needs no change; this migration only keeps the versions of both vendors aligned
@@ -0,0 +1,3 @@
+-- Lease of a running repricing job: the instance running it and the last time that instance renewed it
+-- Another instance only resumes the job once the lease has expired (see RepriceJobService)
+alter table reprice_jobs add column owner varchar(255), add column heartbeat_at datetime(6);
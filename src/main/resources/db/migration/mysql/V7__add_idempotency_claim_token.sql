@@ -0,0 +1,3 @@
+-- Random token of the request that claimed a key (JdbcIdempotencyStore): only that request can complete or release
+-- the key, so a request that outlived its lock timeout cannot touch the claim of the request that took it over
+alter table idempotency_keys add column claim_token varchar(64);
@@ -0,0 +1,6 @@
+-- Product change IDs are assigned by the insert itself (AUTO_INCREMENT), under the locks of the write that inserts
+-- the row, instead of being fetched from the product_change_seq table in a transaction of their own on one hot row;
+-- the relay numbers rows in ID order
+-- AUTO_INCREMENT continues after the highest existing ID
+alter table product_changes modify id bigint not null auto_increment;
+drop table product_change_seq;
@@ -0,0 +1,12 @@
+-- Schema of the products table for the reactive-h2 profile (the servlet stack creates it with the Flyway migrations in db/migration)
+create table if not exists products (
+    id bigint not null primary key,
+    name varchar(255),
+    price double precision,
+    version bigint,
+    last_modified timestamp(6)
+);
+create index if not exists idx_products_name on products (name, id);
+create index if not exists idx_products_price on products (price, id);
+-- Same pooled sequence as the JPA mapping (allocationSize 50)
+create sequence if not exists product_seq start with 1 increment by 50;
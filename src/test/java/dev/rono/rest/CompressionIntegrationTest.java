@@ -0,0 +1,160 @@
+package dev.rono.rest;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.decoder.BrotliInputStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the response compression (CompressionFilter), HTTP/2 and static file caching.
+// It checks which content coding is negotiated for an Accept-Encoding header, that the compressed bodies decode to
+// the identity body, and that small responses are sent as they are.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "product.rate-limit.enabled=false",
+        "product.changes.relay-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class CompressionIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @LocalServerPort
+    private int port;
+
+    @BeforeEach
+    void setUp() {
+        // 100 products make a full page of about 5 KB of JSON, over the 2 KB minimum
+        productRepo.deleteAll();
+        productRepo.saveAll(IntStream.rangeClosed(1, 100)
+                .mapToObj(i -> new Product("Compressed product " + i, i + 0.99))
+                .toList());
+    }
+
+    @Test
+    void testNegotiatedContentEncoding() throws Exception {
+        MvcResult identity = mockMvc.perform(get("/api/products?limit=100"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.VARY, containsString(HttpHeaders.ACCEPT_ENCODING)))
+                .andReturn();
+        byte[] json = identity.getResponse().getContentAsByteArray();
+
+        byte[] gzip = mockMvc.perform(get("/api/products?limit=100").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_LENGTH))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(json, decode(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+        assertTrue(gzip.length < json.length / 3, "gzip: " + gzip.length + " of " + json.length + " bytes");
+
+        // Equal preference: Brotli wins over gzip
+        Brotli4jLoader.ensureAvailability();
+        byte[] brotli = mockMvc.perform(get("/api/products?limit=100").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "br"))
+                .andReturn().getResponse().getContentAsByteArray();
+        assertArrayEquals(json, decode(new BrotliInputStream(new ByteArrayInputStream(brotli))));
+        assertTrue(brotli.length < gzip.length, "br: " + brotli.length + ", gzip: " + gzip.length + " bytes");
+
+        // q-values are honoured, and an encoding can be refused with q=0
+        mockMvc.perform(get("/api/products?limit=100").header(HttpHeaders.ACCEPT_ENCODING, "br;q=0.5, gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+        mockMvc.perform(get("/api/products?limit=100").header(HttpHeaders.ACCEPT_ENCODING, "*;q=0, identity"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(content().bytes(json));
+    }
+
+    @Test
+    void testSmallResponsesAreNotCompressedAndStreamsAre() throws Exception {
+        Product product = productRepo.findAll().get(0);
+        MvcResult single = mockMvc.perform(get("/api/products/" + product.getId()).header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn();
+        assertEquals(single.getResponse().getContentAsByteArray().length, single.getResponse().getContentLength());
+
+        // The NDJSON stream is compressed as it is written
+        byte[] stream = mockMvc.perform(get("/api/products/stream").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        String ndjson = new String(decode(new GZIPInputStream(new ByteArrayInputStream(stream))));
+        assertEquals(100, ndjson.lines().count());
+    }
+
+    @Test
+    void testStaticFilesHaveContentHashedUrlsAndAreCachedForAYear() throws Exception {
+        String page = mockMvc.perform(get("/products"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        Matcher styles = Pattern.compile("/styles-[0-9a-f]{32}\\.css").matcher(page);
+        assertTrue(styles.find(), "The products page links the hashed stylesheet URL");
+
+        mockMvc.perform(get(styles.group()))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, "max-age=31536000, public"));
+    }
+
+    @Test
+    void testHttp2Cleartext() throws Exception {
+        // The JDK client upgrades a plain http:// connection to h2c when asked for HTTP/2
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_2).build();
+        HttpResponse<byte[]> response = client.send(HttpRequest.newBuilder()
+                        .uri(URI.create("http://localhost:" + port + "/api/products?limit=100"))
+                        .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                        .build(),
+                HttpResponse.BodyHandlers.ofByteArray());
+
+        assertEquals(200, response.statusCode());
+        assertEquals(HttpClient.Version.HTTP_2, response.version());
+        assertEquals("gzip", response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null));
+        assertTrue(new String(decode(new GZIPInputStream(new ByteArrayInputStream(response.body()))))
+                .contains("Compressed product 100"));
+
+        // HTTP/1.1 clients are still served
+        HttpResponse<String> http11 = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()
+                .send(HttpRequest.newBuilder().uri(URI.create("http://localhost:" + port + "/api/products?limit=1")).build(),
+                        HttpResponse.BodyHandlers.ofString());
+        assertEquals(HttpClient.Version.HTTP_1_1, http11.version());
+        assertNull(http11.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null));
+    }
+
+    private static byte[] decode(InputStream in) throws IOException {
+        try (in) {
+            return in.readAllBytes();
+        }
+    }
+}
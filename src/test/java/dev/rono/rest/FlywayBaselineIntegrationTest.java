@@ -0,0 +1,82 @@
+package dev.rono.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for adopting a database that Hibernate created before the Flyway migrations.
+// Before Flyway runs, a fresh H2 database gets the products table of the original mapping (IDENTITY ID, no version
+// or last-modified time) with two rows; the context only starts if the migrations bring it to a schema that
+// Hibernate validates, and the old rows must then work like any other.
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:pre-migrations;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "product.changes.relay-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class FlywayBaselineIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Flyway flyway;
+
+    @Test
+    void testDatabaseFromBeforeTheMigrationsIsMigrated() throws Exception {
+        assertEquals("1", flyway.info().applied()[0].getVersion().getVersion()); // The baseline
+        assertEquals(0, flyway.info().pending().length);
+
+        mockMvc.perform(get("/api/products/2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Old mug"))
+                .andExpect(header().string("ETag", "\"0\""));
+        mockMvc.perform(put("/api/products/2").header("If-Match", "\"0\"").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Old mug\", \"price\": 7.5}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""));
+
+        // New products get IDs after the existing ones
+        String created = mockMvc.perform(post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"New mug\", \"price\": 8.0}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        assertTrue(objectMapper.readTree(created).get("id").asLong() > 2, created);
+    }
+
+    @TestConfiguration
+    static class PreMigrationSchema {
+
+        // The schema ddl-auto=update created for the original Product entity, with rows, ahead of the migrations
+        @Bean
+        FlywayMigrationStrategy createSchemaBeforeMigrations() {
+            return flyway -> {
+                JdbcTemplate jdbc = new JdbcTemplate(flyway.getConfiguration().getDataSource());
+                jdbc.execute("create table products (id bigint generated by default as identity, name varchar(255), "
+                        + "price float(53) not null, primary key (id))");
+                jdbc.update("insert into products (name, price) values ('Old cup', 5.0), ('Old mug', 6.5)");
+                flyway.migrate();
+            };
+        }
+    }
+}
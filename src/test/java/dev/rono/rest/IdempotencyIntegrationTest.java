@@ -0,0 +1,215 @@
+package dev.rono.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.rono.rest.config.IdempotencyStore;
+import dev.rono.rest.config.JdbcIdempotencyStore;
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the Idempotency-Key support of the write endpoints (IdempotencyFilter).
+// It checks that retries and concurrent duplicates insert once and get the original response, and tests the
+// database-backed store (JdbcIdempotencyStore) on its own against the idempotency_keys table.
+@SpringBootTest(properties = {
+        "product.rate-limit.enabled=false",
+        "product.changes.relay-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class IdempotencyIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        productRepo.deleteAll();
+    }
+
+    @Test
+    void testRetryWithSameKeyReplaysTheFirstResponse() throws Exception {
+        String json = objectMapper.writeValueAsString(new Product("Retried", 10.0));
+        MvcResult first = mockMvc.perform(post("/api/products").header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"))
+                .andReturn();
+
+        MvcResult retry = mockMvc.perform(post("/api/products").header("Idempotency-Key", "key-1")
+                        .contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(header().string("ETag", first.getResponse().getHeader("ETag")))
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andReturn();
+
+        assertArrayEquals(first.getResponse().getContentAsByteArray(), retry.getResponse().getContentAsByteArray());
+        assertEquals(1, productRepo.count());
+
+        // Without a key, or with another key (or another client's key), the request runs again
+        mockMvc.perform(post("/api/products").contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/api/products").header("Idempotency-Key", "key-1").header("X-API-Key", "other-client")
+                        .contentType(MediaType.APPLICATION_JSON).content(json))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+        assertEquals(3, productRepo.count());
+    }
+
+    @Test
+    void testKeyReusedForAnotherRequestIsRejected() throws Exception {
+        mockMvc.perform(post("/api/products").header("Idempotency-Key", "key-2")
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(new Product("First", 1.0))))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(post("/api/products").header("Idempotency-Key", "key-2")
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(new Product("Second", 2.0))))
+                .andExpect(status().isUnprocessableEntity())
+                .andExpect(jsonPath("$.error").value("Idempotency-Key was already used for a different request"));
+        assertEquals(1, productRepo.count());
+        assertTrue(meterRegistry.get("product.api.idempotency").tag("outcome", "mismatch").counter().count() >= 1);
+    }
+
+    @Test
+    void testFailedRequestDoesNotUseUpTheKey() throws Exception {
+        // Invalid product: 400, nothing stored
+        mockMvc.perform(post("/api/products").header("Idempotency-Key", "key-3")
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(new Product("", -1.0))))
+                .andExpect(status().isBadRequest());
+
+        // The corrected request can use the same key
+        mockMvc.perform(post("/api/products").header("Idempotency-Key", "key-3")
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(new Product("Fixed", 1.0))))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Idempotent-Replayed"));
+
+        mockMvc.perform(post("/api/products").header("Idempotency-Key", " ")
+                        .contentType(MediaType.APPLICATION_JSON).content(objectMapper.writeValueAsString(new Product("Blank key", 1.0))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Idempotency-Key must have 1 to 255 characters"));
+        assertEquals(1, productRepo.count());
+    }
+
+    @Test
+    void testConcurrentDuplicatesOfABatchInsertOnce() throws Exception {
+        // A large batch takes a while, so the duplicates arrive while the first one is in flight and wait for it
+        String json = objectMapper.writeValueAsString(IntStream.range(0, 2000)
+                .mapToObj(i -> new Product("Batch" + i, 1.0 + i)).toList());
+        int clients = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        try {
+            List<Future<MvcResult>> results = new ArrayList<>();
+            for (int i = 0; i < clients; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return mockMvc.perform(post("/api/products/batch").header("Idempotency-Key", "batch-1")
+                                    .contentType(MediaType.APPLICATION_JSON).content(json))
+                            .andReturn();
+                }));
+            }
+            start.countDown();
+
+            byte[] body = null;
+            int replayed = 0;
+            for (Future<MvcResult> result : results) {
+                MvcResult response = result.get();
+                assertEquals(201, response.getResponse().getStatus());
+                if (body == null) {
+                    body = response.getResponse().getContentAsByteArray();
+                }
+                assertArrayEquals(body, response.getResponse().getContentAsByteArray());
+                replayed += "true".equals(response.getResponse().getHeader("Idempotent-Replayed")) ? 1 : 0;
+            }
+            assertEquals(clients - 1, replayed);
+            assertEquals(2000, productRepo.count());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testJdbcStoreSharesKeysThroughTheTable() throws Exception {
+        JdbcIdempotencyStore store = new JdbcIdempotencyStore(jdbcTemplate, Duration.ofHours(1), Duration.ofMillis(300));
+        String key = "a".repeat(64);
+        jdbcTemplate.update("delete from idempotency_keys");
+
+        // The first claim wins, the second (e.g. on another instance) sees it in flight
+        assertNull(store.claim(key, "fingerprint", "token-1"));
+        IdempotencyStore.Record inFlight = store.claim(key, "fingerprint", "token-2");
+        assertNotNull(inFlight);
+        assertTrue(inFlight.inFlight());
+
+        // Once completed, the stored response is found, also by a waiting retry
+        store.complete(key, "token-1", new IdempotencyStore.Record("fingerprint", new IdempotencyStore.StoredResponse(201,
+                Map.of("Content-Type", "application/json", "ETag", "\"0\""), "{\"id\":1}".getBytes())));
+        IdempotencyStore.Record completed = store.await(key, Duration.ofSeconds(1));
+        assertEquals(201, completed.response().status());
+        assertEquals("\"0\"", completed.response().headers().get("ETag"));
+        assertArrayEquals("{\"id\":1}".getBytes(), completed.response().body());
+        assertEquals("fingerprint", store.claim(key, "fingerprint", "token-3").fingerprint());
+
+        // A released key can be claimed again, and so can an in-flight key after the lock timeout (its instance died)
+        String other = "b".repeat(64);
+        assertNull(store.claim(other, "fingerprint", "token-4"));
+        store.release(other, "token-4");
+        assertNull(store.find(other));
+        assertNull(store.claim(other, "fingerprint", "token-5"));
+        Thread.sleep(400);
+        assertNull(store.claim(other, "fingerprint", "token-6"));
+
+        // The request whose lock expired can neither free nor complete the key of the request that took it over
+        store.release(other, "token-5");
+        store.complete(other, "token-5", new IdempotencyStore.Record("fingerprint",
+                new IdempotencyStore.StoredResponse(500, Map.of(), new byte[0])));
+        assertTrue(store.find(other).inFlight());
+        store.complete(other, "token-6", new IdempotencyStore.Record("fingerprint",
+                new IdempotencyStore.StoredResponse(201, Map.of(), new byte[0])));
+        assertEquals(201, store.find(other).response().status());
+
+        store.removeExpiredKeys();
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from idempotency_keys", Integer.class));
+    }
+}
@@ -0,0 +1,58 @@
+package dev.rono.rest;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import org.springframework.test.web.servlet.MockMvc;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the metrics published on the Prometheus scrape endpoint.
+// It calls the Product API and then checks that the request, repository, pool, Hibernate and error metrics are exported.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+// Metrics export is disabled in tests by default; this annotation turns the Prometheus registry back on.
+public class MetricsIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Test
+    void testPrometheusEndpointExposesApiMetrics() throws Exception {
+        // This method is a test case that will produce some traffic, including a 404, and then scrape the metrics.
+        // It expects every metric family we rely on in production to be present.
+
+        Product savedProduct = productRepo.save(new Product("MeteredProduct", 10.0));
+        mockMvc.perform(get("/api/products/" + savedProduct.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products")).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/-1")).andExpect(status().isNotFound());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                // Per-endpoint latency histograms
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("uri=\"/api/products/{id}\"")))
+                // Timed repository calls
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_count")))
+                .andExpect(content().string(containsString("repository=\"ProductRepo\"")))
+                // Connection pool saturation
+                .andExpect(content().string(containsString("hikaricp_connections_pending")))
+                // SQL statements per request (SqlBudgetFilter)
+                .andExpect(content().string(containsString("product_sql_statements_count")))
+                // Hibernate statistics
+                .andExpect(content().string(containsString("hibernate_query_executions_total")))
+                // Errors counted by GlobalExceptionHandler
+                .andExpect(content().string(containsString("product_api_errors_total{application=\"rest\",exception=\"ResourceNotFoundException\",status=\"404\"")));
+    }
+}
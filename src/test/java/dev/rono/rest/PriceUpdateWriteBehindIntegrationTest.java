@@ -0,0 +1,134 @@
+package dev.rono.rest;
+
+import dev.rono.rest.config.CacheConfig;
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductChangeRepo;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.services.PriceUpdateBuffer;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the write-behind mode of PUT /api/products/{id}/price (PriceUpdateBuffer).
+// It checks that a burst of updates to one product is written once with the last price, that reads see the pending
+// price before it is written, and that the buffer pushes back when too many products are pending.
+@SpringBootTest(properties = {
+        "product.rate-limit.enabled=false",
+        "product.changes.relay-interval-ms=3600000",
+        "product.price-updates.write-behind=true",
+        // Flushed only when a test asks for it
+        "product.price-updates.flush-interval-ms=3600000",
+        "product.price-updates.max-pending=3"
+})
+@AutoConfigureMockMvc
+public class PriceUpdateWriteBehindIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private ProductChangeRepo productChangeRepo;
+
+    @Autowired
+    private PriceUpdateBuffer priceUpdateBuffer;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        priceUpdateBuffer.flush();
+        productRepo.deleteAll();
+        cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).clear();
+    }
+
+    @Test
+    void testBurstOfUpdatesIsWrittenOnce() throws Exception {
+        Product product = productRepo.save(new Product("Ticker", 10.0));
+        mockMvc.perform(get("/api/products/" + product.getId()))
+                .andExpect(header().string("ETag", "\"0\"")); // Now cached
+        long changesBefore = productChangeRepo.count();
+        double receivedBefore = count("received");
+        double writtenBefore = count("written");
+
+        for (int i = 1; i <= 5; i++) {
+            putPrice(product.getId(), 10.0 + i).andExpect(status().isAccepted());
+        }
+
+        // Not written yet, but a read already sees the last price (without an ETag, as its version is not known)
+        assertEquals(10.0, productRepo.findById(product.getId()).orElseThrow().getPrice());
+        mockMvc.perform(get("/api/products/" + product.getId()).header("If-None-Match", "\"0\""))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.price").value(15.0))
+                .andExpect(header().doesNotExist("ETag"));
+
+        priceUpdateBuffer.flush();
+
+        Product written = productRepo.findById(product.getId()).orElseThrow();
+        assertEquals(15.0, written.getPrice());
+        assertEquals(1L, written.getVersion());
+        assertEquals(changesBefore + 1, productChangeRepo.count());
+        assertEquals(5, count("received") - receivedBefore);
+        assertEquals(1, count("written") - writtenBefore);
+        mockMvc.perform(get("/api/products/" + product.getId()))
+                .andExpect(jsonPath("$.price").value(15.0))
+                .andExpect(header().string("ETag", "\"1\"")); // The cached product was evicted by the flush
+    }
+
+    @Test
+    void testTooManyPendingProductsArePushedBack() throws Exception {
+        long[] ids = productRepo.saveAll(IntStream.range(0, 4)
+                .mapToObj(i -> new Product("Pending" + i, 1.0)).toList()).stream().mapToLong(Product::getId).toArray();
+        for (int i = 0; i < 3; i++) {
+            putPrice(ids[i], 2.0).andExpect(status().isAccepted());
+        }
+
+        // A fourth product does not fit, another update of a pending product does
+        putPrice(ids[3], 2.0)
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "1"));
+        putPrice(ids[0], 3.0).andExpect(status().isAccepted());
+
+        // A product deleted before the flush is dropped, the others are written
+        productRepo.deleteById(ids[2]);
+        double missingBefore = count("missing");
+        priceUpdateBuffer.flush();
+        assertEquals(1, count("missing") - missingBefore);
+        assertEquals(3.0, productRepo.findById(ids[0]).orElseThrow().getPrice());
+        assertEquals(2.0, productRepo.findById(ids[1]).orElseThrow().getPrice());
+
+        putPrice(ids[3], 2.0).andExpect(status().isAccepted());
+        putPrice(ids[3], -2.0).andExpect(status().isBadRequest());
+    }
+
+    private ResultActions putPrice(long id, double price) throws Exception {
+        return mockMvc.perform(put("/api/products/" + id + "/price")
+                .contentType(MediaType.APPLICATION_JSON).content("{\"price\": " + price + "}"));
+    }
+
+    private double count(String outcome) {
+        return meterRegistry.get("product.price-updates").tag("outcome", outcome).counter().count();
+    }
+}
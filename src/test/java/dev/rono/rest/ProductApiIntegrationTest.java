@@ -1,24 +1,58 @@
 package dev.rono.rest;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
 
+import dev.rono.rest.config.CacheConfig;
 import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductChange;
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.repositories.ProductChangeRepo;
 import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.services.ProductChangeRelay;
 
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
 
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static dev.rono.rest.SqlExpectations.rowsFetchedAtMost;
+import static dev.rono.rest.SqlExpectations.sqlStatements;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 // This class is an integration test for the Product API.
 // It uses Spring Boot's testing framework to test the REST API endpoints for products.
-@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // The change relay only runs when a test calls it, so tests control when changes are delivered
+        "product.changes.relay-interval-ms=3600000",
+        // These tests call the import endpoint more often than its rate limit allows (see RateLimitIntegrationTest)
+        "product.rate-limit.enabled=false",
+        // Records the SQL statements of a request, see testUpdateAndDeleteProductUseOneStatementEach
+        "spring.jpa.properties.hibernate.session_factory.statement_inspector=dev.rono.rest.ProductApiIntegrationTest$SqlRecorder"
+})
 // This annotation is used to indicate that this is a Spring Boot integration test
 // and it should start the application context with a random port for testing.
 // The webEnvironment attribute specifies that a web environment should be started,
@@ -43,12 +77,26 @@ public class ProductApiIntegrationTest {
     // This field is used to access the Product repository for database operations in the integration tests.
     // It is autowired by Spring, allowing us to use it in our test methods.
 
+    @Autowired
+    private CacheManager cacheManager;
+    // This field is used to inspect and reset the product cache in the integration tests.
+
+    @Autowired
+    private ProductChangeRepo productChangeRepo;
+    // This field is used to inspect the product change outbox.
+
+    @Autowired
+    private ProductChangeRelay productChangeRelay;
+    // This field is used to deliver the outbox to the change stream subscribers when a test needs it.
+
     @BeforeEach
     void setUp() {
         // This method is executed before each test method in this class.
         // It can be used to set up any necessary data or configurations for the tests.
         productRepo.deleteAll();
         // Clear the Product repository before each test to ensure a clean state.
+        cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).clear();
+        // The repository call above bypasses the product cache, so clear it as well.
     }
 
     // Additional test methods will be added here to test the Product API endpoints.
@@ -309,4 +357,746 @@ public class ProductApiIntegrationTest {
     }
 
 
+    @Test
+    void testGetAllProductsWithKeysetPagination() throws Exception {
+        // This method is a test case that will page through the products using the "after" cursor.
+        // It expects each page to be limited in size and to carry the cursor of the next page.
+
+        Product product1 = productRepo.save(new Product("Product1", 10.0));
+        Product product2 = productRepo.save(new Product("Product2", 20.0));
+        Product product3 = productRepo.save(new Product("Product3", 30.0));
+
+        // The first page is full, so it should point at the next page
+        mockMvc.perform(get("/api/products").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(product1.getId()))
+                .andExpect(jsonPath("$[1].id").value(product2.getId()))
+                .andExpect(header().string("X-Next-Cursor", String.valueOf(product2.getId())))
+                .andExpect(header().string("Link", containsString("after=" + product2.getId())));
+
+        // The second page only has the remaining product, so there is no next cursor
+        mockMvc.perform(get("/api/products").param("after", String.valueOf(product2.getId())).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].id").value(product3.getId()))
+                .andExpect(header().doesNotExist("X-Next-Cursor"));
+
+        // Paging past the last product returns an empty list
+        mockMvc.perform(get("/api/products").param("after", String.valueOf(product3.getId())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    void testStreamAllProductsAsNdjson() throws Exception {
+        // This method is a test case that will stream all products as newline-delimited JSON.
+        // It expects one JSON document per line, in ID order.
+
+        productRepo.save(new Product("Product1", 10.0));
+        productRepo.save(new Product("Product2", 20.0));
+
+        String body = mockMvc.perform(get("/api/products/stream"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("Product1", objectMapper.readTree(lines[0]).get("name").asText());
+        assertEquals("Product2", objectMapper.readTree(lines[1]).get("name").asText());
+    }
+
+    @Test
+    void testStreamAllProductsAsJsonArray() throws Exception {
+        // This method is a test case that will stream all products as a single JSON array.
+        // It expects the same contract as the paged list endpoint when the client asks for application/json.
+
+        productRepo.save(new Product("Product1", 10.0));
+        productRepo.save(new Product("Product2", 20.0));
+
+        mockMvc.perform(get("/api/products/stream").accept("application/json"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/json"))
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("Product1"))
+                .andExpect(jsonPath("$[1].name").value("Product2"));
+    }
+
+    @Test
+    void testBatchCreateProducts() throws Exception {
+        // This method is a test case that will create several products in one request.
+        // It expects the valid entries to be created and the invalid one to be reported with its errors.
+
+        String json = objectMapper.writeValueAsString(List.of(
+                new Product("Batch1", 10.0),
+                new Product("", -1.0),
+                new Product("Batch2", 20.0)));
+
+        mockMvc.perform(post("/api/products/batch")
+                    .contentType("application/json")
+                    .content(json))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.succeeded").value(2))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.items[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.items[0].id").exists())
+                .andExpect(jsonPath("$.items[1].status").value("INVALID"))
+                .andExpect(jsonPath("$.items[1].errors.name").value("Name is Mandatory"))
+                .andExpect(jsonPath("$.items[1].errors.price").value("Price must be positive"))
+                .andExpect(jsonPath("$.items[2].status").value("CREATED"));
+
+        assertEquals(2, productRepo.count());
+    }
+
+    @Test
+    void testBatchUpdateProducts() throws Exception {
+        // This method is a test case that will update several products in one request.
+        // It expects existing products to be updated and an unknown ID to be reported as not found.
+
+        Product savedProduct = productRepo.save(new Product("OldName", 20.0));
+        Product updatedProduct = new Product("UpdatedName", 30.0);
+        updatedProduct.setId(savedProduct.getId());
+        Product unknownProduct = new Product("Unknown", 40.0);
+        unknownProduct.setId(999_999L);
+
+        mockMvc.perform(put("/api/products/batch")
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(List.of(updatedProduct, unknownProduct))))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.items[0].status").value("UPDATED"))
+                .andExpect(jsonPath("$.items[1].status").value("NOT_FOUND"));
+
+        assertEquals("UpdatedName", productRepo.findById(savedProduct.getId()).orElseThrow().getName());
+    }
+
+    @Test
+    void testBatchDeleteProducts() throws Exception {
+        // This method is a test case that will delete several products in one request.
+        // It expects every existing product to be deleted.
+
+        Product product1 = productRepo.save(new Product("Product1", 10.0));
+        Product product2 = productRepo.save(new Product("Product2", 20.0));
+
+        mockMvc.perform(delete("/api/products/batch")
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(List.of(product1.getId(), product2.getId()))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.succeeded").value(2))
+                .andExpect(jsonPath("$.items[0].status").value("DELETED"))
+                .andExpect(jsonPath("$.items[1].status").value("DELETED"));
+
+        assertEquals(0, productRepo.count());
+    }
+
+    @Test
+    void testGetProductByIdIsServedFromCache() throws Exception {
+        // This method is a test case that will read the same product twice.
+        // It expects the second read to be a cache hit, and updates and deletes to keep the cache coherent.
+
+        Product savedProduct = productRepo.save(new Product("CachedProduct", 25.0));
+        Cache<Object, Object> cache =
+                ((CaffeineCache) cacheManager.getCache(CacheConfig.PRODUCTS_CACHE)).getNativeCache();
+        long hitsBefore = cache.stats().hitCount();
+
+        mockMvc.perform(get("/api/products/" + savedProduct.getId())).andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/" + savedProduct.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("CachedProduct"));
+        assertEquals(hitsBefore + 1, cache.stats().hitCount());
+
+        // The update replaces the cached product, so the next read sees the new name
+        mockMvc.perform(put("/api/products/" + savedProduct.getId())
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(new Product("RenamedProduct", 30.0))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/" + savedProduct.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("RenamedProduct"));
+
+        // The delete evicts the cached product, so the next read is a 404
+        mockMvc.perform(delete("/api/products/" + savedProduct.getId())).andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/products/" + savedProduct.getId())).andExpect(status().isNotFound());
+    }
+
+    @Test
+    void testBatchUpdateEvictsCachedProducts() throws Exception {
+        // This method is a test case that will update a cached product through the batch endpoint.
+        // It expects the next read by ID to see the updated product instead of the cached one.
+
+        Product savedProduct = productRepo.save(new Product("OldName", 20.0));
+        mockMvc.perform(get("/api/products/" + savedProduct.getId())).andExpect(status().isOk());
+
+        Product updatedProduct = new Product("UpdatedName", 30.0);
+        updatedProduct.setId(savedProduct.getId());
+        mockMvc.perform(put("/api/products/batch")
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(List.of(updatedProduct))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/products/" + savedProduct.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("UpdatedName"));
+    }
+
+    @Test
+    void testConditionalGetProductById() throws Exception {
+        // This method is a test case that will repeat a GET with the ETag it received.
+        // It expects 304 Not Modified with no body while the product is unchanged, and 200 once it changes.
+
+        Product savedProduct = productRepo.save(new Product("VersionedProduct", 25.0));
+
+        String eTag = mockMvc.perform(get("/api/products/" + savedProduct.getId()))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(header().exists("Last-Modified"))
+                .andExpect(jsonPath("$.version").doesNotExist())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/products/" + savedProduct.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", eTag))
+                .andExpect(content().string(""));
+
+        // Changing the product changes its ETag, so the old one no longer matches
+        mockMvc.perform(put("/api/products/" + savedProduct.getId())
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(new Product("ChangedProduct", 30.0))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/" + savedProduct.getId()).header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("ChangedProduct"));
+    }
+
+    @Test
+    void testConditionalGetAllProducts() throws Exception {
+        // This method is a test case that will repeat a list GET with the ETag it received.
+        // It expects 304 Not Modified while the page is unchanged.
+
+        productRepo.save(new Product("Product1", 10.0));
+
+        String eTag = mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/products").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testUpdateProductWithIfMatch() throws Exception {
+        // This method is a test case that will update a product with an If-Match precondition.
+        // It expects the update to succeed with the current ETag and to fail with 412 with a stale one.
+
+        Product savedProduct = productRepo.save(new Product("OldName", 20.0));
+        String eTag = mockMvc.perform(get("/api/products/" + savedProduct.getId()))
+                .andReturn().getResponse().getHeader("ETag");
+        String json = objectMapper.writeValueAsString(new Product("UpdatedName", 30.0));
+
+        String newETag = mockMvc.perform(put("/api/products/" + savedProduct.getId())
+                    .header("If-Match", eTag)
+                    .contentType("application/json")
+                    .content(json))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("UpdatedName"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(eTag, newETag);
+
+        // The first ETag is now stale, so a second writer using it is rejected
+        mockMvc.perform(put("/api/products/" + savedProduct.getId())
+                    .header("If-Match", eTag)
+                    .contentType("application/json")
+                    .content(json))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.error").value("Product with ID: " + savedProduct.getId() + " has been modified"));
+    }
+
+    @Test
+    void testDeleteProductWithStaleIfMatch() throws Exception {
+        // This method is a test case that will delete a product with an If-Match header that does not match.
+        // It expects 412 Precondition Failed and the product to still exist.
+
+        Product savedProduct = productRepo.save(new Product("KeepMe", 15.0));
+
+        mockMvc.perform(delete("/api/products/" + savedProduct.getId()).header("If-Match", "\"42\""))
+                .andExpect(status().isPreconditionFailed());
+
+        mockMvc.perform(get("/api/products/" + savedProduct.getId()))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testSearchProductsByNameAndPrice() throws Exception {
+        // This method is a test case that will filter products by name prefix, name fragment and price range.
+        // It expects only the matching products to be returned.
+
+        productRepo.save(new Product("Apple Juice", 3.0));
+        productRepo.save(new Product("Apple Pie", 12.0));
+        productRepo.save(new Product("Pineapple", 5.0));
+        productRepo.save(new Product("100% Banana", 4.0));
+
+        mockMvc.perform(get("/api/products").param("name", "Apple"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].name").value("Apple Juice"))
+                .andExpect(jsonPath("$[1].name").value("Apple Pie"));
+
+        mockMvc.perform(get("/api/products").param("nameContains", "neap").param("maxPrice", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("Pineapple"));
+
+        mockMvc.perform(get("/api/products").param("minPrice", "4").param("maxPrice", "12"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3));
+
+        // LIKE wildcards in the search text are matched literally
+        mockMvc.perform(get("/api/products").param("name", "100%"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].name").value("100% Banana"));
+    }
+
+    @Test
+    void testSortProductsByPriceWithKeysetPagination() throws Exception {
+        // This method is a test case that will page through products sorted by descending price.
+        // It expects the cursor to continue the sort order across pages, including products with equal prices.
+
+        productRepo.save(new Product("Cheap", 1.0));
+        Product expensive = productRepo.save(new Product("Expensive", 30.0));
+        Product middle1 = productRepo.save(new Product("Middle1", 20.0));
+        productRepo.save(new Product("Middle2", 20.0));
+
+        mockMvc.perform(get("/api/products").param("sort", "price").param("direction", "desc").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(expensive.getId()))
+                .andExpect(jsonPath("$[1].name").value("Middle2"))
+                .andExpect(header().exists("X-Next-Cursor"));
+
+        String cursor = mockMvc.perform(get("/api/products").param("sort", "price").param("direction", "desc").param("limit", "2"))
+                .andReturn().getResponse().getHeader("X-Next-Cursor");
+
+        mockMvc.perform(get("/api/products").param("sort", "price").param("direction", "desc")
+                    .param("limit", "2").param("after", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(middle1.getId()))
+                .andExpect(jsonPath("$[1].name").value("Cheap"));
+    }
+
+    @Test
+    void testSortProductsByUnknownField() throws Exception {
+        // This method is a test case that will ask for an unsupported sort field.
+        // It expects a 400 Bad Request response.
+
+        mockMvc.perform(get("/api/products").param("sort", "secret"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").exists());
+    }
+
+    @Test
+    void testUpdateAndDeleteProductWriteWithOneStatementEach() throws Exception {
+        // This method is a test case that will record the SQL statements sent for a PUT and a DELETE.
+        // It expects each of them to be a single UPDATE/DELETE on products, plus the insert of its row into the
+        // product change outbox; the product is not cached, so each first reads its row with a lock (for the old
+        // price and the version), and a cached product is deleted without that read.
+
+        Product savedProduct = productRepo.save(new Product("OldName", 20.0));
+
+        SqlRecorder.start();
+        mockMvc.perform(put("/api/products/" + savedProduct.getId())
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(new Product("UpdatedName", 30.0))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("UpdatedName"));
+        List<String> statements = SqlRecorder.stop();
+        assertEquals(2, statements.stream().filter(sql -> sql.matches("(?s).*\\bproducts\\b.*")).count(), statements.toString());
+        assertTrue(statements.get(0).startsWith("select") && statements.get(0).endsWith("for update"), statements.toString());
+        assertTrue(statements.get(1).startsWith("update products"), statements.toString());
+        assertEquals(1, statements.stream().filter(sql -> sql.startsWith("insert into product_changes")).count());
+
+        mockMvc.perform(get("/api/products/" + savedProduct.getId())).andExpect(status().isOk());
+        SqlRecorder.start();
+        mockMvc.perform(delete("/api/products/" + savedProduct.getId()))
+                .andExpect(status().isNoContent());
+        statements = SqlRecorder.stop();
+        assertEquals(1, statements.stream().filter(sql -> sql.matches("(?s).*\\bproducts\\b.*")).count(), statements.toString());
+        assertTrue(statements.get(0).startsWith("delete from products"), statements.toString());
+        assertEquals(1, statements.stream().filter(sql -> sql.startsWith("insert into product_changes")).count());
+    }
+
+    @Test
+    void testStatementsPerEndpoint() throws Exception {
+        // This method is a test case that locks in the number of SQL statements of each single-product endpoint,
+        // so a change that adds a query (a read before a write, a lookup per row) fails here.
+        // Every write is one statement on products plus the insert of its outbox row (and, unless the old price and
+        // version are known, the locked read of the row).
+
+        MvcResult created = mockMvc.perform(post("/api/products")
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(new Product("Counted", 10.0))))
+                .andExpect(status().isCreated())
+                .andExpect(sqlStatements(2))
+                .andReturn();
+        Long id = objectMapper.readValue(created.getResponse().getContentAsString(), Product.class).getId();
+        cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).clear();
+
+        // A cache miss is one query, a hit and a matching conditional GET none
+        mockMvc.perform(get("/api/products/" + id)).andExpect(sqlStatements(1)).andExpect(rowsFetchedAtMost(1));
+        mockMvc.perform(get("/api/products/" + id)).andExpect(sqlStatements(0));
+        mockMvc.perform(get("/api/products/" + id).header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotModified())
+                .andExpect(sqlStatements(0));
+
+        mockMvc.perform(get("/api/products")).andExpect(sqlStatements(1));
+        mockMvc.perform(get("/api/products").param("name", "Count").param("sort", "price")).andExpect(sqlStatements(1));
+        // The statistics query the range once after writes that bypassed the service (as the setup does), then none
+        mockMvc.perform(get("/api/products/stats"));
+        mockMvc.perform(get("/api/products/stats")).andExpect(sqlStatements(0));
+        mockMvc.perform(get("/api/products/suggest").param("q", "count")).andExpect(sqlStatements(0));
+
+        // An update reads and locks the row first for the old price and version, unless it is conditional and the
+        // product is cached
+        mockMvc.perform(put("/api/products/" + id)
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(new Product("Counted again", 11.0))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(sqlStatements(3));
+        mockMvc.perform(get("/api/products/" + id)).andExpect(sqlStatements(1));
+        mockMvc.perform(put("/api/products/" + id)
+                    .header("If-Match", "\"1\"")
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(new Product("Counted again", 11.0))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"2\""))
+                .andExpect(sqlStatements(2));
+        // The price endpoint loads the row (its name goes into the outbox row), then writes both in JDBC batches
+        mockMvc.perform(put("/api/products/" + id + "/price")
+                    .contentType("application/json")
+                    .content("{\"price\": 12.0}"))
+                .andExpect(status().isOk())
+                .andExpect(sqlStatements(3));
+        // A delete works the same way: the product is no longer cached
+        mockMvc.perform(delete("/api/products/" + id))
+                .andExpect(status().isNoContent())
+                .andExpect(sqlStatements(3));
+        // A conditional write of a missing product stops at the read
+        mockMvc.perform(delete("/api/products/" + id).header("If-Match", "\"0\""))
+                .andExpect(status().isNotFound())
+                .andExpect(sqlStatements(1));
+    }
+
+    @Test
+    void testProductChangesAreStreamedAsServerSentEvents() throws Exception {
+        // This method is a test case that will create, update and delete a product,
+        // then read the changes from the SSE endpoint, resuming from the position before the first one.
+        productChangeRelay.relay();
+        long start = productChangeRepo.findMaxSeq();
+
+        String created = mockMvc.perform(post("/api/products")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(new Product("Streamed", 10.0))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Long id = objectMapper.readValue(created, Product.class).getId();
+        mockMvc.perform(put("/api/products/" + id)
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(new Product("Streamed", 12.0))))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/products/" + id))
+                .andExpect(status().isNoContent());
+
+        MvcResult result = mockMvc.perform(get("/api/products/changes").param("since", String.valueOf(start)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        productChangeRelay.relay();
+        String events = awaitEvents(result, "\"seq\":" + (start + 3) + ",");
+        assertThat(events, containsString("id:" + (start + 1) + "\nevent:product-change\ndata:{\"seq\":" + (start + 1)
+                + ",\"type\":\"CREATED\",\"productId\":" + id));
+        assertThat(events, containsString("id:" + (start + 2) + "\nevent:product-change\ndata:{\"seq\":" + (start + 2)
+                + ",\"type\":\"UPDATED\",\"productId\":" + id + ",\"name\":\"Streamed\",\"price\":12.0"));
+        assertThat(events, containsString("\"seq\":" + (start + 3) + ",\"type\":\"DELETED\""));
+
+        // Resuming with Last-Event-ID only sends what came after it
+        MvcResult resumed = mockMvc.perform(get("/api/products/changes").header("Last-Event-ID", start + 2))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        productChangeRelay.relay();
+        String resumedEvents = awaitEvents(resumed, "\"seq\":" + (start + 3) + ",");
+        assertThat(resumedEvents, containsString("\"seq\":" + (start + 3) + ","));
+        assertThat(resumedEvents, not(containsString("\"seq\":" + (start + 2) + ",")));
+    }
+
+    // The relay hands the events to a sender thread, so they reach the response shortly after relay() returns
+    private static String awaitEvents(MvcResult result, String last) throws Exception {
+        long deadline = System.currentTimeMillis() + 5_000;
+        String events = result.getResponse().getContentAsString();
+        while (!events.contains(last) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            events = result.getResponse().getContentAsString();
+        }
+        return events;
+    }
+
+    @Test
+    void testFailedWriteRecordsNoChange() throws Exception {
+        // This method is a test case that will check that a write that fails leaves no row in the outbox,
+        // because the outbox row is written in the same transaction as the product.
+        long before = productChangeRepo.count();
+
+        mockMvc.perform(put("/api/products/999999")
+                        .contentType("application/json")
+                        .content(objectMapper.writeValueAsString(new Product("Ghost", 1.0))))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(delete("/api/products/999999"))
+                .andExpect(status().isNotFound());
+
+        assertEquals(before, productChangeRepo.count());
+    }
+
+    @Test
+    void testImportProductsFromCsvReportsFailedLines() throws Exception {
+        // This method is a test case that will import a CSV file with a header, valid rows and invalid rows.
+        // The valid rows are inserted and every invalid row is reported with its line number.
+        String csv = """
+                name,price
+                Keyboard,49.99
+                "Mouse, wireless",19.5
+                ,10.0
+                Monitor,-3
+                Cable,abc
+
+                Desk,150
+                """;
+
+        mockMvc.perform(post("/api/products/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.imported").value(3))
+                .andExpect(jsonPath("$.failed").value(3))
+                .andExpect(jsonPath("$.rowsPerSecond").isNumber())
+                .andExpect(jsonPath("$.errors[0].line").value(4))
+                .andExpect(jsonPath("$.errors[0].errors.name").value("Name is Mandatory"))
+                .andExpect(jsonPath("$.errors[1].line").value(5))
+                .andExpect(jsonPath("$.errors[1].errors.price").exists())
+                .andExpect(jsonPath("$.errors[2].line").value(6))
+                .andExpect(jsonPath("$.errors[2].errors.error").value(containsString("not a number")));
+
+        assertEquals(List.of("Desk", "Keyboard", "Mouse, wireless"),
+                productRepo.findAll().stream().map(Product::getName).sorted().toList());
+    }
+
+    @Test
+    void testImportProductsFromNdjson() throws Exception {
+        // This method is a test case that will import newline-delimited JSON, one product per line.
+        String ndjson = """
+                {"name":"Lamp","price":25.0}
+                {"name":"Chair","price":80.0}
+                {"name":"Broken",
+                """;
+
+        mockMvc.perform(post("/api/products/import")
+                        .contentType("application/x-ndjson")
+                        .content(ndjson))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.errors[0].line").value(3))
+                .andExpect(jsonPath("$.errors[0].errors.error").value(containsString("Invalid JSON")));
+
+        // An import without failures answers 201 Created
+        mockMvc.perform(post("/api/products/import")
+                        .contentType("application/x-ndjson")
+                        .content("{\"name\":\"Shelf\",\"price\":60.0}\n"))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.failed").value(0));
+        assertEquals(3, productRepo.count());
+        assertEquals(3, productChangeRepo.findAll().stream()
+                .filter(change -> change.getType() == ProductChange.Type.CREATED
+                        && List.of("Lamp", "Chair", "Shelf").contains(change.getName()))
+                .count());
+    }
+
+    @Test
+    void testExportProductsAndImportThemBack() throws Exception {
+        // This method is a test case that will export the products as CSV and NDJSON,
+        // then import the CSV export again, which must recreate the same products.
+        productRepo.saveAll(List.of(
+                new Product("Plain", 1.5),
+                new Product("Comma, \"quoted\"", 2.0)));
+
+        String csv = mockMvc.perform(get("/api/products/export"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andExpect(header().string("Content-Disposition", containsString("products.csv")))
+                .andReturn().getResponse().getContentAsString();
+        assertThat(csv, containsString("\"Comma, \"\"quoted\"\"\""));
+        assertEquals(3, csv.lines().count()); // Header and two rows
+
+        mockMvc.perform(get("/api/products/export?format=ndjson"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andExpect(content().string(containsString("\"name\":\"Plain\"")));
+        mockMvc.perform(get("/api/products/export?format=xml"))
+                .andExpect(status().isBadRequest());
+
+        productRepo.deleteAll();
+        mockMvc.perform(post("/api/products/import")
+                        .contentType("text/csv")
+                        .content(csv))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.imported").value(2));
+        assertEquals(List.of("Comma, \"quoted\"", "Plain"),
+                productRepo.findAll().stream().map(Product::getName).sorted().toList());
+    }
+
+    @Test
+    void testProductViewJsonMatchesProductJson() throws Exception {
+        // This method is a test case that will check that the read model keeps the JSON contract of Product:
+        // the same fields in the same order, nulls included, and no version or lastModified in the body.
+        Product product = new Product("Contract \"quoted\"", 12.5);
+        product.setId(7L);
+        product.setVersion(3L);
+        product.setLastModified(java.time.Instant.now());
+        assertEquals(objectMapper.writeValueAsString(product), objectMapper.writeValueAsString(ProductView.of(product)));
+        assertEquals(objectMapper.writeValueAsString(new Product()), objectMapper.writeValueAsString(ProductView.of(new Product())));
+
+        Product saved = productRepo.save(new Product("Listed", 3.0));
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(content().json("[{\"id\":" + saved.getId() + ",\"name\":\"Listed\",\"price\":3.0}]", true));
+    }
+
+    @Test
+    void testUpdatePriceIsWrittenRightAway() throws Exception {
+        // This method is a test case for PUT /{id}/price without write-behind (the default): the price is written
+        // before the response, which carries the new version as ETag, and the change is recorded in the outbox.
+        Product saved = productRepo.save(new Product("Priced", 20.0));
+        long changesBefore = productChangeRepo.count();
+
+        mockMvc.perform(put("/api/products/" + saved.getId() + "/price")
+                    .contentType("application/json")
+                    .content("{\"price\": 25.5}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", "\"1\""))
+                .andExpect(jsonPath("$.name").value("Priced"))
+                .andExpect(jsonPath("$.price").value(25.5));
+        assertEquals(25.5, productRepo.findById(saved.getId()).orElseThrow().getPrice());
+        assertEquals(changesBefore + 1, productChangeRepo.count());
+
+        mockMvc.perform(put("/api/products/999/price")
+                    .contentType("application/json")
+                    .content("{\"price\": 1.0}"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Product not found with ID: 999"));
+        mockMvc.perform(put("/api/products/" + saved.getId() + "/price")
+                    .contentType("application/json")
+                    .content("{\"price\": -1.0}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.price").value("Price must be positive"));
+    }
+
+    @Test
+    void testStalledChangeSubscriberIsDroppedWithoutDelayingOthers() throws Exception {
+        // This method is a test case for two change stream subscribers that read at different speeds: one whose
+        // connection stops taking writes, and one that keeps up. The stalled one must neither hold up the relay nor
+        // the other subscriber, and is dropped once its queue (subscriber-buffer, 1000 events) overflows.
+        productChangeRelay.relay();
+        CountDownLatch unblock = new CountDownLatch(1);
+        StalledEmitter stalled = new StalledEmitter(unblock);
+        CountingEmitter counting = new CountingEmitter();
+        productChangeRelay.subscribe(stalled, null);
+        productChangeRelay.subscribe(counting, null);
+        productChangeRelay.relay(); // Both start at the next change
+
+        int changes = 1100;
+        mockMvc.perform(post("/api/products/batch")
+                    .contentType("application/json")
+                    .content(objectMapper.writeValueAsString(IntStream.range(0, changes)
+                            .mapToObj(i -> new Product("Relayed " + i, 1.0 + i)).toList())))
+                .andExpect(status().isCreated());
+        try {
+            // Every relay call hands its page (batch-size events) to the subscribers' queues and returns right away
+            for (int page = 0; page < 3; page++) {
+                long started = System.nanoTime();
+                productChangeRelay.relay();
+                assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started) < 1_000);
+            }
+
+            assertTrue(stalled.dropped.await(2, TimeUnit.SECONDS));
+            long deadline = System.currentTimeMillis() + 2_000;
+            while (counting.events.get() < changes && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(changes, counting.events.get());
+        } finally {
+            unblock.countDown();
+        }
+    }
+
+    // A change stream client that stopped reading: its first write blocks until the test ends
+    private static final class StalledEmitter extends SseEmitter {
+
+        private final CountDownLatch unblock;
+        private final CountDownLatch dropped = new CountDownLatch(1);
+
+        private StalledEmitter(CountDownLatch unblock) {
+            this.unblock = unblock;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                unblock.await();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IOException("Connection closed");
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            dropped.countDown();
+        }
+    }
+
+    // A change stream client that keeps up: counts the change events written to it
+    private static final class CountingEmitter extends SseEmitter {
+
+        private final AtomicInteger events = new AtomicInteger();
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            if (builder.build().stream().anyMatch(part -> part.getData().toString().contains(ProductChangeRelay.EVENT_NAME))) {
+                events.incrementAndGet();
+            }
+        }
+    }
+
+    // Hibernate statement inspector that records the SQL sent between start() and stop()
+    public static class SqlRecorder implements StatementInspector {
+
+        private static final List<String> statements = new CopyOnWriteArrayList<>();
+        private static volatile boolean recording;
+
+        static void start() {
+            statements.clear();
+            recording = true;
+        }
+
+        static List<String> stop() {
+            recording = false;
+            return List.copyOf(statements);
+        }
+
+        @Override
+        public String inspect(String sql) {
+            if (recording) {
+                statements.add(sql.trim().toLowerCase());
+            }
+            return sql;
+        }
+    }
+
 }
@@ -0,0 +1,167 @@
+package dev.rono.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.services.ProductCatalog;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the in-memory catalog (ProductCatalog) behind GET /api/products and
+// GET /api/products/{id} when product.catalog.enabled=true.
+// It checks that pages written from the snapshot are byte-for-byte the JSON of the same rows read from the database,
+// across segment boundaries, that the conditional requests still work, and that writes through the API are visible
+// right away while writes that bypass the service only show up after a reload.
+@SpringBootTest(properties = {
+        "product.rate-limit.enabled=false",
+        "product.changes.relay-interval-ms=3600000",
+        "product.catalog.enabled=true",
+        // Reloaded only when a test asks for it
+        "product.catalog.reload-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class ProductCatalogIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private ProductCatalog productCatalog;
+
+    @BeforeEach
+    void setUp() {
+        productRepo.deleteAll();
+        productCatalog.reload(); // The delete above bypasses the service
+    }
+
+    @Test
+    void testPagesMatchTheDatabase() throws Exception {
+        // More than one segment of the snapshot, with a multi-byte name in the mix
+        productRepo.saveAll(IntStream.range(0, 1500)
+                .mapToObj(i -> new Product(i == 700 ? "Crème brûlée " + i : "Catalog item " + i, 1.0 + i / 100.0)).toList());
+        productCatalog.reload();
+
+        long after = 0;
+        for (int limit : new int[]{1000, 1000}) {
+            String expected = objectMapper.writeValueAsString(productRepo.findViewsAfter(after, Limit.of(limit)));
+            MvcResult result = mockMvc.perform(get("/api/products").param("after", String.valueOf(after)).param("limit", String.valueOf(limit)))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(header().string("Content-Length", String.valueOf(expected.getBytes(StandardCharsets.UTF_8).length)))
+                    .andExpect(header().exists("Last-Modified"))
+                    .andReturn();
+            assertEquals(expected, result.getResponse().getContentAsString(StandardCharsets.UTF_8));
+
+            String eTag = result.getResponse().getHeader("ETag");
+            mockMvc.perform(get("/api/products").param("after", String.valueOf(after)).param("limit", String.valueOf(limit))
+                            .header("If-None-Match", eTag))
+                    .andExpect(status().isNotModified());
+
+            String nextCursor = result.getResponse().getHeader("X-Next-Cursor");
+            if (after == 0) {
+                after = Long.parseLong(nextCursor);
+            } else {
+                assertNull(nextCursor); // The last page is not full
+            }
+        }
+
+        // Filtered and sorted listings still run in the database
+        mockMvc.perform(get("/api/products").param("nameContains", "brûlée"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].name").value("Crème brûlée 700"));
+        mockMvc.perform(get("/api/products").param("after", String.valueOf(Long.MAX_VALUE)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[]"));
+    }
+
+    @Test
+    void testWritesAreVisibleRightAway() throws Exception {
+        MvcResult created = mockMvc.perform(post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Snapshot mug\", \"price\": 4.5}"))
+                .andExpect(status().isCreated())
+                .andReturn();
+        long id = objectMapper.readTree(created.getResponse().getContentAsString()).get("id").asLong();
+
+        mockMvc.perform(get("/api/products/" + id))
+                .andExpect(jsonPath("$.name").value("Snapshot mug"))
+                .andExpect(header().string("ETag", "\"0\""));
+        mockMvc.perform(get("/api/products/" + id).header("If-None-Match", "\"0\""))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(put("/api/products/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Snapshot cup\", \"price\": 5.0}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/" + id))
+                .andExpect(jsonPath("$.name").value("Snapshot cup"))
+                .andExpect(header().string("ETag", "\"1\""));
+
+        // A late report of an older write is ignored; one without a version is applied with its version unknown, so
+        // the page has no ETag and the product is read from the database
+        productCatalog.upserted(new ProductView(id, "Snapshot mug", 4.5, 0L, null));
+        mockMvc.perform(get("/api/products"))
+                .andExpect(jsonPath("$[0].name").value("Snapshot cup"))
+                .andExpect(header().exists("ETag"));
+        productCatalog.upserted(new ProductView(id, "Snapshot mug", 4.5, null, null));
+        mockMvc.perform(get("/api/products"))
+                .andExpect(header().doesNotExist("ETag"));
+        mockMvc.perform(get("/api/products/" + id))
+                .andExpect(jsonPath("$.name").value("Snapshot cup"))
+                .andExpect(header().string("ETag", "\"1\""));
+        mockMvc.perform(put("/api/products/" + id + "/price").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\": 6.0}"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products"))
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].price").value(6.0));
+
+        // A row written behind the service's back is served from the database for single reads, but only listed
+        // after the next reload
+        Product direct = productRepo.save(new Product("Direct insert", 1.0));
+        mockMvc.perform(get("/api/products/" + direct.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Direct insert"));
+        mockMvc.perform(get("/api/products"))
+                .andExpect(jsonPath("$", hasSize(1)));
+        productCatalog.reload();
+        mockMvc.perform(get("/api/products"))
+                .andExpect(jsonPath("$[*].name", contains("Snapshot cup", "Direct insert")));
+
+        mockMvc.perform(delete("/api/products/" + id))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(delete("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(direct.getId()))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/" + id))
+                .andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/products"))
+                .andExpect(content().string("[]"));
+    }
+}
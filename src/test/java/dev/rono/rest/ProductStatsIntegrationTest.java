@@ -0,0 +1,168 @@
+package dev.rono.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductSearch;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.services.ProductService;
+import dev.rono.rest.services.ProductStatsService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for GET /api/products/stats and the in-memory summary behind it.
+// It checks that creates, updates and deletes (single, batch and through the web form) keep the figures exact
+// without a query, also for uncached products and repricing, and that the reconciliation fixes writes that bypass
+// the service.
+@SpringBootTest(properties = {
+        "product.rate-limit.enabled=false",
+        "product.changes.relay-interval-ms=3600000",
+        // Reconciliation only when a test asks for it
+        "product.stats.check-interval-ms=3600000",
+        "product.stats.histogram-bounds=10,100"
+})
+@AutoConfigureMockMvc
+public class ProductStatsIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private ProductStatsService productStatsService;
+
+    @Autowired
+    private ProductService productService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void setUp() {
+        productRepo.deleteAll();
+        cacheManager.getCache("products").clear();
+        productStatsService.reconcile();
+    }
+
+    @Test
+    void testStatsFollowEveryWrite() throws Exception {
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(0))
+                .andExpect(jsonPath("$.minPrice").value(nullValue()))
+                .andExpect(jsonPath("$.averagePrice").value(nullValue()));
+
+        // Created through the API, in a batch and through the web form
+        String created = mockMvc.perform(post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Product("Cheap", 5.0))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long cheapId = objectMapper.readTree(created).get("id").asLong();
+        mockMvc.perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(new Product("Mid", 50.0), new Product("Dear", 500.0)))))
+                .andExpect(status().isCreated());
+        mockMvc.perform(post("/products").param("name", "Form").param("price", "20.0"))
+                .andExpect(status().is3xxRedirection());
+
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.count").value(4))
+                .andExpect(jsonPath("$.minPrice").value(5.0))
+                .andExpect(jsonPath("$.maxPrice").value(500.0))
+                .andExpect(jsonPath("$.averagePrice").value(closeTo(143.75, 1e-9)))
+                .andExpect(jsonPath("$.histogram[0].to").value(10.0))
+                .andExpect(jsonPath("$.histogram[0].count").value(1))
+                .andExpect(jsonPath("$.histogram[1].count").value(2))
+                .andExpect(jsonPath("$.histogram[2].from").value(100.0))
+                .andExpect(jsonPath("$.histogram[2].count").value(1))
+                .andExpect(jsonPath("$.pendingCorrections").value(0));
+
+        // A cached product is updated with an exact delta; deleting the cheapest one moves the minimum
+        Product mid = productRepo.findAll().stream().filter(p -> p.getName().equals("Mid")).findFirst().orElseThrow();
+        mockMvc.perform(get("/api/products/" + mid.getId())).andExpect(status().isOk());
+        mockMvc.perform(put("/api/products/" + mid.getId()).contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Product("Mid", 150.0))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/" + cheapId)).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/products/" + cheapId)).andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.count").value(3))
+                .andExpect(jsonPath("$.minPrice").value(20.0))
+                .andExpect(jsonPath("$.averagePrice").value(closeTo(670.0 / 3, 1e-9)))
+                .andExpect(jsonPath("$.histogram[0].count").value(0))
+                .andExpect(jsonPath("$.histogram[1].count").value(1))
+                .andExpect(jsonPath("$.histogram[2].count").value(2))
+                .andExpect(jsonPath("$.pendingCorrections").value(0));
+    }
+
+    @Test
+    void testReconciliationFixesWhatTheDeltasMissed() throws Exception {
+        Product product = productRepo.save(new Product("Direct", 30.0)); // Bypasses the service
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.count").value(0)); // Served from the summary, not from the table
+
+        // The product is not cached, so the update reads its old price from the locked row: the delta is exact
+        mockMvc.perform(put("/api/products/" + product.getId()).contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Product("Direct", 300.0))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.pendingCorrections").value(0));
+
+        // The insert that bypassed the service waits for the reconcile interval
+        productStatsService.reconcileIfNeeded();
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.count").value(0));
+
+        productStatsService.reconcile();
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.minPrice").value(300.0))
+                .andExpect(jsonPath("$.averagePrice").value(300.0))
+                .andExpect(jsonPath("$.histogram[2].count").value(1))
+                .andExpect(jsonPath("$.pendingCorrections").value(0));
+
+        // A repricing chunk and an uncached delete read the prices they replace
+        productService.repriceRange(ProductSearch.none(),
+                product.getId(), product.getId(), 0.5, updated -> { });
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.averagePrice").value(150.0))
+                .andExpect(jsonPath("$.histogram[2].count").value(1))
+                .andExpect(jsonPath("$.pendingCorrections").value(0));
+        Product other = productRepo.save(new Product("Other", 60.0));
+        productStatsService.reconcile();
+        mockMvc.perform(delete("/api/products/" + other.getId())).andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.histogram[1].count").value(0))
+                .andExpect(jsonPath("$.pendingCorrections").value(0));
+
+        // A batch delete reads the prices it removes
+        mockMvc.perform(delete("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(product.getId()))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/stats"))
+                .andExpect(jsonPath("$.count").value(0))
+                .andExpect(jsonPath("$.histogram[2].count").value(0))
+                .andExpect(jsonPath("$.pendingCorrections").value(0));
+    }
+}
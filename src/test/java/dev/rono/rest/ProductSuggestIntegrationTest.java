@@ -0,0 +1,173 @@
+package dev.rono.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.services.ProductNameIndex;
+import dev.rono.rest.services.ProductSuggestService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for GET /api/products/suggest and the in-memory name index behind it.
+// It checks the ranking and the limit, and that creates, updates and deletes (single, batch and through the web
+// form) are visible in the suggestions right after they commit, and that updating the same product over and over, as
+// a price feed or a repricing job does, keeps the index bounded.
+// Other tests empty the table without going through the service, so the names used here are unique to this class.
+@SpringBootTest(properties = {
+        "product.rate-limit.enabled=false",
+        "product.changes.relay-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class ProductSuggestIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private ProductSuggestService productSuggestService;
+
+    @BeforeEach
+    void setUp() {
+        productRepo.deleteAll();
+    }
+
+    @Test
+    void testSuggestionsAreRankedAndLimited() throws Exception {
+        mockMvc.perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(
+                                new Product("Minizqmug", 5.0),             // "zqm" inside a word
+                                new Product("Big Zqmug", 6.0),             // word starts with "zqm"
+                                new Product("Zqmug Deluxe", 7.0),          // name starts with "zqm"
+                                new Product("Plain Cup", 8.0)))))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/products/suggest").param("q", "ZQMUG"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", contains("Zqmug Deluxe", "Big Zqmug", "Minizqmug")))
+                .andExpect(jsonPath("$[0].price").value(7.0))
+                .andExpect(jsonPath("$[0].version").doesNotExist());
+        mockMvc.perform(get("/api/products/suggest").param("q", "qmu"))
+                .andExpect(jsonPath("$", hasSize(3)));
+        // Short queries only match the start of a word
+        mockMvc.perform(get("/api/products/suggest").param("q", "zq"))
+                .andExpect(jsonPath("$[*].name", contains("Zqmug Deluxe", "Big Zqmug")));
+        mockMvc.perform(get("/api/products/suggest").param("q", "qm"))
+                .andExpect(jsonPath("$", empty()));
+        mockMvc.perform(get("/api/products/suggest").param("q", "zqmug").param("limit", "2"))
+                .andExpect(jsonPath("$[*].name", contains("Zqmug Deluxe", "Big Zqmug")));
+
+        // More matches than the largest limit: the limit is capped
+        mockMvc.perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(IntStream.range(0, 60)
+                                .mapToObj(i -> new Product("Zqmug " + i, 1.0)).toList())))
+                .andExpect(status().isCreated());
+        mockMvc.perform(get("/api/products/suggest").param("q", "zqmug").param("limit", "1000"))
+                .andExpect(jsonPath("$", hasSize(50)));
+        mockMvc.perform(get("/api/products/suggest"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testSuggestionsFollowEveryWrite() throws Exception {
+        String created = mockMvc.perform(post("/api/products").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Product("Wxvkettle", 10.0))))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        long id = objectMapper.readTree(created).get("id").asLong();
+        mockMvc.perform(post("/products").param("name", "Form Wxvkettle").param("price", "20.0"))
+                .andExpect(status().is3xxRedirection());
+        mockMvc.perform(get("/api/products/suggest").param("q", "wxvk"))
+                .andExpect(jsonPath("$[*].name", contains("Wxvkettle", "Form Wxvkettle")));
+
+        // A rename replaces the old name
+        mockMvc.perform(put("/api/products/" + id).contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Product("Wxvteapot", 12.0))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/suggest").param("q", "wxvk"))
+                .andExpect(jsonPath("$[*].name", contains("Form Wxvkettle")));
+        mockMvc.perform(get("/api/products/suggest").param("q", "wxvt"))
+                .andExpect(jsonPath("$[0].id").value(id))
+                .andExpect(jsonPath("$[0].price").value(12.0));
+
+        // Batch update and delete
+        Product form = productRepo.findAll().stream().filter(p -> p.getName().equals("Form Wxvkettle")).findFirst().orElseThrow();
+        Product renamed = new Product("Wxvteapot Form", 21.0);
+        renamed.setId(form.getId());
+        mockMvc.perform(put("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(renamed))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/suggest").param("q", "wxvt"))
+                .andExpect(jsonPath("$[*].name", contains("Wxvteapot", "Wxvteapot Form")));
+        mockMvc.perform(delete("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(form.getId()))))
+                .andExpect(status().isOk());
+        mockMvc.perform(delete("/api/products/" + id))
+                .andExpect(status().isNoContent());
+        mockMvc.perform(get("/api/products/suggest").param("q", "wxv"))
+                .andExpect(jsonPath("$", empty()));
+
+        // Products written around the service are picked up by the startup load
+        productRepo.save(new Product("Wxvdirect", 1.0));
+        productSuggestService.afterSingletonsInstantiated();
+        mockMvc.perform(get("/api/products/suggest").param("q", "wxv"))
+                .andExpect(jsonPath("$[*].name", contains("Wxvdirect")));
+    }
+
+    @Test
+    void testRepeatedUpdatesKeepTheIndexBounded() {
+        int updates = 100_000;
+
+        // Price-only updates are written in place
+        ProductNameIndex index = new ProductNameIndex();
+        index.put(1, "Copper kettle", 10.0);
+        index.put(2, "Tea pot", 5.0);
+        for (int i = 1; i <= updates; i++) {
+            index.put(1, "Copper kettle", 10.0 + i / 100.0);
+        }
+        assertEquals(2, index.documentCount());
+        assertEquals(2, index.size());
+        List<ProductView> suggestions = index.suggest("kett", 10);
+        assertEquals(1, suggestions.size());
+        assertEquals(10.0 + updates / 100.0, suggestions.get(0).price());
+
+        // Renames are compacted away like deletes, once more than half of the documents (and at least 1024) are removed
+        index = new ProductNameIndex();
+        index.put(1, "Copper kettle", 10.0);
+        index.put(2, "Tea pot", 5.0);
+        for (int i = 1; i <= updates; i++) {
+            index.put(1, "Copper kettle " + i, 10.0);
+            assertTrue(index.documentCount() <= 2 * 1024 + 4, "documents: " + index.documentCount());
+        }
+        assertEquals(2, index.size());
+        suggestions = index.suggest("copper", 10);
+        assertEquals(1, suggestions.size());
+        assertEquals("Copper kettle " + updates, suggestions.get(0).name());
+        assertEquals("Tea pot", index.suggest("tea", 10).get(0).name());
+    }
+}
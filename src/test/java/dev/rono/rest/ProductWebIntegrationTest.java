@@ -0,0 +1,88 @@
+package dev.rono.rest;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the Thymeleaf products page served by ProductWebController.
+// It checks that the page is paginated and sortable, and that unchanged pages are answered with 304 Not Modified.
+@SpringBootTest
+@AutoConfigureMockMvc
+public class ProductWebIntegrationTest {
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @BeforeEach
+    void setUp() {
+        // Start every test with 25 products: Product01..Product25 priced 1.0..25.0
+        productRepo.deleteAll();
+        productRepo.saveAll(IntStream.rangeClosed(1, 25)
+                .mapToObj(i -> new Product(String.format("Product%02d", i), (double) i))
+                .toList());
+    }
+
+    @Test
+    void testProductsPageShowsOnlyTheRequestedPage() throws Exception {
+        mockMvc.perform(get("/products?size=10&page=1"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("products", hasSize(10)))
+                .andExpect(content().string(containsString("Product11")))
+                .andExpect(content().string(not(containsString("Product10<"))))
+                .andExpect(content().string(containsString("Page 2 of 3")));
+    }
+
+    @Test
+    void testProductsPageIsSortable() throws Exception {
+        mockMvc.perform(get("/products?size=5&sort=price,desc"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Product25")))
+                .andExpect(content().string(not(containsString("Product01"))));
+
+        // Unknown sort fields fall back to the ID order instead of failing
+        mockMvc.perform(get("/products?size=5&sort=unknown"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("Product01")));
+    }
+
+    @Test
+    void testConditionalGetOfProductsPage() throws Exception {
+        String eTag = mockMvc.perform(get("/products"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(header().string(HttpHeaders.CACHE_CONTROL, containsString("no-cache")))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Nothing changed: the page is not rendered again
+        mockMvc.perform(get("/products").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
+
+        // Editing a product on the page changes its ETag
+        Product first = productRepo.findAll().get(0);
+        first.setPrice(99.0);
+        productRepo.save(first);
+        String newETag = mockMvc.perform(get("/products").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotEquals(eTag, newETag);
+    }
+}
@@ -0,0 +1,125 @@
+package dev.rono.rest;
+
+import dev.rono.rest.config.ConcurrencyLimiter;
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the rate limiter and load shedder in front of the product API.
+// The limits are tiny so that a few requests reach them: 3 requests per client, and 1 export at a time in total.
+@SpringBootTest(properties = {
+        "product.rate-limit.per-client.rate=0.01",
+        "product.rate-limit.per-client.burst=3",
+        "product.rate-limit.endpoints.exportProducts.global.rate=0.01",
+        "product.rate-limit.endpoints.exportProducts.global.burst=1",
+        "product.rate-limit.api-keys=client-a,client-b,client-c,client-d,client-e",
+        "product.changes.relay-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class RateLimitIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testClientOverItsRateLimitGets429() throws Exception {
+        // Each test uses its own API key, so its client bucket starts full
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/products").header("X-API-Key", "client-a"))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/products").header("X-API-Key", "client-a"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER))
+                .andExpect(jsonPath("$.error").value("Rate limit exceeded, slow down"));
+
+        // Another client is not affected
+        mockMvc.perform(get("/api/products").header("X-API-Key", "client-b"))
+                .andExpect(status().isOk());
+
+        assertTrue(meterRegistry.get("product.api.requests.rejected")
+                .tag("endpoint", "getAllProducts").tag("reason", "client").counter().count() >= 1);
+    }
+
+    @Test
+    void testUnknownApiKeysShareTheRemoteAddressLimit() throws Exception {
+        // A new made-up key on every request does not get a new bucket: they all count against the address
+        for (int i = 0; i < 3; i++) {
+            mockMvc.perform(get("/api/products").header("X-API-Key", "made-up-" + i).with(remoteAddr("10.0.0.7")))
+                    .andExpect(status().isOk());
+        }
+        mockMvc.perform(get("/api/products").header("X-API-Key", "made-up-3").with(remoteAddr("10.0.0.7")))
+                .andExpect(status().isTooManyRequests());
+
+        // A configured key still has a bucket of its own from the same address
+        mockMvc.perform(get("/api/products").header("X-API-Key", "client-b").with(remoteAddr("10.0.0.7")))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    void testEndpointLimitIsSharedByAllClients() throws Exception {
+        mockMvc.perform(get("/api/products/export").header("X-API-Key", "client-c"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/export").header("X-API-Key", "client-d"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(jsonPath("$.error").value("Too many requests to this endpoint, retry later"));
+    }
+
+    @Test
+    void testRequestsOverConcurrencyLimitAreShedWith503() throws Exception {
+        Product product = productRepo.save(new Product("Shed", 1.0));
+
+        // Take every permit, as if that many requests were in flight
+        int taken = 0;
+        while (concurrencyLimiter.tryAcquire()) {
+            taken++;
+        }
+        try {
+            mockMvc.perform(get("/api/products/" + product.getId()).header("X-API-Key", "client-e"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                    .andExpect(jsonPath("$.error").value("Server is overloaded, retry later"));
+        } finally {
+            for (int i = 0; i < taken; i++) {
+                concurrencyLimiter.release(0, false);
+            }
+        }
+
+        // Once requests complete, new ones are admitted again
+        assertEquals(0, concurrencyLimiter.getInFlight());
+        mockMvc.perform(get("/api/products/" + product.getId()).header("X-API-Key", "client-e"))
+                .andExpect(status().isOk());
+    }
+
+    // Sends the request from the given client address
+    private static RequestPostProcessor remoteAddr(String address) {
+        return request -> {
+            request.setRemoteAddr(address);
+            return request;
+        };
+    }
+}
@@ -0,0 +1,199 @@
+package dev.rono.rest;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ReactiveProductRepo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// This class is an integration test for the reactive (WebFlux + R2DBC) variant of the Product API.
+// It starts the application with the "reactive" profile on Netty, against an in-memory H2 database
+// through R2DBC ("reactive-h2" profile), and checks that it keeps the contract of ProductController.
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles({"reactive", "reactive-h2"})
+public class ReactiveProductApiIntegrationTest {
+    @Autowired
+    private WebTestClient webTestClient;
+    // This field sends real HTTP requests to the application started on a random port.
+
+    @Autowired
+    private ReactiveProductRepo productRepo;
+    // This field is used to reset and seed the products table.
+
+    @BeforeEach
+    void setUp() {
+        // Clear the products table before each test to ensure a clean state.
+        productRepo.deleteAll().block();
+    }
+
+    @Test
+    void testCreateAndGetProduct() {
+        Product created = webTestClient.post().uri("/api/products")
+                .bodyValue(new Product("ReactiveProd", 42.0))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody(Product.class).returnResult().getResponseBody();
+        assertNotNull(created.getId());
+
+        webTestClient.get().uri("/api/products/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("ReactiveProd")
+                .jsonPath("$.price").isEqualTo(42.0);
+    }
+
+    @Test
+    void testCreateProductWithInvalidData() {
+        // Validation errors have the same field -> message body as on the servlet stack
+        webTestClient.post().uri("/api/products")
+                .bodyValue(new Product("", -1.0))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Name is Mandatory")
+                .jsonPath("$.price").isEqualTo("Price must be positive");
+    }
+
+    @Test
+    void testGetNonExistentProduct() {
+        webTestClient.get().uri("/api/products/999999")
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.error").isEqualTo("Product not found with ID: 999999");
+    }
+
+    @Test
+    void testGetAllProductsWithKeysetPagination() {
+        List<Long> ids = createProducts(5);
+
+        // A full page carries the cursor of the next one
+        webTestClient.get().uri("/api/products?limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals("X-Next-Cursor", String.valueOf(ids.get(1)))
+                .expectHeader().exists(HttpHeaders.LINK)
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].id").isEqualTo(ids.get(0));
+
+        // The last page is not full, so it has no cursor
+        webTestClient.get().uri("/api/products?limit=2&after=" + ids.get(3))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist("X-Next-Cursor")
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(1)
+                .jsonPath("$[0].id").isEqualTo(ids.get(4));
+    }
+
+    @Test
+    void testSortProductsByPriceWithKeysetPagination() {
+        createProducts(5); // Prices 1.0 to 5.0
+
+        Long cursor = Long.valueOf(webTestClient.get().uri("/api/products?sort=price&direction=desc&minPrice=2&limit=2")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].price").isEqualTo(5.0)
+                .jsonPath("$[1].price").isEqualTo(4.0)
+                .returnResult().getResponseHeaders().getFirst("X-Next-Cursor"));
+
+        webTestClient.get().uri("/api/products?sort=price&direction=desc&minPrice=2&limit=2&after=" + cursor)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(2)
+                .jsonPath("$[0].price").isEqualTo(3.0)
+                .jsonPath("$[1].price").isEqualTo(2.0);
+    }
+
+    @Test
+    void testStreamAllProductsAsNdjson() {
+        createProducts(3);
+
+        String body = webTestClient.get().uri("/api/products/stream")
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith("application/x-ndjson")
+                .expectBody(String.class).returnResult().getResponseBody();
+        assertEquals(3, body.strip().split("\n").length);
+        assertTrue(body.startsWith("{\"id\":"));
+    }
+
+    @Test
+    void testStreamAllProductsAsJsonArray() {
+        createProducts(3);
+
+        webTestClient.get().uri("/api/products/stream")
+                .accept(MediaType.APPLICATION_JSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.length()").isEqualTo(3);
+    }
+
+    @Test
+    void testConditionalGetAndUpdateWithIfMatch() {
+        Long id = createProducts(1).get(0);
+
+        webTestClient.get().uri("/api/products/{id}", id)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified();
+
+        // Updating with the current version succeeds and returns the next one
+        webTestClient.put().uri("/api/products/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(new Product("Updated", 9.0))
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"1\"");
+
+        // The old version no longer matches
+        webTestClient.put().uri("/api/products/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .bodyValue(new Product("Stale", 1.0))
+                .exchange()
+                .expectStatus().isEqualTo(412);
+        webTestClient.delete().uri("/api/products/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isEqualTo(412);
+
+        webTestClient.delete().uri("/api/products/{id}", id)
+                .header(HttpHeaders.IF_MATCH, "\"1\"")
+                .exchange()
+                .expectStatus().isNoContent();
+        webTestClient.delete().uri("/api/products/{id}", id)
+                .exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // Creates products named Product1..n priced 1.0..n through the API and returns their IDs in order
+    private List<Long> createProducts(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(i -> webTestClient.post().uri("/api/products")
+                        .bodyValue(new Product("Product" + i, (double) i))
+                        .exchange()
+                        .expectStatus().isCreated()
+                        .expectBody(Product.class).returnResult().getResponseBody().getId())
+                .toList();
+    }
+}
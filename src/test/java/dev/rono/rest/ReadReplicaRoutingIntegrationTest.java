@@ -0,0 +1,135 @@
+package dev.rono.rest;
+
+import dev.rono.rest.config.CacheConfig;
+import dev.rono.rest.config.ReadRouting;
+import dev.rono.rest.config.ReadYourWritesFilter;
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import jakarta.servlet.http.Cookie;
+
+import java.sql.Timestamp;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the read/write split (ReadReplicaConfig).
+// Two in-memory H2 databases stand in for the primary and a read replica; nothing replicates between them, so a
+// read shows which database it went to. A third replica URL points at a server that does not exist, to check
+// that reads fail over to the healthy replica.
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReadReplicaRoutingIntegrationTest.PRIMARY_URL,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "product.datasource.replica-urls=jdbc:h2:tcp://localhost:1/mem:unreachable," + ReadReplicaRoutingIntegrationTest.REPLICA_URL,
+        "product.changes.relay-interval-ms=3600000"
+})
+@AutoConfigureMockMvc
+public class ReadReplicaRoutingIntegrationTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    // Hibernate only creates the schema on the primary, the replica gets the same table from a script
+    static final String REPLICA_URL = "jdbc:h2:mem:replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;"
+            + "INIT=RUNSCRIPT FROM 'classpath:db/reactive-h2-schema.sql'";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    // Direct access to the replica database, used to play the part of replication
+    private final JdbcTemplate replica = new JdbcTemplate(new DriverManagerDataSource(REPLICA_URL, "sa", ""));
+
+    @BeforeEach
+    void setUp() {
+        productRepo.deleteAll();
+        replica.update("delete from products");
+        cacheManager.getCache(CacheConfig.PRODUCTS_CACHE).clear();
+    }
+
+    @Test
+    void testReadsGoToReplicaAndWritesToPrimary() throws Exception {
+        // The write goes to the primary and marks the client for read-your-writes
+        Cookie readPrimary = mockMvc.perform(post("/api/products")
+                        .contentType("application/json")
+                        .content("{\"name\":\"Widget\",\"price\":10.0}"))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertNotNull(readPrimary);
+
+        // Another client reads from the replica, which has not received the product yet
+        // (the unreachable replica is tried too on some of these requests, and skipped)
+        for (int i = 0; i < 4; i++) {
+            mockMvc.perform(get("/api/products"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$", hasSize(0)));
+        }
+        mockMvc.perform(get("/products"))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("products", hasSize(0)));
+
+        // The client that wrote reads its own write from the primary
+        mockMvc.perform(get("/api/products").cookie(readPrimary))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Widget"));
+
+        // Once the row has been replicated, every client sees it
+        Product widget = ReadRouting.onPrimary(() -> productRepo.findAll()).get(0);
+        replica.update("insert into products (id, name, price, version, last_modified) values (?, ?, ?, ?, ?)",
+                widget.getId(), widget.getName(), widget.getPrice(), widget.getVersion(), Timestamp.from(widget.getLastModified()));
+        mockMvc.perform(get("/api/products"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("Widget"));
+    }
+
+    @Test
+    void testWriteThatChangesNothingDoesNotPinReads() throws Exception {
+        // The update of a missing product takes a read-write connection but modifies no row
+        mockMvc.perform(put("/api/products/999999")
+                        .contentType("application/json")
+                        .content("{\"name\":\"Missing\",\"price\":1.0}"))
+                .andExpect(status().isNotFound())
+                .andExpect(cookie().doesNotExist(ReadYourWritesFilter.COOKIE_NAME));
+    }
+
+    @Test
+    void testCachedProductIsLoadedFromPrimary() throws Exception {
+        // The single-product cache is filled from the primary, so it never caches a stale replica row
+        Product saved = productRepo.save(new Product("Gadget", 5.0));
+        mockMvc.perform(get("/api/products/" + saved.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Gadget"));
+    }
+
+    @Test
+    void testFormPostRedirectsToPrimaryReads() throws Exception {
+        // The products page after a form post shows the new product, although the replica does not have it
+        Cookie readPrimary = mockMvc.perform(post("/products")
+                        .param("name", "Lamp")
+                        .param("price", "12.5"))
+                .andExpect(status().is3xxRedirection())
+                .andReturn().getResponse().getCookie(ReadYourWritesFilter.COOKIE_NAME);
+        assertNotNull(readPrimary);
+
+        mockMvc.perform(get("/products").cookie(readPrimary))
+                .andExpect(status().isOk())
+                .andExpect(model().attribute("products", hasSize(1)));
+    }
+}
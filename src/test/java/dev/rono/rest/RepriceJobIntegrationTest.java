@@ -0,0 +1,232 @@
+package dev.rono.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductChange;
+import dev.rono.rest.models.RepriceJob;
+import dev.rono.rest.repositories.ProductChangeRepo;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.repositories.RepriceJobRepo;
+import dev.rono.rest.services.RepriceJobService;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the bulk repricing jobs (POST /api/products/jobs/reprice, RepriceJobService).
+// It checks that a job reprices exactly the products matching its filters, chunk by chunk, with their outbox rows and
+// the progress report, that prices never drop to zero, and that a job left RUNNING resumes from its checkpoints
+// without applying a checkpointed chunk again, but only once the lease of the instance running it has expired.
+@SpringBootTest(properties = {
+        "product.rate-limit.enabled=false",
+        "product.changes.relay-interval-ms=3600000",
+        // Small chunks, so a few dozen products make several of them
+        "product.reprice.chunk-size=10",
+        // Resumed only when a test asks for it
+        "product.reprice.resume-on-startup=false"
+})
+@AutoConfigureMockMvc
+public class RepriceJobIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private ProductChangeRepo productChangeRepo;
+
+    @Autowired
+    private RepriceJobRepo repriceJobRepo;
+
+    @Autowired
+    private RepriceJobService repriceJobService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        productRepo.deleteAll();
+    }
+
+    @Test
+    void testJobRepricesMatchingProducts() throws Exception {
+        List<Product> matching = productRepo.saveAll(IntStream.range(0, 45)
+                .mapToObj(i -> new Product("Reprice item " + i, 10.0 + i)).toList());
+        Product other = productRepo.save(new Product("Other item", 10.0));
+        Product penny = productRepo.save(new Product("Reprice penny", 0.01));
+
+        MvcResult started = mockMvc.perform(post("/api/products/jobs/reprice").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"percent\": 10, \"name\": \"Reprice item\"}"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.status").value("RUNNING"))
+                .andReturn();
+        long jobId = objectMapper.readTree(started.getResponse().getContentAsString()).get("id").asLong();
+        assertThat(started.getResponse().getHeader("Location"), endsWith("/api/products/jobs/" + jobId));
+
+        JsonNode job = awaitJob(jobId);
+        assertEquals("COMPLETED", job.get("status").asText());
+        assertEquals(job.get("totalChunks").asInt(), job.get("completedChunks").asInt());
+        assertEquals(100.0, job.get("progress").asDouble());
+        assertEquals(45, job.get("rowsUpdated").asLong());
+        assertTrue(job.get("rowsPerSecond").asDouble() > 0);
+
+        Map<Long, Product> products = productRepo.findAll().stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity()));
+        for (int i = 0; i < matching.size(); i++) {
+            Product product = products.get(matching.get(i).getId());
+            assertEquals(Math.round((10.0 + i) * 1.1 * 100) / 100.0, product.getPrice());
+            assertEquals(1L, product.getVersion());
+        }
+        assertEquals(10.0, products.get(other.getId()).getPrice());
+        assertEquals(0L, products.get(other.getId()).getVersion());
+
+        // Every repriced product has its change row with the new price and version
+        Set<Long> matchingIds = matching.stream().map(Product::getId).collect(Collectors.toSet());
+        List<ProductChange> changes = productChangeRepo.findAll().stream()
+                .filter(change -> matchingIds.contains(change.getProductId())).toList();
+        assertEquals(45, changes.size());
+        changes.forEach(change -> {
+            assertEquals(ProductChange.Type.UPDATED, change.getType());
+            assertEquals(products.get(change.getProductId()).getPrice(), change.getPrice());
+            assertEquals(1L, change.getVersion());
+        });
+        mockMvc.perform(get("/api/products/" + matching.get(0).getId()))
+                .andExpect(jsonPath("$.price").value(11.0));
+
+        // A price that would round to zero is left as it is
+        MvcResult cut = mockMvc.perform(post("/api/products/jobs/reprice").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"percent\": -99.9, \"nameContains\": \"penny\"}"))
+                .andExpect(status().isAccepted())
+                .andReturn();
+        job = awaitJob(objectMapper.readTree(cut.getResponse().getContentAsString()).get("id").asLong());
+        assertEquals("COMPLETED", job.get("status").asText());
+        assertEquals(0, job.get("rowsUpdated").asLong());
+        assertEquals(0.01, productRepo.findById(penny.getId()).orElseThrow().getPrice());
+    }
+
+    @Test
+    void testInvalidRequests() throws Exception {
+        mockMvc.perform(post("/api/products/jobs/reprice").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"percent\": -100}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.percent").value("Percent must be greater than -100"));
+        mockMvc.perform(post("/api/products/jobs/reprice").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Mug\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.percent").value("Percent must be provided"));
+        mockMvc.perform(get("/api/products/jobs/" + Long.MAX_VALUE))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.error").value("Repricing job not found with ID: " + Long.MAX_VALUE));
+    }
+
+    @Test
+    void testJobResumesFromCheckpoints() throws Exception {
+        List<Product> products = productRepo.saveAll(IntStream.range(0, 30)
+                .mapToObj(i -> new Product("Resumed item " + i, 10.0)).toList());
+        long firstId = products.get(0).getId();
+        long lastId = products.get(products.size() - 1).getId();
+
+        // A job that crashed after its first chunk: the chunk's checkpoint committed, the job is still RUNNING and
+        // nobody holds its lease (the checkpoint is inserted without repricing, so a chunk applied again would show)
+        RepriceJob crashed = new RepriceJob();
+        crashed.setStatus(RepriceJob.Status.RUNNING);
+        crashed.setPercent(100.0);
+        crashed.setFirstId(firstId);
+        crashed.setLastId(lastId);
+        crashed.setChunkSize(10);
+        crashed.setTotalChunks((int) ((lastId - firstId) / 10 + 1));
+        crashed.setCreatedAt(Instant.now());
+        crashed.setStartedAt(Instant.now());
+        RepriceJob saved = repriceJobRepo.save(crashed);
+        transactionTemplate.executeWithoutResult(status -> repriceJobRepo.insertChunk(saved.getId(), 0, 10, Instant.now()));
+
+        repriceJobService.resumeJobs();
+
+        JsonNode job = awaitJob(saved.getId());
+        assertEquals("COMPLETED", job.get("status").asText());
+        assertEquals(saved.getTotalChunks(), job.get("completedChunks").asInt());
+        for (Product product : productRepo.findAllById(products.stream().map(Product::getId).toList())) {
+            assertEquals(product.getId() <= saved.chunkEnd(0) ? 10.0 : 20.0, product.getPrice());
+        }
+    }
+
+    @Test
+    void testJobLeasedByLiveInstanceIsNotResumed() throws Exception {
+        Product product = productRepo.save(new Product("Leased item", 10.0));
+
+        // A job another instance is running right now: its lease was renewed a moment ago
+        RepriceJob leased = new RepriceJob();
+        leased.setStatus(RepriceJob.Status.RUNNING);
+        leased.setPercent(100.0);
+        leased.setFirstId(product.getId());
+        leased.setLastId(product.getId());
+        leased.setChunkSize(10);
+        leased.setTotalChunks(1);
+        leased.setCreatedAt(Instant.now().minusSeconds(600));
+        leased.setStartedAt(Instant.now().minusSeconds(600));
+        leased.setOwner("other-instance");
+        leased.setHeartbeatAt(Instant.now());
+        RepriceJob saved = repriceJobRepo.save(leased);
+
+        repriceJobService.resumeJobs();
+
+        RepriceJob job = repriceJobRepo.findById(saved.getId()).orElseThrow();
+        assertEquals(RepriceJob.Status.RUNNING, job.getStatus());
+        assertEquals("other-instance", job.getOwner());
+        assertTrue(repriceJobRepo.findCompletedChunks(saved.getId()).isEmpty());
+        assertEquals(10.0, productRepo.findById(product.getId()).orElseThrow().getPrice());
+
+        // Once the lease has expired (the other instance died), the job is taken over and completed
+        job.setHeartbeatAt(Instant.now().minusSeconds(3600));
+        repriceJobRepo.save(job);
+        repriceJobService.resumeJobs();
+
+        assertEquals("COMPLETED", awaitJob(saved.getId()).get("status").asText());
+        assertEquals(20.0, productRepo.findById(product.getId()).orElseThrow().getPrice());
+    }
+
+    // Polls the job until it is no longer running
+    private JsonNode awaitJob(long jobId) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            MvcResult result = mockMvc.perform(get("/api/products/jobs/" + jobId))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            JsonNode job = objectMapper.readTree(result.getResponse().getContentAsString());
+            if (!job.get("status").asText().equals("RUNNING") || System.currentTimeMillis() > deadline) {
+                return job;
+            }
+            Thread.sleep(50);
+        }
+    }
+}
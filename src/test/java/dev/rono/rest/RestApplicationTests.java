@@ -1,13 +1,35 @@
 package dev.rono.rest;
 
 import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ApplicationContext;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
 
 @SpringBootTest
 class RestApplicationTests {
 
+    @Autowired
+    private ApplicationContext context;
+
     @Test
     void contextLoads() {
     }
 
+    @Test
+    void testBootTaskExecutorAndSchedulerAreKept() {
+        // The async MVC requests (SSE, streaming) run on Boot's applicationTaskExecutor, which Boot only creates when
+        // the application defines no Executor of its own; the scheduler is Boot's, sized by spring.task.scheduling
+        assertInstanceOf(AsyncTaskExecutor.class,
+                context.getBean(TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME));
+        TaskScheduler scheduler = context.getBean("taskScheduler", TaskScheduler.class);
+        assertEquals(4, assertInstanceOf(ThreadPoolTaskScheduler.class, scheduler).getScheduledThreadPoolExecutor()
+                .getCorePoolSize());
+    }
 }
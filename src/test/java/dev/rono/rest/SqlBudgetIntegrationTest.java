@@ -0,0 +1,125 @@
+package dev.rono.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import org.junit.jupiter.api.Test;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// This class is an integration test for the per-request SQL instrumentation (SqlBudgetFilter, SqlCountingDataSource).
+// With a budget of 2 statements and no exempt endpoints, it checks that requests over the budget and requests that
+// repeat a statement are flagged, and that the statements and requests are recorded as Flight Recorder events.
+@SpringBootTest(properties = {
+        "product.rate-limit.enabled=false",
+        "product.changes.relay-interval-ms=3600000",
+        "product.sql-budget.max-statements=2",
+        "product.sql-budget.repeated-statements=3",
+        "product.sql-budget.exempt-endpoints="
+})
+@AutoConfigureMockMvc
+public class SqlBudgetIntegrationTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ProductRepo productRepo;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    void testRequestsOverBudgetAreFlagged() throws Exception {
+        Product product = productRepo.save(new Product("Budgeted", 10.0));
+        double overBefore = exceeded("PUT", "/api/products/{id}/price", "statements");
+        double repeatedBefore = exceeded("POST", "/api/products/batch", "repeated");
+
+        // Two statements (conditional update of a cached product, outbox insert): within the budget
+        mockMvc.perform(get("/api/products/" + product.getId())).andExpect(status().isOk());
+        mockMvc.perform(put("/api/products/" + product.getId()).header("If-Match", "\"0\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"Budgeted\", \"price\": 11.0}"))
+                .andExpect(status().isOk());
+        assertEquals(0, exceeded("PUT", "/api/products/{id}", "statements"));
+
+        // Three statements (read, update, outbox insert): over it
+        mockMvc.perform(put("/api/products/" + product.getId() + "/price").contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"price\": 12.0}"))
+                .andExpect(status().isOk());
+        assertEquals(overBefore + 1, exceeded("PUT", "/api/products/{id}/price", "statements"));
+
+        // Three chunks of 50 run the same insert three times
+        mockMvc.perform(post("/api/products/batch").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(IntStream.range(0, 150)
+                                .mapToObj(i -> new Product("Batched " + i, 1.0)).toList())))
+                .andExpect(status().isCreated());
+        assertEquals(repeatedBefore + 1, exceeded("POST", "/api/products/batch", "repeated"));
+
+        // The web pages are measured as well
+        mockMvc.perform(get("/products")).andExpect(status().isOk());
+        assertTrue(meterRegistry.get("product.sql.statements").tag("uri", "/products").summary().count() > 0);
+    }
+
+    @Test
+    void testStatementsAndRequestsAreRecordedAsFlightRecorderEvents() throws Exception {
+        Product product = productRepo.save(new Product("Recorded", 10.0));
+        Path file = Files.createTempFile("sql-budget", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("dev.rono.rest.SqlStatement");
+            recording.enable("dev.rono.rest.SqlRequest");
+            recording.start();
+            mockMvc.perform(get("/api/products").param("after", String.valueOf(product.getId() - 1)).param("limit", "1"))
+                    .andExpect(status().isOk());
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            RecordedEvent request = events.stream()
+                    .filter(event -> event.getEventType().getName().equals("dev.rono.rest.SqlRequest"))
+                    .filter(event -> "/api/products".equals(event.getString("endpoint")))
+                    .findFirst().orElseThrow();
+            assertEquals("GET", request.getString("method"));
+            assertEquals(200, request.getInt("status"));
+            assertEquals(1, request.getInt("statements"));
+            assertEquals(1, request.getLong("rowsFetched"));
+            assertFalse(request.getBoolean("overBudget"));
+            assertTrue(events.stream()
+                    .filter(event -> event.getEventType().getName().equals("dev.rono.rest.SqlStatement"))
+                    .anyMatch(event -> event.getString("sql").contains("from products")));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private double exceeded(String method, String uri, String reason) {
+        var counter = meterRegistry.find("product.sql.budget.exceeded")
+                .tags("method", method, "uri", uri, "reason", reason).counter();
+        return counter == null ? 0 : counter.count();
+    }
+}
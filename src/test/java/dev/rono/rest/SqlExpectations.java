@@ -0,0 +1,51 @@
+package dev.rono.rest;
+
+import dev.rono.rest.config.SqlRequestStats;
+
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultMatcher;
+
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// MockMvc result matchers on the SQL a request ran, as recorded by SqlBudgetFilter
+// Used to lock in the number of statements per endpoint, so an extra query (a read before a write, an N+1 loop)
+// fails the build instead of reaching production:
+//     mockMvc.perform(get("/api/products/1")).andExpect(sqlStatements(1));
+public final class SqlExpectations {
+
+    // Product IDs come from a sequence in blocks of 50, so one insert in 50 also fetches the next block;
+    // those statements are left out, or the counts would depend on the order the tests run in
+    private static final Pattern ID_ALLOCATION = Pattern.compile("(?i).*\\bproduct_seq\\b.*");
+
+    private SqlExpectations() {
+    }
+
+    // The request ran exactly this many JDBC statements (a JDBC batch counts as one), ID allocation aside
+    public static ResultMatcher sqlStatements(int expected) {
+        return result -> {
+            Map<String, Integer> executions = stats(result).getExecutions();
+            int statements = executions.entrySet().stream()
+                    .filter(entry -> !ID_ALLOCATION.matcher(entry.getKey()).matches())
+                    .mapToInt(Map.Entry::getValue).sum();
+            assertEquals(expected, statements,
+                    () -> "SQL statements of " + result.getRequest().getRequestURI() + ": " + executions);
+        };
+    }
+
+    // The request read at most this many rows from the database
+    public static ResultMatcher rowsFetchedAtMost(long max) {
+        return result -> assertTrue(stats(result).getRowsFetched() <= max,
+                () -> "Rows fetched by " + result.getRequest().getRequestURI() + ": " + stats(result).getRowsFetched());
+    }
+
+    private static SqlRequestStats stats(MvcResult result) {
+        SqlRequestStats stats = (SqlRequestStats) result.getRequest().getAttribute(SqlRequestStats.ATTRIBUTE);
+        assertNotNull(stats, "No SQL stats recorded: is product.sql-budget.enabled off, or the path not covered?");
+        return stats;
+    }
+}
@@ -0,0 +1,298 @@
+package dev.rono.rest;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.repositories.ReactiveProductRepo;
+import dev.rono.rest.services.ReactiveProductService;
+
+import io.r2dbc.spi.ConnectionFactory;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.ClassUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// This class is a load test comparing platform threads, virtual threads and the reactive stack for the Product API.
+// It is tagged "load" and only runs with the load-test Maven profile:
+//   ./mvnw test -Pload-test            (Java 17: platform threads and reactive)
+//   ./mvnw test -Pload-test,java21     (Java 21: platform threads, virtual threads and reactive)
+// Each mode starts the full application against its own in-memory H2 database, seeds it,
+// and drives GET /api/products with many concurrent clients for a fixed time.
+// The reactive mode runs the "reactive" profile (WebFlux on Netty, R2DBC instead of JDBC/JPA).
+// Every SQL statement is delayed (see SlowStatementInspector and SlowConnectionFactory) to stand in for a slow
+// MySQL server, so the run is bound by how many requests can wait on the database at the same time.
+// The settings below can be overridden with -Dloadtest.<name>=<value>, e.g. -Dloadtest.modes=platform,reactive.
+@Tag("load")
+class ThreadingModeLoadTest {
+
+    private static final int CLIENTS = Integer.getInteger("loadtest.clients", 100);
+    private static final int DURATION_SECONDS = Integer.getInteger("loadtest.durationSeconds", 10);
+    private static final int WARMUP_SECONDS = Integer.getInteger("loadtest.warmupSeconds", 3);
+    private static final int TOMCAT_THREADS = Integer.getInteger("loadtest.tomcatThreads", 20);
+    private static final int DB_POOL_SIZE = Integer.getInteger("loadtest.dbPoolSize", 40);
+    private static final int DB_LATENCY_MS = Integer.getInteger("loadtest.dbLatencyMs", 25);
+    private static final List<String> MODES = List.of(System.getProperty("loadtest.modes", "platform,virtual,reactive").split(","));
+    private static final int PRODUCTS = 1_000;
+
+    @Test
+    void compareThreadingModes() throws Exception {
+        Result platform = null;
+        for (String mode : MODES) {
+            if (mode.equals("virtual") && Runtime.version().feature() < 21) {
+                System.out.println("Virtual threads need Java 21: run with -Pload-test,java21 on a JDK 21 to compare");
+                continue;
+            }
+            Result result = mode.equals("reactive") ? runReactive() : run(mode.equals("virtual"));
+            System.out.println(result);
+            assertEquals(0, result.errors(), mode + " run had failed requests");
+            if (mode.equals("platform")) {
+                platform = result;
+            } else if (platform != null) {
+                System.out.printf("%s / platform throughput: %.2fx%n", mode, result.throughput() / platform.throughput());
+                // Platform threads are capped at TOMCAT_THREADS requests waiting on the database, virtual threads at
+                // DB_POOL_SIZE, so with the default settings virtual threads should get clearly more work done
+                // The reactive stack is only reported: it also waits on up to DB_POOL_SIZE statements, but it swaps
+                // the web server, JSON writer and driver as well, so the ratio is the A/B result rather than a given
+                if (mode.equals("virtual") && DB_POOL_SIZE > TOMCAT_THREADS) {
+                    assertTrue(result.throughput() > platform.throughput() * 1.2,
+                            mode + " did not improve throughput over platform threads");
+                }
+            }
+        }
+    }
+
+    // Starts the servlet/JPA application in the given threading mode, seeds it, and measures it under load
+    private Result run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        SlowStatementInspector.latencyMs = 0; // Seed at full speed
+        // Settings are passed as command line arguments so they take precedence over application.properties
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RestApplication.class)
+                .run(
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--server.tomcat.threads.max=" + TOMCAT_THREADS,
+                        "--spring.datasource.url=jdbc:h2:mem:loadtest-" + mode + ";MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.datasource.hikari.maximum-pool-size=" + DB_POOL_SIZE,
+                        "--spring.datasource.hikari.minimum-idle=" + DB_POOL_SIZE,
+                        "--spring.datasource.hikari.connection-timeout=30000",
+                        "--spring.jpa.show-sql=false",
+                        // The test measures the threading model itself, so nothing may be throttled or shed
+                        "--product.rate-limit.enabled=false",
+                        "--spring.jpa.properties.hibernate.session_factory.statement_inspector="
+                                + SlowStatementInspector.class.getName())) {
+            ProductRepo productRepo = context.getBean(ProductRepo.class);
+            productRepo.saveAll(IntStream.range(0, PRODUCTS).mapToObj(i -> new Product("Product" + i, 1.0 + i)).toList());
+            long firstId = productRepo.findAll().stream().mapToLong(Product::getId).min().orElseThrow();
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/products";
+
+            SlowStatementInspector.latencyMs = DB_LATENCY_MS;
+            drive(mode, baseUrl, firstId, WARMUP_SECONDS);
+            return drive(mode, baseUrl, firstId, DURATION_SECONDS);
+        } finally {
+            SlowStatementInspector.latencyMs = 0;
+        }
+    }
+
+    // Starts the reactive (WebFlux + R2DBC) application, seeds it, and measures it under the same load
+    private Result runReactive() throws Exception {
+        SlowConnectionFactory.latencyMs = 0; // Seed at full speed
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(RestApplication.class)
+                .profiles("reactive", "reactive-h2")
+                .initializers(SlowConnectionFactory::register)
+                .run(
+                        "--server.port=0",
+                        "--spring.r2dbc.url=r2dbc:h2:mem:///loadtest-reactive;MODE=MySQL;DB_CLOSE_DELAY=-1",
+                        "--spring.r2dbc.pool.initial-size=" + DB_POOL_SIZE,
+                        "--spring.r2dbc.pool.max-size=" + DB_POOL_SIZE,
+                        "--spring.r2dbc.pool.max-acquire-time=30s")) {
+            ReactiveProductService productService = context.getBean(ReactiveProductService.class);
+            Flux.range(0, PRODUCTS).concatMap(i -> productService.create(new Product("Product" + i, 1.0 + i))).blockLast();
+            long firstId = context.getBean(ReactiveProductRepo.class).findAll()
+                    .map(Product::getId).reduce(Math::min).block();
+            String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/products";
+
+            SlowConnectionFactory.latencyMs = DB_LATENCY_MS;
+            drive("reactive", baseUrl, firstId, WARMUP_SECONDS);
+            return drive("reactive", baseUrl, firstId, DURATION_SECONDS);
+        } finally {
+            SlowConnectionFactory.latencyMs = 0;
+        }
+    }
+
+    // Sends list requests from CLIENTS concurrent clients for the given number of seconds
+    private Result drive(String mode, String baseUrl, long firstId, int seconds) throws Exception {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        List<ClientResult> results = new ArrayList<>();
+        try {
+            List<Future<ClientResult>> futures = new ArrayList<>();
+            for (int c = 0; c < CLIENTS; c++) {
+                futures.add(clients.submit(() -> {
+                    ClientResult clientResult = new ClientResult();
+                    while (System.nanoTime() < deadline) {
+                        long after = firstId + ThreadLocalRandom.current().nextInt(PRODUCTS);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "?limit=20&after=" + after)).build();
+                        long start = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() != 200) {
+                                clientResult.errors++;
+                            }
+                        } catch (Exception ex) {
+                            clientResult.errors++;
+                        }
+                        clientResult.latenciesMicros.add((System.nanoTime() - start) / 1_000);
+                    }
+                    return clientResult;
+                }));
+            }
+            for (Future<ClientResult> future : futures) {
+                results.add(future.get());
+            }
+        } finally {
+            clients.shutdownNow();
+        }
+
+        long[] latencies = results.stream().flatMapToLong(r -> r.latenciesMicros.stream().mapToLong(Long::longValue)).sorted().toArray();
+        long errors = results.stream().mapToLong(r -> r.errors).sum();
+        return new Result(mode, latencies.length, errors, seconds, latencies);
+    }
+
+    private static class ClientResult {
+        private final List<Long> latenciesMicros = new ArrayList<>();
+        private long errors;
+    }
+
+    private record Result(String mode, long requests, long errors, int seconds, long[] latenciesMicros) {
+
+        double throughput() {
+            return (double) requests / seconds;
+        }
+
+        long percentileMillis(double percentile) {
+            if (latenciesMicros.length == 0) {
+                return 0;
+            }
+            int index = (int) Math.min(latenciesMicros.length - 1, Math.ceil(percentile * latenciesMicros.length) - 1);
+            return latenciesMicros[Math.max(0, index)] / 1_000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-8s: %,d requests in %ds = %,.0f req/s, p50 %d ms, p99 %d ms, max %d ms, %d errors "
+                            + "(clients=%d, tomcatThreads=%d, dbPool=%d, dbLatency=%d ms)",
+                    mode, requests, seconds, throughput(), percentileMillis(0.50), percentileMillis(0.99),
+                    Arrays.stream(latenciesMicros).max().orElse(0) / 1_000, errors,
+                    CLIENTS, TOMCAT_THREADS, DB_POOL_SIZE, DB_LATENCY_MS);
+        }
+    }
+
+    // Hibernate statement inspector that sleeps before every SQL statement to simulate a slow database
+    // It runs while the statement's connection is held, so it occupies a pool connection like a slow query would
+    public static class SlowStatementInspector implements StatementInspector {
+
+        static volatile int latencyMs;
+
+        @Override
+        public String inspect(String sql) {
+            int latency = latencyMs;
+            if (latency > 0) {
+                try {
+                    Thread.sleep(latency);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return sql;
+        }
+    }
+
+    // R2DBC counterpart of SlowStatementInspector: delays every statement of the reactive stack by latencyMs
+    // The delay is a timer rather than a sleep, so like a slow database it holds the pooled connection
+    // without blocking an event loop thread
+    static final class SlowConnectionFactory {
+
+        static volatile int latencyMs;
+
+        // Wraps the application's ConnectionFactory (the R2DBC pool) once it has been created
+        static void register(ConfigurableApplicationContext context) {
+            context.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof ConnectionFactory ? proxy(bean, (target, method, args) ->
+                            method.getName().equals("create")
+                                    ? Mono.from((Publisher<?>) method.invoke(target, args)).map(SlowConnectionFactory::slowConnection)
+                                    : method.invoke(target, args)) : bean;
+                }
+            });
+        }
+
+        private static Object slowConnection(Object connection) {
+            return proxy(connection, (target, method, args) -> method.getName().equals("createStatement")
+                    ? slowStatement(method.invoke(target, args))
+                    : method.invoke(target, args));
+        }
+
+        private static Object slowStatement(Object statement) {
+            Object[] self = new Object[1];
+            self[0] = proxy(statement, (target, method, args) -> {
+                if (method.getName().equals("execute")) {
+                    int latency = latencyMs;
+                    Publisher<?> results = (Publisher<?>) method.invoke(target, args);
+                    return latency > 0 ? Mono.delay(Duration.ofMillis(latency)).thenMany(results) : results;
+                }
+                Object result = method.invoke(target, args);
+                return result == target ? self[0] : result; // Keep the fluent bind(...) calls on the proxy
+            });
+            return self[0];
+        }
+
+        // A JDK proxy implementing every interface of the target, with calls routed through the given handler
+        private static Object proxy(Object target, Handler handler) {
+            return Proxy.newProxyInstance(target.getClass().getClassLoader(), ClassUtils.getAllInterfaces(target),
+                    (p, method, args) -> {
+                        try {
+                            return handler.invoke(target, method, args);
+                        } catch (InvocationTargetException ex) {
+                            throw ex.getTargetException();
+                        }
+                    });
+        }
+
+        private interface Handler {
+            Object invoke(Object target, Method method, Object[] args) throws Exception;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.RestApplication;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// This class starts the full application for the benchmarks against an in-memory H2 database,
+// so they run anywhere without a MySQL server. SQL logging is turned off so it does not skew the numbers.
+final class BenchmarkApplication {
+
+    private BenchmarkApplication() {
+    }
+
+    // Starts the application with its own H2 database; extra properties override the defaults
+    static ConfigurableApplicationContext start(String databaseName, String... properties) {
+        List<String> all = new ArrayList<>(List.of(
+                "server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:" + databaseName + ";MODE=MySQL;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE",
+                "spring.datasource.username=sa",
+                "spring.datasource.password=",
+                "spring.jpa.show-sql=false",
+                // Benchmarks measure the handlers, so the rate limiter must not throttle them
+                "product.rate-limit.enabled=false",
+                "logging.level.root=WARN"));
+        all.addAll(Arrays.asList(properties));
+        // Passed as command line arguments, which override application.properties (builder properties would not)
+        return new SpringApplicationBuilder(RestApplication.class)
+                .run(all.stream().map(property -> "--" + property).toArray(String[]::new));
+    }
+}
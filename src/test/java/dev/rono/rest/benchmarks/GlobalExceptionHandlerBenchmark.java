@@ -0,0 +1,54 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.controllers.ProductController;
+import dev.rono.rest.exceptions.GlobalExceptionHandler;
+import dev.rono.rest.exceptions.ResourceNotFoundException;
+import dev.rono.rest.models.Product;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.core.MethodParameter;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Measures the error paths of GlobalExceptionHandler: creating the exception (including its stack trace)
+// turning it into the error body returned with 404 Not Found and 400 Bad Request responses, and counting it.
+// ProductControllerBenchmark measures the same paths end to end through Spring MVC.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GlobalExceptionHandlerBenchmark {
+
+    private GlobalExceptionHandler handler;
+    private MethodParameter createProductBody;
+    private Product invalidProduct;
+
+    @Setup
+    public void setUp() throws Exception {
+        handler = new GlobalExceptionHandler(new SimpleMeterRegistry());
+        createProductBody = new MethodParameter(ProductController.class.getMethod("createProduct", Product.class), 0);
+        invalidProduct = new Product("", -10.0);
+    }
+
+    @Benchmark
+    public Map<String, String> resourceNotFound() {
+        return handler.handleResourceNotFoundException(new ResourceNotFoundException("Product not found with ID: 999"));
+    }
+
+    @Benchmark
+    public Map<String, String> validationFailed() {
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(invalidProduct, "product");
+        bindingResult.rejectValue("name", "NotBlank", "Name is Mandatory");
+        bindingResult.rejectValue("price", "Positive", "Price must be positive");
+        return handler.handleValidationException(new MethodArgumentNotValidException(createProductBody, bindingResult));
+    }
+}
@@ -0,0 +1,82 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+// Measures PUT /api/products/{id}/price under a pricing-engine burst: 4 threads updating the prices of 100 hot
+// products, written right away (writeBehind=false) or coalesced and flushed every 200 ms (writeBehind=true).
+// At the end of each run it prints the coalescing ratio (updates received per row written) and the flush latency.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class PriceUpdateBenchmark {
+
+    private static final int HOT_PRODUCTS = 100;
+
+    @Param({"false", "true"})
+    private boolean writeBehind;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("price-update-benchmark-" + writeBehind,
+                "product.price-updates.write-behind=" + writeBehind);
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        ProductRepo productRepo = context.getBean(ProductRepo.class);
+        firstId = productRepo.saveAll(IntStream.range(0, HOT_PRODUCTS).mapToObj(i -> new Product("Hot" + i, 10.0)).toList())
+                .stream().mapToLong(Product::getId).min().orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+        context.close(); // Writes what is still pending
+        double received = meterRegistry.get("product.price-updates").tag("outcome", "received").counter().count();
+        double written = meterRegistry.get("product.price-updates").tag("outcome", "written").counter().count();
+        System.out.printf("%nwriteBehind=%s: %,.0f updates received, %,.0f rows written, coalescing ratio %.1f%n",
+                writeBehind, received, written, received / Math.max(1, written));
+        if (writeBehind) {
+            Timer flush = meterRegistry.get("product.price-updates.flush").timer();
+            System.out.printf("flush latency per chunk: mean %.1f ms, max %.1f ms over %,d chunks%n",
+                    flush.mean(TimeUnit.MILLISECONDS), flush.max(TimeUnit.MILLISECONDS), flush.count());
+        }
+    }
+
+    @Benchmark
+    public MvcResult updatePrice() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String body = "{\"price\": " + (1 + random.nextInt(10_000) / 100.0) + "}";
+        return mockMvc.perform(put("/api/products/{id}/price", firstId + random.nextInt(HOT_PRODUCTS))
+                .contentType("application/json").content(body)).andReturn();
+    }
+}
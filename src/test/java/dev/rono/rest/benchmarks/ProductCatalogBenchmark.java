@@ -0,0 +1,122 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.services.CatalogSnapshot;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Compares the in-memory catalog (CatalogSnapshot) with the entity objects it replaces, on 1,000,000 products:
+// - the setup prints the heap used by a List<Product> and by the snapshot of the same rows, each measured after a
+//   full GC before and after building it (run with -f 1 and -jvmArgs -Xmx4g)
+// - writePageFromSnapshot copies a page of 100 pre-encoded rows, writePageWithJackson serializes the same page of
+//   ProductView records the way the database path does; run with -prof gc to compare the allocation per page
+// - applyOneChange is the cost of a write: the new snapshot copies the one segment that holds the product
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductCatalogBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+    private static final int PAGE_SIZE = 100;
+
+    private static final String[] COLORS = {"Red", "Blue", "Green", "Black", "White", "Silver", "Golden", "Ivory"};
+    private static final String[] ITEMS = {"Kettle", "Chair", "Lamp", "Mug", "Blanket", "Backpack", "Desk", "Teapot"};
+
+    private final OutputStream sink = OutputStream.nullOutputStream();
+
+    private ObjectWriter pageWriter;
+    private ObjectWriter rowWriter;
+    private CatalogSnapshot snapshot;
+    private List<ProductView> views;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        pageWriter = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // As Spring MVC writes it
+        rowWriter = objectMapper.writerFor(ProductView.class);
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+
+        long before = usedHeapAfterGc(memory);
+        List<Product> entities = new ArrayList<>(PRODUCTS);
+        Random random = new Random(42);
+        Instant now = Instant.now();
+        for (int id = 1; id <= PRODUCTS; id++) {
+            Product product = new Product(COLORS[random.nextInt(COLORS.length)] + " " + ITEMS[random.nextInt(ITEMS.length)]
+                    + " " + random.nextInt(1_000_000), 1 + random.nextInt(100_000) / 100.0);
+            product.setId((long) id);
+            product.setVersion((long) random.nextInt(5));
+            product.setLastModified(now.minusSeconds(random.nextInt(1_000_000)));
+            entities.add(product);
+        }
+        long entityBytes = usedHeapAfterGc(memory) - before;
+
+        before = usedHeapAfterGc(memory);
+        CatalogSnapshot.Builder builder = new CatalogSnapshot.Builder(rowWriter);
+        entities.forEach(product -> builder.add(ProductView.of(product)));
+        snapshot = builder.build();
+        long snapshotBytes = usedHeapAfterGc(memory) - before;
+
+        System.out.printf("%nList<Product>: %,d bytes (%,d per product)%nCatalogSnapshot: %,d bytes (%,d per product, JSON included)%n",
+                entityBytes, entityBytes / PRODUCTS, snapshotBytes, snapshotBytes / PRODUCTS);
+
+        // The Jackson side serializes views read by the database path, kept here so only the writing is measured
+        views = entities.stream().map(ProductView::of).toList();
+    }
+
+    @Benchmark
+    public CatalogSnapshot.Page writePageFromSnapshot() throws IOException {
+        CatalogSnapshot.Page page = snapshot.page(randomCursor(), PAGE_SIZE);
+        page.writeJson(sink);
+        return page;
+    }
+
+    @Benchmark
+    public List<ProductView> writePageWithJackson() throws IOException {
+        int from = (int) randomCursor();
+        List<ProductView> page = views.subList(from, from + PAGE_SIZE);
+        pageWriter.writeValue(sink, page);
+        return page;
+    }
+
+    @Benchmark
+    public CatalogSnapshot applyOneChange() {
+        long id = 1 + ThreadLocalRandom.current().nextInt(PRODUCTS);
+        TreeMap<Long, ProductView> change = new TreeMap<>();
+        change.put(id, new ProductView(id, "Repriced item " + id, 9.99, null, Instant.now()));
+        return snapshot.apply(change, rowWriter);
+    }
+
+    private static long randomCursor() {
+        return ThreadLocalRandom.current().nextInt(PRODUCTS - PAGE_SIZE);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
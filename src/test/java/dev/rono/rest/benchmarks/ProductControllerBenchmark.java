@@ -0,0 +1,103 @@
+package dev.rono.rest.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+// Measures end-to-end ProductController throughput through the full Spring MVC stack (MockMvc),
+// with the real service, cache, repository and an in-memory H2 database behind it.
+// It covers the success paths and the 404/400 error paths handled by GlobalExceptionHandler.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ProductControllerBenchmark {
+
+    private static final int PRODUCTS = 1_000;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private long firstId;
+    private byte[] productJson;
+    private byte[] invalidProductJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApplication.start("controller-benchmark");
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        ProductRepo productRepo = context.getBean(ProductRepo.class);
+        productRepo.saveAll(IntStream.range(0, PRODUCTS).mapToObj(i -> new Product("Product" + i, 1.0 + i)).toList());
+        firstId = productRepo.findAll().stream().mapToLong(Product::getId).min().orElseThrow();
+
+        ObjectMapper objectMapper = context.getBean(ObjectMapper.class);
+        productJson = objectMapper.writeValueAsBytes(new Product("Benchmark product", 19.99));
+        invalidProductJson = objectMapper.writeValueAsBytes(new Product("", -1.0));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // Served from the product cache after the first read of each ID
+    @Benchmark
+    public MvcResult getProductById() throws Exception {
+        return mockMvc.perform(get("/api/products/{id}", randomId())).andReturn();
+    }
+
+    // One keyset page of 20 products, read from the database every time
+    @Benchmark
+    public MvcResult getProductPage() throws Exception {
+        return mockMvc.perform(get("/api/products").param("after", String.valueOf(randomId())).param("limit", "20")).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult createProduct() throws Exception {
+        return mockMvc.perform(post("/api/products").contentType("application/json").content(productJson)).andReturn();
+    }
+
+    @Benchmark
+    public MvcResult updateProduct() throws Exception {
+        return mockMvc.perform(put("/api/products/{id}", randomId()).contentType("application/json").content(productJson)).andReturn();
+    }
+
+    // 404 Not Found through GlobalExceptionHandler
+    @Benchmark
+    public MvcResult getMissingProduct() throws Exception {
+        return mockMvc.perform(get("/api/products/{id}", -1L)).andReturn();
+    }
+
+    // 400 Bad Request through Bean Validation and GlobalExceptionHandler
+    @Benchmark
+    public MvcResult createInvalidProduct() throws Exception {
+        return mockMvc.perform(post("/api/products").contentType("application/json").content(invalidProductJson)).andReturn();
+    }
+
+    private long randomId() {
+        return firstId + ThreadLocalRandom.current().nextInt(PRODUCTS);
+    }
+}
@@ -0,0 +1,73 @@
+package dev.rono.rest.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import dev.rono.rest.models.Product;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Measures the cost of turning Product into JSON and back, the way Spring MVC does it for the REST API.
+// The ObjectMapper is built with Jackson2ObjectMapperBuilder, which applies the same defaults as Spring Boot.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductJsonBenchmark {
+
+    // Size of the list serialized by serializeList, i.e. one page of GET /api/products
+    @Param({"100"})
+    private int listSize;
+
+    private ObjectWriter productWriter;
+    private ObjectWriter listWriter;
+    private ObjectReader productReader;
+    private Product product;
+    private List<Product> products;
+    private String productJson;
+
+    @Setup
+    public void setUp() throws Exception {
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        productWriter = objectMapper.writerFor(Product.class);
+        listWriter = objectMapper.writerFor(objectMapper.getTypeFactory().constructCollectionType(List.class, Product.class));
+        productReader = objectMapper.readerFor(Product.class);
+
+        product = product(1);
+        products = IntStream.rangeClosed(1, listSize).mapToObj(ProductJsonBenchmark::product).toList();
+        productJson = productWriter.writeValueAsString(product);
+    }
+
+    @Benchmark
+    public byte[] serializeProduct() throws Exception {
+        return productWriter.writeValueAsBytes(product);
+    }
+
+    @Benchmark
+    public byte[] serializeList() throws Exception {
+        return listWriter.writeValueAsBytes(products);
+    }
+
+    @Benchmark
+    public Product deserializeProduct() throws Exception {
+        return productReader.readValue(productJson);
+    }
+
+    private static Product product(long id) {
+        Product product = new Product("Product " + id, 9.99 + id);
+        product.setId(id);
+        return product;
+    }
+}
@@ -0,0 +1,68 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+// Measures the read-only list endpoints on a large table: the largest keyset page and the whole-table stream
+// Run with the GC profiler to see the allocation per operation as well as the latency:
+// ./mvnw verify -Pbenchmark -Djmh.args="ProductListBenchmark -f 1 -prof gc"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductListBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    private ConfigurableApplicationContext context;
+    private MockMvc mockMvc;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("list-benchmark");
+        mockMvc = MockMvcBuilders.webAppContextSetup((WebApplicationContext) context).build();
+
+        ProductRepo productRepo = context.getBean(ProductRepo.class);
+        productRepo.saveAll(IntStream.range(0, PRODUCTS).mapToObj(i -> new Product("Product" + i, 1.0 + i)).toList());
+        firstId = productRepo.findAll().stream().mapToLong(Product::getId).min().orElseThrow();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // One keyset page of 100 products (the largest page size)
+    @Benchmark
+    public MvcResult getLargeProductPage() throws Exception {
+        long after = firstId + ThreadLocalRandom.current().nextInt(PRODUCTS - 100);
+        return mockMvc.perform(get("/api/products").param("after", String.valueOf(after)).param("limit", "100")).andReturn();
+    }
+
+    // All 10,000 products as NDJSON through the streaming endpoint
+    @Benchmark
+    public MvcResult streamAllProducts() throws Exception {
+        return mockMvc.perform(get("/api/products/stream")).andReturn();
+    }
+}
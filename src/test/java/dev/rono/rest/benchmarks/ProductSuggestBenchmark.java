@@ -0,0 +1,74 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.services.ProductNameIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Measures GET /api/products/suggest lookups in the ProductNameIndex behind it, on 1,000,000 generated names
+// ("Blue Steel Kettle 123456"): a one-letter prefix, a word prefix, a substring inside words and a rare name.
+// The setup also prints the heap used per product (names included), measured after a full GC before and after
+// loading the index; run with -f 1 and a large enough heap (-jvmArgs -Xmx2g).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProductSuggestBenchmark {
+
+    private static final int PRODUCTS = 1_000_000;
+
+    private static final String[] COLORS = {"Red", "Blue", "Green", "Black", "White", "Silver", "Golden", "Ivory"};
+    private static final String[] MATERIALS = {"Steel", "Wooden", "Ceramic", "Glass", "Cotton", "Leather", "Bamboo", "Copper"};
+    private static final String[] ITEMS = {"Kettle", "Chair", "Lamp", "Mug", "Blanket", "Backpack", "Desk", "Teapot",
+            "Bottle", "Mirror", "Basket", "Pillow", "Shelf", "Vase", "Clock", "Rug"};
+
+    // "b": names and words starting with b; "tea": word prefix; "ather": inside a word; "pot 4242": a few names
+    @Param({"b", "tea", "ather", "pot 4242"})
+    private String query;
+
+    @Param({"10"})
+    private int limit;
+
+    private ProductNameIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        long before = usedHeapAfterGc(memory);
+        index = new ProductNameIndex();
+        Random random = new Random(42);
+        for (int id = 1; id <= PRODUCTS; id++) {
+            String name = COLORS[random.nextInt(COLORS.length)] + " " + MATERIALS[random.nextInt(MATERIALS.length)]
+                    + " " + ITEMS[random.nextInt(ITEMS.length)] + " " + random.nextInt(1_000_000);
+            index.put(id, name, 1 + random.nextInt(100_000) / 100.0);
+        }
+        long after = usedHeapAfterGc(memory);
+        System.out.printf("%nProductNameIndex: %,d products, %,d bytes of heap per product%n",
+                index.size(), (after - before) / PRODUCTS);
+    }
+
+    @Benchmark
+    public List<ProductView> suggest() {
+        return index.suggest(query, limit);
+    }
+
+    private static long usedHeapAfterGc(MemoryMXBean memory) {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
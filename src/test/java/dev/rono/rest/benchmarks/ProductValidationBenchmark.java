@@ -0,0 +1,55 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.models.Product;
+
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+// Measures the Bean Validation cost paid by every @Valid Product request body.
+// The invalid case also covers building the violation messages, which is what the 400 responses return.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ProductValidationBenchmark {
+
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private Product validProduct;
+    private Product invalidProduct;
+
+    @Setup
+    public void setUp() {
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validProduct = new Product("Valid product", 42.0);
+        invalidProduct = new Product("", -10.0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Product>> validateValidProduct() {
+        return validator.validate(validProduct);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<Product>> validateInvalidProduct() {
+        return validator.validate(invalidProduct);
+    }
+}
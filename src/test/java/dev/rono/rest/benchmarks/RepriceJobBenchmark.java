@@ -0,0 +1,98 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.models.ProductView;
+import dev.rono.rest.models.RepriceJob;
+import dev.rono.rest.models.RepriceJobView;
+import dev.rono.rest.models.RepriceRequest;
+import dev.rono.rest.repositories.ProductRepo;
+import dev.rono.rest.services.ProductService;
+import dev.rono.rest.services.RepriceJobService;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Limit;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Measures repricing every product of a 100,000-product table by 1%:
+// - updatePrices: what a client can do without the job API, loading 50 products at a time and writing their new
+//   prices with ProductService.updatePrices (one JDBC batch per chunk)
+// - job: a repricing job (set-based UPDATE per 1,000-ID chunk) with 1 or 4 workers (the workers parameter only
+//   applies to this one)
+// Each invocation is one full pass over the table; the rows per second of every job are printed at the end
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class RepriceJobBenchmark {
+
+    private static final int PRODUCTS = 100_000;
+
+    @Param({"1", "4"})
+    private int workers;
+
+    private ConfigurableApplicationContext context;
+    private RepriceJobService repriceJobService;
+    private ProductService productService;
+    private ProductRepo productRepo;
+    private double rowsPerSecond;
+    private int jobs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkApplication.start("reprice-job-benchmark-" + workers, "product.reprice.workers=" + workers,
+                "product.suggest.load-on-startup=false");
+        repriceJobService = context.getBean(RepriceJobService.class);
+        productService = context.getBean(ProductService.class);
+        productRepo = context.getBean(ProductRepo.class);
+        for (int from = 0; from < PRODUCTS; from += 10_000) {
+            productRepo.saveAll(IntStream.range(from, from + 10_000).mapToObj(i -> new Product("Item " + i, 10.0 + i % 1000))
+                    .toList());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.out.printf("%nworkers=%d: %.0f rows/s on average over %d jobs%n", workers, rowsPerSecond / Math.max(1, jobs), jobs);
+        context.close();
+    }
+
+    @Benchmark
+    public RepriceJobView job() throws InterruptedException {
+        RepriceJobView job = repriceJobService.start(new RepriceRequest(1.0, null, null, null, null));
+        while (job.status() == RepriceJob.Status.RUNNING) {
+            Thread.sleep(10);
+            job = repriceJobService.find(job.id());
+        }
+        rowsPerSecond += job.rowsPerSecond();
+        jobs++;
+        return job;
+    }
+
+    @Benchmark
+    public long updatePrices() {
+        long after = 0;
+        long updated = 0;
+        List<ProductView> page;
+        while (!(page = productRepo.findViewsAfter(after, Limit.of(50))).isEmpty()) {
+            Map<Long, Double> prices = new HashMap<>();
+            page.forEach(product -> prices.put(product.id(), Math.round(product.price() * 101) / 100.0));
+            updated += productService.updatePrices(prices).size();
+            after = page.get(page.size() - 1).id();
+        }
+        return updated;
+    }
+}
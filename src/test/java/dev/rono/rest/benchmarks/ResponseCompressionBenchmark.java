@@ -0,0 +1,97 @@
+package dev.rono.rest.benchmarks;
+
+import dev.rono.rest.models.Product;
+import dev.rono.rest.repositories.ProductRepo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// Measures the large list responses over a real HTTP connection (embedded Tomcat on localhost) for every
+// content coding and protocol: the latency of a request, and (printed once per trial) the bytes of the body on the wire
+// On localhost the latency only shows what compressing costs; over a real network the smaller body is what counts
+// ./mvnw verify -Pbenchmark -Djmh.args="ResponseCompressionBenchmark -f 1"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ResponseCompressionBenchmark {
+
+    private static final int PRODUCTS = 10_000;
+
+    // Accept-Encoding sent by the client ("identity" sends none)
+    @Param({"identity", "gzip", "br"})
+    public String encoding;
+
+    @Param({"HTTP_1_1", "HTTP_2"})
+    public HttpClient.Version protocol;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private String baseUrl;
+    private long firstId;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkApplication.start("compression-benchmark");
+        baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port") + "/api/products";
+        client = HttpClient.newBuilder().version(protocol).build();
+
+        ProductRepo productRepo = context.getBean(ProductRepo.class);
+        productRepo.saveAll(IntStream.range(0, PRODUCTS).mapToObj(i -> new Product("Product" + i, 1.0 + i)).toList());
+        firstId = productRepo.findAll().stream().mapToLong(Product::getId).min().orElseThrow();
+
+        HttpResponse<byte[]> page = send(baseUrl + "?limit=100&after=" + firstId);
+        HttpResponse<byte[]> stream = send(baseUrl + "/stream");
+        System.out.printf("%n%s %s: page of 100 = %d bytes, stream of %d = %d bytes (Content-Encoding %s)%n",
+                protocol, encoding, page.body().length, PRODUCTS, stream.body().length,
+                page.headers().firstValue("Content-Encoding").orElse("none"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // One keyset page of 100 products (the largest page size)
+    @Benchmark
+    public byte[] getLargeProductPage() throws Exception {
+        long after = firstId + ThreadLocalRandom.current().nextInt(PRODUCTS - 100);
+        return send(baseUrl + "?limit=100&after=" + after).body();
+    }
+
+    // All 10,000 products as NDJSON through the streaming endpoint
+    @Benchmark
+    public byte[] streamAllProducts() throws Exception {
+        return send(baseUrl + "/stream").body();
+    }
+
+    // The body is returned as received: still encoded, so its length is the number of bytes on the wire
+    private HttpResponse<byte[]> send(String url) throws IOException, InterruptedException {
+        HttpRequest.Builder request = HttpRequest.newBuilder(URI.create(url));
+        if (!encoding.equals("identity")) {
+            request.header("Accept-Encoding", encoding);
+        }
+        HttpResponse<byte[]> response = client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200 || response.version() != protocol) {
+            throw new IllegalStateException("Unexpected response " + response.statusCode() + " over " + response.version());
+        }
+        return response;
+    }
+}